@@ -0,0 +1,68 @@
+package com.ezy.crond;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Recomputing the next execution of a whole set of schedules after a wake-up */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+    private static final String[] CRONTABS = {
+        "*/5 * * * *", "0 * * * *", "30 4 1,15 * 5", "0 9 * * 1-5", "0 0 1 * *", "15 */6 * * *",
+    };
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private CronTime[] schedules;
+    private CronTimeBatch batch;
+    private long[] out;
+    private final long start = LocalDateTime.of(2019, 12, 31, 23, 6).toEpochSecond(ZoneOffset.UTC) / 60;
+
+    @Setup
+    public void setup() {
+        schedules = new CronTime[size];
+        for (int i = 0; i < size; i++) {
+            schedules[i] = CronTime.parse(CRONTABS[i % CRONTABS.length]);
+        }
+        batch = new CronTimeBatch(schedules);
+        out = new long[size];
+    }
+
+    @Benchmark
+    public long[] singleCalls() {
+        for (int i = 0; i < schedules.length; i++) {
+            out[i] = schedules[i].nextExecution(start);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public long[] nextExecutions() {
+        CronTime.nextExecutions(schedules, start, out);
+        return out;
+    }
+
+    @Benchmark
+    public long[] structureOfArrays() {
+        batch.nextExecutions(start, out);
+        return out;
+    }
+}
@@ -0,0 +1,20 @@
+package com.ezy.crond;
+
+import java.util.Arrays;
+
+import org.openjdk.jmh.Main;
+
+/* Entry point of target/benchmarks.jar, the regular JMH command line with the GC profiler on unless
+   another profiler is asked for, so every run reports the allocation rate next to the throughput */
+public class Benchmarks {
+    public static void main(String[] args) throws Exception {
+        if (!Arrays.asList(args).contains("-prof")) {
+            String[] withGc = new String[args.length + 2];
+            withGc[0] = "-prof";
+            withGc[1] = "gc";
+            System.arraycopy(args, 0, withGc, 2, args.length);
+            args = withGc;
+        }
+        Main.main(args);
+    }
+}
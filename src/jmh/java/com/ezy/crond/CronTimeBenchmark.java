@@ -0,0 +1,128 @@
+package com.ezy.crond;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CronTimeBenchmark {
+
+    @Param({
+        "* * * * *",                             /* wildcards */
+        "0,5,10,15,20,25,30,35,40,45,50,55 * * * *", /* dense list */
+        "0 */12 * */6 *",                        /* sparse intervals */
+        "30 4 1,15 * 5",                         /* day of month or day of week */
+        "0 9 * * 1",                             /* weekly */
+        "0 0 29 2 *",                            /* leap day */
+    })
+    public String expression;
+
+    private CronTime cronTime;
+    private String firstField;
+    private ZonedDateTime start;
+    private long startMinute;
+    private final ZoneId zone = ZoneId.of("America/New_York");
+    private final FireTimeTables tables = new FireTimeTables();
+    private FireTimeTables.Cursor cursor;
+    private long searched, stepped;  /* the last fire of the successive fire benchmarks */
+
+    @Setup
+    public void setup() {
+        cronTime = CronTime.parse(expression);
+        firstField = expression.substring(0, expression.indexOf(' '));
+        start = ZonedDateTime.of(LocalDate.of(2019, 12, 31), LocalTime.of(23, 6), ZoneOffset.UTC);
+        startMinute = start.toEpochSecond() / 60;
+        cursor = tables.cursor(cronTime);
+        searched = startMinute;
+        stepped = startMinute;
+    }
+
+    @Benchmark
+    public CronTime parse() {
+        return CronTime.parse(expression);
+    }
+
+    @Benchmark
+    public CronTime parseCached() {
+        return CronTime.parseCached(expression);
+    }
+
+    @Benchmark
+    public CronTime.Field parseField() {
+        return CronTime.parseField(firstField, CronTime.Unit.MINUTE);
+    }
+
+    @Benchmark
+    public ZonedDateTime nextExecution() {
+        return cronTime.nextExecution(start, DstPolicy.LENIENT);
+    }
+
+    @Benchmark
+    public long nextExecutionCompiled() {
+        return cronTime.nextExecution(startMinute);
+    }
+
+    @Benchmark
+    public long nextExecutionTable() {
+        return tables.nextExecution(cronTime, startMinute);
+    }
+
+    /* Successive fires over a year, as a scheduler asks for them */
+    @Benchmark
+    public long successiveSearched() {
+        searched = cronTime.nextExecution(searched);
+        if (searched > startMinute + 365 * 1440) {
+            searched = startMinute;
+        }
+        return searched;
+    }
+
+    @Benchmark
+    public long successiveCursor() {
+        stepped = cursor.nextExecution(stepped);
+        if (stepped > startMinute + 365 * 1440) {
+            stepped = startMinute;
+        }
+        return stepped;
+    }
+
+    @Benchmark
+    public ZonedDateTime nextExecutionZoned() {
+        return cronTime.nextExecution(start.withZoneSameInstant(zone));
+    }
+
+    @Benchmark
+    public long nextExecutionInZone() {
+        return cronTime.nextExecution(startMinute, zone, DstPolicy.LENIENT);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return cronTime.matches(startMinute);
+    }
+
+    @Benchmark
+    public boolean matchesInZone() {
+        return cronTime.matches(startMinute, zone);
+    }
+}
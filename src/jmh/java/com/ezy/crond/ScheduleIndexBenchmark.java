@@ -0,0 +1,59 @@
+package com.ezy.crond;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Finding the schedules due at a minute among 500k registered, by testing each one and through the index */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScheduleIndexBenchmark {
+    private static final int SIZE = 500_000;
+
+    private final CronTime[] schedules = new CronTime[SIZE];
+    private final ScheduleIndex index = new ScheduleIndex();
+    private long minute = LocalDateTime.of(2020, 1, 15, 9, 0).toEpochSecond(ZoneOffset.UTC) / 60;
+    private int found;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < SIZE; i++) {
+            /* Spread over every minute of the day so a minute matches a few hundred schedules */
+            schedules[i] = CronTime.parse((i % 60) + " " + ((i / 60) % 24) + " * * *");
+            index.add(schedules[i]);
+        }
+    }
+
+    @Benchmark
+    public int scan() {
+        int count = 0;
+        for (CronTime schedule : schedules) {
+            if (schedule.matches(minute)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int index() {
+        found = 0;
+        index.forEachMatch(minute, id -> found++);
+        return found;
+    }
+}
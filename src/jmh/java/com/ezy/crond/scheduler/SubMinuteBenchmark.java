@@ -0,0 +1,52 @@
+package com.ezy.crond.scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ezy.crond.CronTime;
+
+/* 10k health checks firing every 5 to 15 seconds, dispatched by the second wheel.
+   A score is one second of the clock, the allocation per operation should stay at zero. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SubMinuteBenchmark {
+    private static final int SIZE = 10_000;
+    private static final int SECONDS = 60;
+
+    private CronScheduler scheduler;
+    private long second;
+    private long fired;
+
+    @Setup
+    public void setup() {
+        scheduler = new CronScheduler((job, fireMinute) -> fired++, 0);
+        String[] steps = { "*/5", "*/10", "*/15", "1/5", "2-59/10" };
+        for (int i = 0; i < SIZE; i++) {
+            scheduler.schedule("job-" + i, CronTime.parse(steps[i % steps.length] + " * * * * *"), () -> {});
+        }
+        second = 0;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SECONDS)
+    public long advanceSeconds() {
+        second += SECONDS;
+        scheduler.advanceToSecond(second);
+        return fired;
+    }
+}
@@ -0,0 +1,70 @@
+package com.ezy.crond.store;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ezy.crond.CronTime;
+
+/* Cold start of 200k jobs, parsing their expressions against opening a compacted store of them */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CronStoreBenchmark {
+    private static final int SIZE = 200_000;
+
+    private final String[] expressions = new String[SIZE];
+    private Path directory;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("jcrond-store");
+        try (CronStore store = CronStore.open(directory)) {
+            for (int i = 0; i < SIZE; i++) {
+                expressions[i] = (i % 60) + " " + ((i / 60) % 24) + " * * " + (i % 7);
+                store.put(i, CronTime.parse(expressions[i]), i);
+            }
+            store.compact();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (String name : new String[] { CronStore.SNAPSHOT, CronStore.LOG }) {
+            Files.deleteIfExists(directory.resolve(name));
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public CronTime[] parse() {
+        CronTime[] schedules = new CronTime[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            schedules[i] = CronTime.parse(expressions[i]);
+        }
+        return schedules;
+    }
+
+    @Benchmark
+    public int open() throws IOException {
+        try (CronStore store = CronStore.open(directory)) {
+            return store.size();
+        }
+    }
+}
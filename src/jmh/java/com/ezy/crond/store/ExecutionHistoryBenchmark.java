@@ -0,0 +1,75 @@
+package com.ezy.crond.store;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Appends to and range queries over the history of 100k jobs keeping 16 runs each, the allocation
+   per operation should stay at zero */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutionHistoryBenchmark {
+    private static final int JOBS = 100_000;
+    private static final int RUNS = 16;
+
+    private ExecutionHistory history;
+    private long fire;
+    private long job;
+    private long seen;
+    private final ExecutionHistory.Visitor visitor = (fireMinute, start, end, status) -> seen += status;
+
+    @Setup
+    public void setup() {
+        history = ExecutionHistory.inMemory(JOBS, RUNS);
+        for (fire = 0; fire < RUNS; fire++) {
+            for (int j = 0; j < JOBS; j++) {
+                history.append(j, fire, fire * 60_000, fire * 60_000 + 100, 0);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        history.close();
+    }
+
+    private long nextJob() {
+        job = (job + 7919) % JOBS;
+        return job;
+    }
+
+    @Benchmark
+    public void append() {
+        long j = nextJob();
+        if (j < 7919) {
+            fire++;
+        }
+        history.append(j, fire, fire * 60_000, fire * 60_000 + 100, 0);
+    }
+
+    /* A quarter of the runs of a job */
+    @Benchmark
+    public int runsBetween() {
+        long last = history.lastFireMinute(nextJob());
+        return history.runs(job, last - 5, last - 1, visitor);
+    }
+
+    @Benchmark
+    public long lastFireMinute() {
+        return history.lastFireMinute(nextJob());
+    }
+}
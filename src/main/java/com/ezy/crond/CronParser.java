@@ -0,0 +1,460 @@
+package com.ezy.crond;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.ezy.crond.CronTime.Field;
+import com.ezy.crond.CronTime.FieldType;
+import com.ezy.crond.CronTime.Unit;
+
+/* Single pass scanner for the grammar of Vixie cron.
+   A field is a comma separated list of elements, each one of '*', a value or a range 'low-high',
+   optionally followed by a step '/n'. Months and days of the week also accept their three letter
+   English names. Whole expressions may be replaced by one of the '@' macros.
+
+   A step counts from the start of what it steps: '*' from the lowest value of the field, so '*'
+   stepped by 3 in the months is January, April, July and October, a range from its low end and
+   'low/n' from low. When neither day field starts with '*' a day matches on either of them, otherwise
+   it has to match both, so '*' stepped by 2 in the days of the month with Friday in the days of the
+   week is the Fridays falling on the 1st, 3rd and so on.
+
+   The simple shapes keep their own FieldType, as the getters of CronTime report it: '*' is a WILDCARD,
+   '*' with a step an INTERVAL, a single value a NUMBER, 'low-high' a RANGE and a list of plain values
+   a LIST. Every other combination is expanded into the LIST of values it allows, which compiles to the
+   same bitmask as any other field, so a richer expression costs nothing extra when matching.
+
+   Given a seed, an element may also be Jenkins' 'H', a value picked by hashing the seed, optionally
+   limited to a range 'H(low-high)' and stepped 'H/n', where the hash picks the offset of the steps.
+   Jobs written as 'H * * * *' instead of '0 * * * *' are spread over the hour, each at the same minute
+   every time. Days of the month only hash to 1-28 and days of the week to 0-6, so every month and
+   week has the day.
+
+   Quartz style expressions of 6 fields start with a seconds field, those of 7 fields also end with
+   a year field from 1970 to 2099. Either day field may then be Quartz' '?', which is the same as '*'.
+   Days of the week keep their Vixie numbering, Sunday is 0 or 7. */
+final class CronParser {
+    private static final String[][] MACROS = {
+        { "@YEARLY", "0 0 1 1 *" },
+        { "@ANNUALLY", "0 0 1 1 *" },
+        { "@MONTHLY", "0 0 1 * *" },
+        { "@WEEKLY", "0 0 * * 0" },
+        { "@DAILY", "0 0 * * *" },
+        { "@MIDNIGHT", "0 0 * * *" },
+        { "@HOURLY", "0 * * * *" },
+    };
+
+    private static final int MAX_DIGITS = 4;
+
+    /* The fields of an expression by number of fields */
+    private static final Unit[] VIXIE = {
+        Unit.MINUTE, Unit.HOUR, Unit.DAY_OF_MONTH, Unit.MONTH, Unit.DAY_OF_WEEK
+    };
+    private static final Unit[] WITH_SECONDS = {
+        Unit.SECOND, Unit.MINUTE, Unit.HOUR, Unit.DAY_OF_MONTH, Unit.MONTH, Unit.DAY_OF_WEEK
+    };
+    private static final Unit[] WITH_YEARS = {
+        Unit.SECOND, Unit.MINUTE, Unit.HOUR, Unit.DAY_OF_MONTH, Unit.MONTH, Unit.DAY_OF_WEEK, Unit.YEAR
+    };
+
+    private CronParser() {}
+
+    /* seed is null when 'H' is not allowed */
+    static CronTime parse(String crontab, String seed) {
+        int start = skipSeparators(crontab, 0);
+        if (start < crontab.length() && crontab.charAt(start) == '@') {
+            return parse(expandMacro(crontab, start), seed);
+        }
+        Unit[] units;
+        switch (countFields(crontab, start)) {
+            case 5:
+                units = VIXIE;
+                break;
+            case 6:
+                units = WITH_SECONDS;
+                break;
+            case 7:
+                units = WITH_YEARS;
+                break;
+            default:
+                throw new IllegalArgumentException("Cron time entry specification must contain 5 to 7 parts: " +
+                                                   "'[second] minute hour day_of_month month day_of_week [year]'");
+        }
+        Field[] fields = new Field[units.length];
+        int length = crontab.length();
+        int i = start;
+        for (int count = 0; count < fields.length; count++) {
+            int fieldStart = i;
+            while (i < length && !CronTime.isSeparator(crontab.charAt(i))) {
+                i++;
+            }
+            fields[count] = units[count] == Unit.YEAR ? parseYears(crontab, fieldStart, i)
+                                                      : parseField(crontab, fieldStart, i, units[count], seed);
+            i = skipSeparators(crontab, i);
+        }
+        if (units == VIXIE) {
+            return new CronTime(fields[0], fields[1], fields[2], fields[3], fields[4]);
+        }
+        Field years = units == WITH_YEARS ? fields[6] : new Field(FieldType.WILDCARD);
+        return new CronTime(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5], years);
+    }
+
+    private static int countFields(String crontab, int start) {
+        int count = 0;
+        int i = start;
+        while (i < crontab.length()) {
+            while (i < crontab.length() && !CronTime.isSeparator(crontab.charAt(i))) {
+                i++;
+            }
+            count++;
+            i = skipSeparators(crontab, i);
+        }
+        return count;
+    }
+
+    /* Whether an element of the expression is an 'H', no name of a month or day starts with one */
+    static boolean isHashed(CharSequence crontab) {
+        for (int i = 0; i < crontab.length(); i++) {
+            char c = crontab.charAt(i);
+            if ((c == 'H' || c == 'h') && (i == 0 || CronTime.isSeparator(crontab.charAt(i - 1))
+                                           || crontab.charAt(i - 1) == ',')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int skipSeparators(CharSequence text, int i) {
+        while (i < text.length() && CronTime.isSeparator(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String expandMacro(String crontab, int start) {
+        int end = start;
+        while (end < crontab.length() && !CronTime.isSeparator(crontab.charAt(end))) {
+            end++;
+        }
+        if (skipSeparators(crontab, end) == crontab.length()) {
+            for (String[] macro : MACROS) {
+                if (macro[0].length() == end - start && crontab.regionMatches(true, start, macro[0], 0, end - start)) {
+                    return macro[1];
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown cron time macro '" + crontab.trim() + "'");
+    }
+
+    /* Cursor over one field, nothing is split or copied while scanning it */
+    private static final class Scanner {
+        final CharSequence text;
+        final int start, end;
+        final Unit unit;
+        final String seed;
+        int i;
+
+        Scanner(CharSequence text, int start, int end, Unit unit, String seed) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.unit = unit;
+            this.seed = seed;
+            this.i = start;
+        }
+
+        boolean acceptHash() {
+            if (i < end && (text.charAt(i) == 'H' || text.charAt(i) == 'h')) {
+                if (seed == null) {
+                    throw new IllegalArgumentException("'H' in " + unit.name().toLowerCase() + " field '" +
+                                                       text.subSequence(start, end) + "' needs a seed, " +
+                                                       "see CronTime.parse(String, String)");
+                }
+                i++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) {
+            if (!accept(c)) {
+                throw invalid();
+            }
+        }
+
+        boolean atEnd() { return i == end; }
+
+        boolean accept(char c) {
+            if (i < end && text.charAt(i) == c) {
+                i++;
+                return true;
+            }
+            return false;
+        }
+
+        int number() {
+            int value = 0;
+            int digits = 0;
+            while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                if (++digits > MAX_DIGITS) {
+                    throw invalid();
+                }
+                value = value * 10 + (text.charAt(i++) - '0');
+            }
+            if (digits == 0) {
+                throw invalid();
+            }
+            return value;
+        }
+
+        /* A number or a name of the unit, checked against the bounds of the unit */
+        int value() {
+            int value;
+            if (i < end && Character.isLetter(text.charAt(i))) {
+                value = name();
+            } else {
+                value = number();
+            }
+            if (value < unit.min || value > unit.max) {
+                throw new IllegalArgumentException("Value " + value + " of " + unit.name().toLowerCase() +
+                                                   " field '" + text.subSequence(start, end) +
+                                                   "' must be between " + unit.min + " and " + unit.max);
+            }
+            return value;
+        }
+
+        private int name() {
+            int from = i;
+            while (i < end && Character.isLetter(text.charAt(i))) {
+                i++;
+            }
+            String[] names = unit.names;
+            for (int n = 0; n < names.length; n++) {
+                if (names[n].length() == i - from && regionMatches(from, names[n])) {
+                    return unit.firstName + n;
+                }
+            }
+            throw invalid();
+        }
+
+        private boolean regionMatches(int from, String name) {
+            for (int k = 0; k < name.length(); k++) {
+                if (Character.toUpperCase(text.charAt(from + k)) != name.charAt(k)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        IllegalArgumentException invalid() {
+            return new IllegalArgumentException("Invalid " + unit.name().toLowerCase() + " field '" +
+                                                text.subSequence(start, end) + "'");
+        }
+    }
+
+    static Field parseField(CharSequence text, int start, int end, Unit unit, String seed) {
+        Scanner scanner = new Scanner(text, start, end, unit, seed);
+        if (scanner.atEnd()) {
+            throw scanner.invalid();
+        }
+        if ((unit == Unit.DAY_OF_MONTH || unit == Unit.DAY_OF_WEEK) && scanner.accept('?')) {
+            if (!scanner.atEnd()) {
+                throw scanner.invalid();
+            }
+            return new Field(FieldType.WILDCARD);
+        }
+        long bits = 0L;
+        int elements = 0;
+        int low = 0, high = 0, step = 0;
+        boolean star = false, range = false, hashed = false;
+        boolean startsWithStar = false;
+        do {
+            if (elements > 0 && !scanner.accept(',')) {
+                throw scanner.invalid();
+            }
+            star = scanner.accept('*');
+            startsWithStar |= star && elements == 0;
+            hashed = !star && scanner.acceptHash();
+            range = false;
+            if (star) {
+                low = unit.min;
+                high = unit.max;
+            } else if (hashed) {
+                low = unit.min;
+                high = hashMax(unit);
+                if (scanner.accept('(')) {
+                    low = scanner.value();
+                    scanner.expect('-');
+                    high = scanner.value();
+                    scanner.expect(')');
+                    if (high < low) {
+                        throw scanner.invalid();
+                    }
+                }
+            } else {
+                low = scanner.value();
+                high = low;
+                if (scanner.accept('-')) {
+                    high = scanner.value();
+                    range = true;
+                    if (high < low) {
+                        throw scanner.invalid();
+                    }
+                }
+            }
+            step = 0;
+            if (scanner.accept('/')) {
+                step = scanner.number();
+                if (step == 0) {
+                    throw scanner.invalid();
+                }
+                if (!star && !range && !hashed) {
+                    high = unit.max;  /* 'low/n' runs from low to the end of the unit */
+                }
+            }
+            bits |= hashed ? hashedBits(low, high, step, hash(seed, unit)) : elementBits(low, high, step);
+            elements++;
+        } while (!scanner.atEnd());
+
+        if (elements == 1 && hashed) {
+            return step == 0 ? new Field(FieldType.NUMBER, Collections.singletonList(Long.numberOfTrailingZeros(bits)))
+                             : new Field(FieldType.LIST, values(bits));
+        }
+        if (elements == 1) {
+            if (star) {
+                return step == 0 ? new Field(FieldType.WILDCARD)
+                                 : new Field(FieldType.INTERVAL, Collections.singletonList(step));
+            }
+            if (step == 0) {
+                return range ? new Field(FieldType.RANGE, Arrays.asList(low, high))
+                             : new Field(FieldType.NUMBER, Collections.singletonList(low));
+            }
+        }
+        /* Lists of plain values and everything richer end up as the sorted values they allow */
+        return new Field(FieldType.LIST, values(bits), startsWithStar);
+    }
+
+    /* The year field, whose values do not fit the bitmask of parseField: the allowed years are kept as
+       bits offset by the first year. The shapes map to the same FieldTypes as the other fields. */
+    static Field parseYears(CharSequence text, int start, int end) {
+        Unit unit = Unit.YEAR;
+        Scanner scanner = new Scanner(text, start, end, unit, null);
+        if (scanner.atEnd()) {
+            throw scanner.invalid();
+        }
+        long[] words = new long[(unit.max - unit.min + 64) >>> 6];
+        int elements = 0;
+        int low = 0, high = 0, step = 0;
+        boolean star = false, range = false;
+        do {
+            if (elements > 0 && !scanner.accept(',')) {
+                throw scanner.invalid();
+            }
+            star = scanner.accept('*');
+            range = false;
+            if (star) {
+                low = unit.min;
+                high = unit.max;
+            } else {
+                low = scanner.value();
+                high = low;
+                if (scanner.accept('-')) {
+                    high = scanner.value();
+                    range = true;
+                    if (high < low) {
+                        throw scanner.invalid();
+                    }
+                }
+            }
+            step = 0;
+            if (scanner.accept('/')) {
+                step = scanner.number();
+                if (step == 0) {
+                    throw scanner.invalid();
+                }
+                if (!star && !range) {
+                    high = unit.max;
+                }
+            }
+            for (int year = low; year <= high; year += Math.max(step, 1)) {
+                words[(year - unit.min) >>> 6] |= 1L << (year - unit.min);
+            }
+            elements++;
+        } while (!scanner.atEnd());
+
+        if (elements == 1) {
+            if (star) {
+                return step == 0 ? new Field(FieldType.WILDCARD)
+                                 : new Field(FieldType.INTERVAL, Collections.singletonList(step));
+            }
+            if (step == 0) {
+                return range ? new Field(FieldType.RANGE, Arrays.asList(low, high))
+                             : new Field(FieldType.NUMBER, Collections.singletonList(low));
+            }
+        }
+        List<Integer> years = new ArrayList<>();
+        for (int w = 0; w < words.length; w++) {
+            for (long remaining = words[w]; remaining != 0; remaining &= remaining - 1) {
+                years.add(unit.min + (w << 6) + Long.numberOfTrailingZeros(remaining));
+            }
+        }
+        return new Field(FieldType.LIST, years);
+    }
+
+    private static List<Integer> values(long bits) {
+        List<Integer> values = new ArrayList<>(Long.bitCount(bits));
+        for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+            values.add(Long.numberOfTrailingZeros(remaining));
+        }
+        return values;
+    }
+
+    /* Highest value 'H' picks when not given a range */
+    private static int hashMax(Unit unit) {
+        switch (unit) {
+            case DAY_OF_MONTH:
+                return 28;
+            case DAY_OF_WEEK:
+                return 6;
+            default:
+                return unit.max;
+        }
+    }
+
+    /* Non-negative hash of seed, different for every unit. String.hashCode is fixed by the language,
+       so a job gets the same values on every JVM and after every restart. */
+    static long hash(String seed, Unit unit) {
+        long h = seed.hashCode() * 0x9E3779B97F4A7C15L + unit.ordinal();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h >>> 1;
+    }
+
+    /* One value of [low, high] picked by hash, or with a step every step-th value from an offset picked by hash */
+    private static long hashedBits(int low, int high, int step, long hash) {
+        int width = high - low + 1;
+        if (step == 0) {
+            return 1L << (low + (int) (hash % width));
+        }
+        long bits = 0L;
+        for (int val = low + (int) (hash % Math.min(step, width)); val <= high; val += step) {
+            bits |= 1L << val;
+        }
+        return bits;
+    }
+
+    private static long elementBits(int low, int high, int step) {
+        if (step == 0) {
+            return (-1L >>> (63 - high)) & (-1L << low);
+        }
+        long bits = 0L;
+        for (int val = low; val <= high; val += step) {
+            bits |= 1L << val;
+        }
+        return bits;
+    }
+}
@@ -1,19 +1,47 @@
 package com.ezy.crond;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
-
-public class CronTime { // CronTime since it's not an actual entry, no command to execute
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/* Immutable once parsed, so a CronTime can be shared between threads */
+public final class CronTime { // CronTime since it's not an actual entry, no command to execute
+    private final Field seconds;
     private final Field minutes;
     private final Field hours;
     private final Field daysOfMonth;
     private final Field months;
     private final Field daysOfWeek;
-    /* daysOfMonth and daysOfWeek are treated as an OR clause */
+    private final Field years;
+    /* daysOfMonth and daysOfWeek match on either one unless one starts with '*', see dayRestricted */
+
+    /* Compiled form of the fields, bit n is set when value n is allowed */
+    private final long secondBits;     /* bits 0-59, only bit 0 without a seconds field */
+    private final long minuteBits;     /* bits 0-59 */
+    private final long hourBits;       /* bits 0-23 */
+    private final long dayOfMonthBits; /* bits 1-31 */
+    private final long monthBits;      /* bits 1-12 */
+    private final long dayOfWeekBits;  /* bits 0-6, Sunday is 0 and 7 is folded onto it */
+    private final boolean dayRestricted; /* neither day field starts with '*', days match on either field */
+    private final long[] yearBits;     /* bit n is year 1970 + n, null when every year is allowed */
+
+    /* Returned by the primitive nextExecution when the fields can never be satisfied, e.g. '0 0 31 2 *' */
+    public static final long NEVER = Long.MAX_VALUE;
+    /* Returned by the primitive previousExecution when the fields can never be satisfied */
+    public static final long NEVER_BEFORE = Long.MIN_VALUE;
+    /* The longest gap between two fire times is a Feb 29th schedule across a skipped leap year */
+    static final int MAX_SEARCH_YEARS = 8;
 
     enum FieldType {
         NUMBER,    /* normal single digit */
@@ -24,90 +52,118 @@ public class CronTime { // CronTime since it's not an actual entry, no command t
         ERROR      /* invalid specification, numbers outside of bounds of field */
     }
 
-    static class Field {
-        boolean overflow;
-        int max, min;
+    /* The fields of a cron time in order, with the values they allow */
+    enum Unit {
+        MINUTE(0, 59),
+        HOUR(0, 23),
+        DAY_OF_MONTH(1, 31),
+        MONTH(1, 12, 1, "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"),
+        DAY_OF_WEEK(0, 7, 0, "SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"), /* 0 and 7 are both Sunday */
+        /* The optional fields of 6 and 7 field expressions, written first and last */
+        SECOND(0, 59),
+        YEAR(1970, 2099);
+
+        final int min, max;
+        final int firstName;  /* value of the first name */
+        final String[] names;
+
+        Unit(int min, int max) {
+            this(min, max, 0);
+        }
+
+        Unit(int min, int max, int firstName, String... names) {
+            this.min = min;
+            this.max = max;
+            this.firstName = firstName;
+            this.names = names;
+        }
+    }
+
+    static final class Field {
         final FieldType type;
-        List<Integer> values = new ArrayList<>(2);
+        final List<Integer> values;
+        final boolean startsWithStar;  /* written starting with '*', which decides how the day fields combine */
 
         public Field(FieldType type) {
-            this.type = type;
+            this(type, Collections.<Integer>emptyList());
+        }
+
+        public Field(FieldType type, List<Integer> values) {
+            this(type, values, type == FieldType.WILDCARD || type == FieldType.INTERVAL);
         }
 
-        public Field(FieldType type, int max, int min) {
+        public Field(FieldType type, List<Integer> values, boolean startsWithStar) {
             this.type = type;
-            this.max = max;
-            this.min = min;
+            this.values = Collections.unmodifiableList(new ArrayList<>(values));
+            this.startsWithStar = startsWithStar;
         }
 
         public FieldType getType() { return type; }
         public List<Integer> getValues() { return values; }
-        public void addValue(int val) {
-            values.add(val);
-        }
-
-        public int getMax() { return max; }
-        public int getMin() { return min; }
+        public boolean startsWithStar() { return startsWithStar; }
 
-        public void setOverflow(boolean overflow) { this.overflow = overflow; }
-        public boolean getOverflow() { return overflow; }
-
-        // TODO Unit test this method separately from nextExecution
-        public int getNext(int current, int min, int max) {
-            /* Here we are already being given an int current that has been adjusted for overflow */
-            /* also need to do max checking for current */
+        /* Every allowed value between min and max as a bitmask, values outside of the bounds are dropped */
+        long toBits(int min, int max) {
+            long range = (-1L >>> (63 - max)) & (-1L << min);
+            long bits = 0L;
             switch(type) {
             case WILDCARD:
-                if (current > max) {
-                    setOverflow(true);
-                    return min;
-                }
-                return current;
+                return range;
             case NUMBER:
-                if (current > values.get(0)) {
-                    setOverflow(true);
-                }
-                return values.get(0);
-            case RANGE:
-                if (current >= values.get(0) && current <= values.get(1)) {
-                    return current;
-                }
-                setOverflow(true);
-                return values.get(0);
             case LIST:
-                if (values.contains(current)) {
-                    return current;
+                for (int val : values) {
+                    bits |= bit(val);
                 }
-                for(Integer val : values) {
-                    if (current < val) {
-                        return val;
-                    }
+                break;
+            case RANGE:
+                for (int val = Math.max(values.get(0), min); val <= Math.min(values.get(1), max); val++) {
+                    bits |= bit(val);
                 }
-                /* No values qualified which means the current is beyond the range of the list, have to overflow */
-                setOverflow(true);
-                return values.get(0);
+                break;
             case INTERVAL:
-                if (current % values.get(0) == 0) {
-                    return current;
-                }
-                while(current++ <= max) {
-                    if (current % values.get(0) == 0) {
-                        return current;
+                int step = values.get(0);
+                if (step > 0) {
+                    /* Every step-th value from the lowest one, as '*' with a step in Vixie cron */
+                    for (int val = min; val <= max; val += step) {
+                        bits |= bit(val);
                     }
                 }
-                setOverflow(true);
-                current = min;
-                while(current <= max) {
-                    if (current % values.get(0) == 0) {
-                        return current;
-                    }
-                    current++;
-                }
+                break;
             default:
                 break;
             }
-            // TODO Something wrong here?
-            return values.get(0);
+            return bits & range;
+        }
+
+        /* As toBits for units with values past 63, bit n of the words is value min + n */
+        long[] toWords(int min, int max) {
+            long[] words = new long[(max - min + 64) >>> 6];
+            for (int val = min; val <= max; val++) {
+                if (allows(val, min)) {
+                    words[(val - min) >>> 6] |= 1L << (val - min);
+                }
+            }
+            return words;
+        }
+
+        private boolean allows(int val, int min) {
+            switch(type) {
+            case WILDCARD:
+                return true;
+            case NUMBER:
+            case LIST:
+                return values.contains(val);
+            case RANGE:
+                return val >= values.get(0) && val <= values.get(1);
+            case INTERVAL:
+                return values.get(0) > 0 && (val - min) % values.get(0) == 0;
+            default:
+                return false;
+            }
+        }
+
+        private static long bit(int val) {
+            return val >= 0 && val < 64 ? 1L << val : 0L;
         }
 
         @Override
@@ -117,187 +173,703 @@ public class CronTime { // CronTime since it's not an actual entry, no command t
         }
     }
 
+    /* Without a seconds field a schedule fires at the start of its minutes */
+    private static final Field START_OF_MINUTE = new Field(FieldType.NUMBER, Collections.singletonList(0));
+    private static final Field EVERY_YEAR = new Field(FieldType.WILDCARD);
+    private static final long EVERY_DAY_OF_MONTH = 0xFFFFFFFEL;
+    private static final long EVERY_DAY_OF_WEEK = 0x7F;
+
     CronTime(Field minutes,
              Field hours,
              Field daysOfMonth,
              Field months,
              Field daysOfWeek) {
+        this(START_OF_MINUTE, minutes, hours, daysOfMonth, months, daysOfWeek, EVERY_YEAR);
+    }
+
+    CronTime(Field seconds,
+             Field minutes,
+             Field hours,
+             Field daysOfMonth,
+             Field months,
+             Field daysOfWeek,
+             Field years) {
+        this.seconds = seconds;
         this.minutes = minutes;
         this.hours = hours;
         this.daysOfMonth = daysOfMonth;
         this.months = months;
         this.daysOfWeek = daysOfWeek;
+        this.years = years;
+
+        this.secondBits = seconds.toBits(Unit.SECOND.min, Unit.SECOND.max);
+        this.minuteBits = minutes.toBits(Unit.MINUTE.min, Unit.MINUTE.max);
+        this.hourBits = hours.toBits(Unit.HOUR.min, Unit.HOUR.max);
+        this.monthBits = months.toBits(Unit.MONTH.min, Unit.MONTH.max);
+        long dom = daysOfMonth.toBits(Unit.DAY_OF_MONTH.min, Unit.DAY_OF_MONTH.max);
+        long dow = daysOfWeek.toBits(Unit.DAY_OF_WEEK.min, Unit.DAY_OF_WEEK.max);
+        dow = (dow | dow >>> 7) & EVERY_DAY_OF_WEEK;
+        boolean restricted = !daysOfMonth.startsWithStar() && !daysOfWeek.startsWithStar();
+        if (restricted && (dom == EVERY_DAY_OF_MONTH || dow == EVERY_DAY_OF_WEEK)) {
+            /* Matching on either field, one allowing every day allows every day, as '* *' does */
+            dom = EVERY_DAY_OF_MONTH;
+            dow = EVERY_DAY_OF_WEEK;
+            restricted = false;
+        }
+        this.dayOfMonthBits = dom;
+        this.dayOfWeekBits = dow;
+        this.dayRestricted = restricted;
+        long[] yearWords = years.getType() == FieldType.WILDCARD ? null : years.toWords(Unit.YEAR.min, Unit.YEAR.max);
+        this.yearBits = yearWords == null || allYears(yearWords) ? null : yearWords;
     }
 
+    private static boolean allYears(long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count == Unit.YEAR.max - Unit.YEAR.min + 1;
+    }
 
+
+    /* Vixie cron syntax, see CronParser. Fields are separated by runs of spaces or tabs.
+       Quartz style expressions with a leading seconds field and an optional trailing year field are
+       accepted as well.
+       See CronTimeCache to share the result between equal expressions. */
     public static CronTime parse(String crontab) {
-        String[] parts = crontab.split(" ");
-        if (parts.length < 5 || parts.length > 5) {
-            throw new IllegalArgumentException("Cron time entry specification must contain only 5 parts: " +
-                                               "'minute hour day_of_month month day_of_week'");
+        return CronParser.parse(crontab, null);
+    }
+
+    /* As parse(String), also accepting Jenkins style 'H' fields whose values are derived from seed,
+       typically the name of the job, see CronParser */
+    public static CronTime parse(String crontab, String seed) {
+        return CronParser.parse(crontab, seed);
+    }
+
+    static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    static Field parseField(String field, Unit unit) {
+        return CronParser.parseField(field, 0, field.length(), unit, null);
+    }
+
+    /* Shared, immutable CronTime for the expression, see CronTimeCache */
+    public static CronTime parseCached(String crontab) {
+        return CronTimeCache.shared().parse(crontab);
+    }
+
+    public static CronTime parseCached(String crontab, String seed) {
+        return CronTimeCache.shared().parse(crontab, seed);
+    }
+
+    public Field getSeconds() { return seconds; }
+    public Field getMinutes() { return minutes; }
+    public Field getHours() { return hours; }
+    public Field getDaysOfMonth() { return daysOfMonth; }
+    public Field getMonths() { return months; }
+    public Field getDaysOfWeek() { return daysOfWeek; }
+    public Field getYears() { return years; }
+
+    public long getSecondBits() { return secondBits; }
+    public long getMinuteBits() { return minuteBits; }
+    public long getHourBits() { return hourBits; }
+    public long getDayOfMonthBits() { return dayOfMonthBits; }
+    public long getMonthBits() { return monthBits; }
+    public long getDayOfWeekBits() { return dayOfWeekBits; }
+
+    /* Whether the schedule fires at any other second than the start of its minutes, see nextExecutionSecond */
+    public boolean hasSeconds() { return secondBits != 1L; }
+
+    /* Whether the year field allows only some years */
+    public boolean isYearRestricted() { return yearBits != null; }
+
+    public boolean allowsYear(int year) {
+        if (yearBits == null) {
+            return true;
+        }
+        int n = year - Unit.YEAR.min;
+        return n >= 0 && n <= Unit.YEAR.max - Unit.YEAR.min && (yearBits[n >>> 6] & (1L << n)) != 0;
+    }
+
+    /* First allowed year at or after year, -1 when there is none */
+    private int allowedYearFrom(int year) {
+        for (int n = Math.max(year - Unit.YEAR.min, 0); n <= Unit.YEAR.max - Unit.YEAR.min; n++) {
+            if ((yearBits[n >>> 6] & (1L << n)) != 0) {
+                return Unit.YEAR.min + n;
+            }
+        }
+        return -1;
+    }
+
+    /* Last allowed year at or before year, -1 when there is none */
+    private int allowedYearTo(int year) {
+        for (int n = Math.min(year - Unit.YEAR.min, Unit.YEAR.max - Unit.YEAR.min); n >= 0; n--) {
+            if ((yearBits[n >>> 6] & (1L << n)) != 0) {
+                return Unit.YEAR.min + n;
+            }
+        }
+        return -1;
+    }
+
+    private static int yearOf(long epochMinute) {
+        return EpochCalendar.year(EpochCalendar.civilFromDays(Math.floorDiv(epochMinute, EpochCalendar.MINUTES_PER_DAY)));
+    }
+
+    private static long firstMinuteOf(int year) {
+        return EpochCalendar.daysFromCivil(year, 1, 1) * EpochCalendar.MINUTES_PER_DAY;
+    }
+
+    /* The next execution strictly after currentTime on the wall-clock time of its zone, as an instant in
+       that zone, or null when the schedule never fires again. Same as nextExecution(ZonedDateTime,
+       DstPolicy) with DstPolicy.LENIENT. */
+    public ZonedDateTime nextExecution(ZonedDateTime currentTime) {
+        return nextExecution(currentTime, DstPolicy.LENIENT);
+    }
+
+    /* Compiled next execution, works on minutes since the epoch in UTC and allocates nothing.
+       Returns the first matching minute strictly after epochMinute, or NEVER. A schedule with a seconds
+       field matches the minutes it fires in. */
+    public long nextExecution(long epochMinute) {
+        if (yearBits == null) {
+            return nextMatch(epochMinute);
+        }
+        /* The five fields are searched within the allowed years, jumping over the years in between */
+        long from = epochMinute;
+        while (true) {
+            int year = yearOf(from + 1);
+            if (!allowsYear(year)) {
+                int allowed = allowedYearFrom(year);
+                if (allowed < 0) {
+                    return NEVER;
+                }
+                from = firstMinuteOf(allowed) - 1;
+            }
+            long next = nextMatch(from);
+            if (next == NEVER || allowsYear(yearOf(next))) {
+                return next;
+            }
+            from = firstMinuteOf(yearOf(next) + 1) - 1;
+        }
+    }
+
+    /* The next fire strictly after epochSecond, as an epoch second, or NEVER. Allocates nothing. */
+    public long nextExecutionSecond(long epochSecond) {
+        if (secondBits == 0) {
+            return NEVER;
+        }
+        long minute = Math.floorDiv(epochSecond, 60);
+        int second = (int) (epochSecond - minute * 60);
+        long later = secondBits & (-2L << second);
+        if (later != 0 && matches(minute)) {
+            return minute * 60 + Long.numberOfTrailingZeros(later);
         }
+        long next = nextExecution(minute);
+        return next == NEVER ? NEVER : next * 60 + Long.numberOfTrailingZeros(secondBits);
+    }
+
+    /* nextExecution on the five fields of Vixie cron */
+    private long nextMatch(long epochMinute) {
+        long start = epochMinute + 1;
+        long epochDay = Math.floorDiv(start, EpochCalendar.MINUTES_PER_DAY);
+        long date = EpochCalendar.civilFromDays(epochDay);
+        int day = EpochCalendar.day(date);
+        return nextExecution(minuteBits, hourBits, dayOfMonthBits, monthBits, dayOfWeekBits, dayRestricted,
+                             EpochCalendar.year(date), EpochCalendar.month(date), day,
+                             (int) (start - epochDay * EpochCalendar.MINUTES_PER_DAY), epochDay - day + 1);
+    }
+
+    /* The next execution strictly after time on the wall-clock time of its zone, as an instant in that zone,
+       or null when the schedule never fires again. The daylight saving transitions are handled by policy. */
+    public ZonedDateTime nextExecution(ZonedDateTime time, DstPolicy policy) {
+        long next = nextExecution(Math.floorDiv(time.toEpochSecond(), 60), time.getZone(), policy);
+        if (next == NEVER) {
+            return null;
+        }
+        return Instant.ofEpochSecond(next * 60).atZone(time.getZone());
+    }
+
+    public long nextExecution(long epochMinute, ZoneId zone) {
+        return nextExecution(epochMinute, zone, DstPolicy.LENIENT);
+    }
+
+    /* The next execution strictly after the instant epochMinute, with the fields matched against the
+       wall-clock time of zone. Returns the epoch minute of the instant it runs at, or NEVER.
+       The search runs on local wall-clock minutes one offset segment of the zone at a time, and the
+       result is converted to an instant once with the offset of its segment. */
+    public long nextExecution(long epochMinute, ZoneId zone, DstPolicy policy) {
+        long instant = epochMinute;
+        while (true) {
+            long epochSecond = (instant + 1) * 60;
+            ZoneTransitions.Table table = ZoneTransitions.table(zone, epochSecond);
+            int segment = table.segment(epochSecond);
+            int offset = Math.floorDiv(table.offsetSeconds(segment), 60);
+            int before = Math.floorDiv(table.offsetSecondsBefore(segment), 60);
+            long start = table.startMinute(segment);
+            long end = table.endMinute(segment);
+
+            long from = instant + offset;  /* local wall-clock minute, exclusive */
+            if (before > offset && policy != DstPolicy.REPEAT_OVERLAP) {
+                /* Wall-clock times up to start + before were already seen before the clocks went back */
+                from = Math.max(from, start + before - 1);
+            } else if (before < offset && instant + 1 == start && policy != DstPolicy.SKIP_GAP) {
+                long skipped = nextExecution(start + before - 1);
+                if (skipped < start + offset) {
+                    return start;
+                }
+            }
+            long next = nextExecution(from);
+            if (next == NEVER) {
+                return NEVER;
+            }
+            if (next - offset < end) {
+                return next - offset;
+            }
+            instant = end - 1;
+        }
+    }
 
-        Field[] fields = new Field[5];
-        for (int i = 0; i < parts.length; i++) {
-            fields[i] = parseField(parts[i]);
+    /* The last execution strictly before time, worked out on the wall-clock time of its zone */
+    public ZonedDateTime previousExecution(ZonedDateTime time) {
+        LocalDateTime local = time.toLocalDateTime();
+        long localMinute = Math.floorDiv(local.toEpochSecond(ZoneOffset.UTC), 60);
+        if (local.getSecond() > 0 || local.getNano() > 0) {
+            localMinute++;  /* the execution at the start of the current minute is before time */
         }
-        return new CronTime(fields[0], fields[1], fields[2], fields[3], fields[4]);
+        long previous = previousExecution(localMinute);
+        if (previous == NEVER_BEFORE) {
+            return null;
+        }
+        return ZonedDateTime.of(LocalDateTime.ofEpochSecond(previous * 60, 0, ZoneOffset.UTC), time.getZone());
     }
 
-    static Field parseField(String field) {
-        if (field.equalsIgnoreCase("*")) {
-            return new Field(FieldType.WILDCARD);
+    /* Compiled previous execution, the mirror image of nextExecution(long).
+       Returns the last matching minute strictly before epochMinute, or NEVER_BEFORE. */
+    public long previousExecution(long epochMinute) {
+        if (yearBits == null) {
+            return previousMatch(epochMinute);
         }
-        if (field.contains("*/")) {
-            String[] parts = field.split("\\*/"); /* Have to escape the '*' because it has meaning in regex  */
-            /* The split results in an empty string as the first element in the 'parts' array */
-            if (parts.length != 2) {
-                System.out.println("INTERVAL is invalid");
-                // IllegalArgument
+        long to = epochMinute;
+        while (true) {
+            int year = yearOf(to - 1);
+            if (!allowsYear(year)) {
+                int allowed = allowedYearTo(year);
+                if (allowed < 0) {
+                    return NEVER_BEFORE;
+                }
+                to = firstMinuteOf(allowed + 1);
             }
-            Field f = new Field(FieldType.INTERVAL);
-            f.addValue(Integer.valueOf(parts[1]));
-            return f;
-        }
-        if (field.contains("-")) {
-            String[] parts = field.split("-");
-            if (parts.length != 2) {
-                System.out.println("RANGE is invalid");
-                // IllegalArgument
+            long previous = previousMatch(to);
+            if (previous == NEVER_BEFORE || allowsYear(yearOf(previous))) {
+                return previous;
             }
-            Field f = new Field(FieldType.RANGE);
-            f.addValue(Integer.valueOf(parts[0]));  /* Beginning of range */
-            f.addValue(Integer.valueOf(parts[1]));  /* End of range */
-            return f;
-        }
-        if (field.contains(",")) {
-            String[] parts = field.split(",");
-            Field f = new Field(FieldType.LIST);
-            for(int i = 0; i < parts.length; i++) {
-                f.addValue(Integer.valueOf(parts[i]));
+            to = firstMinuteOf(yearOf(previous));
+        }
+    }
+
+    private long previousMatch(long epochMinute) {
+        if (minuteBits == 0 || hourBits == 0 || monthBits == 0) {
+            return NEVER_BEFORE;
+        }
+        long start = epochMinute - 1;
+        long epochDay = Math.floorDiv(start, EpochCalendar.MINUTES_PER_DAY);
+        int minuteOfDay = (int) (start - epochDay * EpochCalendar.MINUTES_PER_DAY);
+        long date = EpochCalendar.civilFromDays(epochDay);
+        int year = EpochCalendar.year(date);
+        int month = EpochCalendar.month(date);
+        int day = EpochCalendar.day(date);
+        int hour = minuteOfDay / EpochCalendar.MINUTES_PER_HOUR;
+        int minute = minuteOfDay % EpochCalendar.MINUTES_PER_HOUR;
+        int firstYear = year - MAX_SEARCH_YEARS;
+        /* Moving back a month starts from day 31, dayBits only has the days the month actually has */
+        while (year >= firstYear) {
+            long months = monthBits & atOrBelow(month);
+            if (months == 0) {
+                year--;
+                month = highest(monthBits);
+                day = 31; hour = 23; minute = 59;
+                continue;
+            }
+            int m = highest(months);
+            if (m != month) {
+                month = m;
+                day = 31; hour = 23; minute = 59;
+            }
+
+            long days = dayBits(year, month) & atOrBelow(day);
+            if (days == 0) {
+                month--;
+                day = 31; hour = 23; minute = 59;
+                continue;
+            }
+            int d = highest(days);
+            if (d != day) {
+                day = d;
+                hour = 23; minute = 59;
             }
-            return f;
+
+            long hours = hourBits & atOrBelow(hour);
+            if (hours == 0) {
+                day--;
+                hour = 23; minute = 59;
+                continue;
+            }
+            int h = highest(hours);
+            if (h != hour) {
+                hour = h;
+                minute = 59;
+            }
+
+            long minutes = minuteBits & atOrBelow(minute);
+            if (minutes == 0) {
+                hour--;
+                minute = 59;
+                continue;
+            }
+            minute = highest(minutes);
+            return EpochCalendar.daysFromCivil(year, month, day) * EpochCalendar.MINUTES_PER_DAY
+                + hour * EpochCalendar.MINUTES_PER_HOUR + minute;
         }
+        return NEVER_BEFORE;
+    }
 
-        Field f = new Field(FieldType.NUMBER);
-        f.addValue(Integer.valueOf(field));
-        return f;
+    /* Bits 0 through n, none when n is negative */
+    private static long atOrBelow(int n) {
+        return n < 0 ? 0L : (2L << n) - 1;
     }
 
-    public Field getMinutes() { return minutes; }
-    public Field getHours() { return hours; }
-    public Field getDaysOfMonth() { return daysOfMonth; }
-    public Field getMonths() { return months; }
-    public Field getDaysOfWeek() { return daysOfWeek; }
+    private static int highest(long bits) {
+        return 63 - Long.numberOfLeadingZeros(bits);
+    }
 
-    ZonedDateTime nextMinute(ZonedDateTime current) {
-        /* Always add one to the minute to avoid a job executing multiple times in one minute */
-        int next = getMinutes().getNext(current.getMinute() + 1, 0, 59);
-        return current.withMinute(next);
-    }
-
-    ZonedDateTime nextHour(ZonedDateTime current) {
-        int nextBase = current.getHour();
-        if (getMinutes().getOverflow()) {
-            nextBase += 1;
-        }
-        int next = getHours().getNext(nextBase, 0, 23);
-        return current.withHour(next);
-    }
-
-    /* TODO add check and logic if one of the day specifications is a wildcard */
-    /* This will return the next day in terms of day of the month */
-    ZonedDateTime nextDay(ZonedDateTime current) {
-        int nextBaseDOW = current.getDayOfWeek().getValue();
-        int nextBaseDOM = current.getDayOfMonth();
-        if (getHours().getOverflow()) {
-            nextBaseDOW += 1;
-            nextBaseDOM += 1;
-        }
-        int nextDOW = getDaysOfWeek().getNext(nextBaseDOW, 1, 7);
-        int dowDiff = dayOfWeekDiff(nextBaseDOW, nextDOW);
-        /* still need to handle if this overflows */
-        int currentMonthLength = current.getMonth().length(isLeapYear(current.getYear()));
-        int nextDOWinDOM = nextBaseDOM + dowDiff;
-        boolean dowToDOMOverflow = false;
-        if (nextDOWinDOM > currentMonthLength) {
-            dowToDOMOverflow = true;
-            nextDOWinDOM = nextDOWinDOM - currentMonthLength;
-        }
-
-        int nextDOM = getDaysOfMonth().getNext(nextBaseDOM, 1, currentMonthLength);
-
-        /* Logic for if one of the day fields is a wildcard, restrict to the specified field */
-        int next = Math.min(nextDOWinDOM, nextDOM);
-        if (getDaysOfWeek().getType() == FieldType.WILDCARD && getDaysOfMonth().getType() == FieldType.WILDCARD) {
-            next = Math.min(nextDOWinDOM, nextDOM);
-        } else if (getDaysOfWeek().getType() == FieldType.WILDCARD) {
-            next = nextDOM;
-        } else if (getDaysOfMonth().getType() == FieldType.WILDCARD) {
-            next = nextDOWinDOM;
-        } else {
-            if (dowToDOMOverflow && getDaysOfMonth().getOverflow()) { // both overflowed
-                getDaysOfMonth().setOverflow(true);
-                next = Math.min(nextDOWinDOM, nextDOM);
-            } else if (dowToDOMOverflow) { // day-of-week-to-day-of-month overflowed month but not days of month
-                next = nextDOM;
-            } else if (getDaysOfMonth().getOverflow()) { // days of month overflowed month but not day-of-week-to-days-of-month
-                getDaysOfMonth().setOverflow(false);
-                next = nextDOWinDOM;
+    /* Executions in (fromMinute, toMinute], for example between the last fire a scheduler saw and now.
+       Walks backwards from toMinute, so when there are more than limit only the most recent limit
+       executions are returned. The result is in chronological order. The array grows with the
+       executions found, so a limit of Integer.MAX_VALUE returns them all. */
+    public long[] missedExecutions(long fromMinute, long toMinute, int limit) {
+        long[] missed = new long[Math.max(0, Math.min(limit, 16))];
+        int count = 0;
+        long previous = previousExecution(toMinute + 1);
+        while (count < limit && previous != NEVER_BEFORE && previous > fromMinute) {
+            if (count == missed.length) {
+                missed = Arrays.copyOf(missed, (int) Math.min(limit, 2L * count));
             }
+            missed[count++] = previous;
+            previous = previousExecution(previous);
+        }
+        long[] chronological = new long[count];
+        for (int i = 0; i < count; i++) {
+            chronological[i] = missed[count - 1 - i];
         }
+        return chronological;
+    }
 
-        System.out.println(String.format("nextBaseDOM: %d. nextBaseDOW: %d", nextBaseDOM, nextBaseDOW));
-        System.out.println(String.format("Next DOM: %d. Next DOW: %d", nextDOM, nextDOW));
-        System.out.println(String.format("nextDOWinDOM: %d. nextDOM: %d", nextDOWinDOM, nextDOM));
-        return current.withDayOfMonth(next);
+    public List<ZonedDateTime> missedExecutions(ZonedDateTime from, ZonedDateTime to, int limit) {
+        long fromMinute = Math.floorDiv(from.toLocalDateTime().toEpochSecond(ZoneOffset.UTC), 60);
+        long toMinute = Math.floorDiv(to.withZoneSameInstant(from.getZone()).toLocalDateTime()
+                                      .toEpochSecond(ZoneOffset.UTC), 60);
+        List<ZonedDateTime> missed = new ArrayList<>();
+        for (long minute : missedExecutions(fromMinute, toMinute, limit)) {
+            missed.add(ZonedDateTime.of(LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC), from.getZone()));
+        }
+        return missed;
+    }
+
+    /* Whether the schedule fires at the minute of time, in the zone of time. Seconds are ignored. */
+    public boolean matches(ZonedDateTime time) {
+        return allowsYear(time.getYear()) && matches(time.getMonthValue(), time.getDayOfMonth(), time.getDayOfWeek().getValue() % 7,
+                       time.getHour(), time.getMinute());
+    }
+
+    /* Whether the schedule fires at epochMinute, evaluated as UTC wall-clock time */
+    public boolean matches(long epochMinute) {
+        long epochDay = Math.floorDiv(epochMinute, EpochCalendar.MINUTES_PER_DAY);
+        int minuteOfDay = (int) (epochMinute - epochDay * EpochCalendar.MINUTES_PER_DAY);
+        long date = EpochCalendar.civilFromDays(epochDay);
+        return allowsYear(EpochCalendar.year(date)) && matches(EpochCalendar.month(date), EpochCalendar.day(date), EpochCalendar.dayOfWeek(epochDay),
+                       minuteOfDay / EpochCalendar.MINUTES_PER_HOUR, minuteOfDay % EpochCalendar.MINUTES_PER_HOUR);
+    }
+
+    /* Whether the schedule fires at epochMinute, evaluated as wall-clock time in zone */
+    public boolean matches(long epochMinute, ZoneId zone) {
+        int offsetSeconds = ZoneTransitions.offsetSeconds(zone, epochMinute * 60);
+        return matches(epochMinute + Math.floorDiv(offsetSeconds, 60));
     }
 
-    int dayOfWeekDiff(int current, int next) {
-        if (current <= next) {
-            return next - current;
-        } else {
-            int toAdd = next == 7 ? 0 : next;
-            return 7 - current + toAdd;
+    /* A bit test per field, days match on either day field when both are restricted */
+    private boolean matches(int month, int dayOfMonth, int dayOfWeek, int hour, int minute) {
+        if ((minuteBits & (1L << minute)) == 0 || (hourBits & (1L << hour)) == 0 || (monthBits & (1L << month)) == 0) {
+            return false;
         }
+        boolean dom = (dayOfMonthBits & (1L << dayOfMonth)) != 0;
+        boolean dow = (dayOfWeekBits & (1L << dayOfWeek)) != 0;
+        return dayRestricted ? dom || dow : dom && dow;
+    }
+
+    /* Every execution at or after fromMinute, lazily and in order */
+    public PrimitiveIterator.OfLong executions(long fromMinute) {
+        return executions(fromMinute, Long.MAX_VALUE);
     }
 
+    /* Every execution in [fromMinute, toMinute), lazily and in order */
+    public PrimitiveIterator.OfLong executions(long fromMinute, long toMinute) {
+        return new ExecutionIterator(this, fromMinute, toMinute);
+    }
+
+    public LongStream executionStream(long fromMinute) {
+        return StreamSupport.longStream(
+            Spliterators.spliteratorUnknownSize(executions(fromMinute), EXECUTION_CHARACTERISTICS), false);
+    }
 
-    ZonedDateTime nextMonth(ZonedDateTime current) {
-        int nextBase = current.getMonthValue();
-        if (getDaysOfMonth().getOverflow()) {
-            nextBase += 1;
+    /* Sized by countBetween, so counting or collecting the stream does not search twice */
+    public LongStream executionStream(long fromMinute, long toMinute) {
+        return StreamSupport.longStream(
+            Spliterators.spliterator(executions(fromMinute, toMinute), countBetween(fromMinute, toMinute),
+                                     EXECUTION_CHARACTERISTICS), false);
+    }
+
+    private static final int EXECUTION_CHARACTERISTICS =
+        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+
+    /* Number of executions in [fromMinute, toMinute), counted a day and a month at a time from the
+       cardinality of the fields instead of visiting every execution. Like nextExecution(long) this
+       counts the minutes a schedule with a seconds field fires in. */
+    public long countBetween(long fromMinute, long toMinute) {
+        if (toMinute <= fromMinute) {
+            return 0;
+        }
+        long fromDay = Math.floorDiv(fromMinute, EpochCalendar.MINUTES_PER_DAY);
+        long toDay = Math.floorDiv(toMinute, EpochCalendar.MINUTES_PER_DAY);
+        int fromMinuteOfDay = (int) (fromMinute - fromDay * EpochCalendar.MINUTES_PER_DAY);
+        int toMinuteOfDay = (int) (toMinute - toDay * EpochCalendar.MINUTES_PER_DAY);
+        if (fromDay == toDay) {
+            return matchesDay(fromDay) ? minutesBefore(toMinuteOfDay) - minutesBefore(fromMinuteOfDay) : 0;
         }
-        int next = getMonths().getNext(nextBase, 1, 12);
+        long count = 0;
+        if (matchesDay(fromDay)) {
+            count += minutesBefore(EpochCalendar.MINUTES_PER_DAY) - minutesBefore(fromMinuteOfDay);
+        }
+        count += matchingDays(fromDay + 1, toDay) * minutesBefore(EpochCalendar.MINUTES_PER_DAY);
+        if (matchesDay(toDay)) {
+            count += minutesBefore(toMinuteOfDay);
+        }
+        return count;
+    }
 
-        return current.withMonth(next);
+    /* Matching minutes of a matching day before minuteOfDay */
+    private long minutesBefore(int minuteOfDay) {
+        int hour = minuteOfDay / EpochCalendar.MINUTES_PER_HOUR;
+        int minute = minuteOfDay % EpochCalendar.MINUTES_PER_HOUR;
+        long count = (long) Long.bitCount(hourBits & ((1L << hour) - 1)) * Long.bitCount(minuteBits);
+        if ((hourBits & (1L << hour)) != 0) {
+            count += Long.bitCount(minuteBits & ((1L << minute) - 1));
+        }
+        return count;
     }
 
-    ZonedDateTime nextYear(ZonedDateTime current) {
-        int next = getMonths().getOverflow() ? current.getYear() + 1 : current.getYear();
-        return current.withYear(next);
+    private boolean matchesDay(long epochDay) {
+        long date = EpochCalendar.civilFromDays(epochDay);
+        int month = EpochCalendar.month(date);
+        return allowsYear(EpochCalendar.year(date)) && (monthBits & (1L << month)) != 0
+            && (dayBits(EpochCalendar.year(date), month) & (1L << EpochCalendar.day(date))) != 0;
     }
 
-    boolean isLeapYear(int year) {
-        Calendar cal = Calendar.getInstance();
-        cal.set(Calendar.YEAR, year);
-        return cal.getActualMaximum(Calendar.DAY_OF_YEAR) > 365;
+    /* Matching days in [fromDay, toDay) */
+    private long matchingDays(long fromDay, long toDay) {
+        if (toDay <= fromDay) {
+            return 0;
+        }
+        long from = EpochCalendar.civilFromDays(fromDay);
+        long to = EpochCalendar.civilFromDays(toDay);
+        int year = EpochCalendar.year(from);
+        int month = EpochCalendar.month(from);
+        int firstDay = EpochCalendar.day(from);
+        int lastYear = EpochCalendar.year(to);
+        int lastMonth = EpochCalendar.month(to);
+        long count = 0;
+        while (year < lastYear || (year == lastYear && month <= lastMonth)) {
+            if ((monthBits & (1L << month)) != 0 && allowsYear(year)) {
+                long days = dayBits(year, month) & (-1L << firstDay);
+                if (year == lastYear && month == lastMonth) {
+                    days &= (1L << EpochCalendar.day(to)) - 1;
+                }
+                count += Long.bitCount(days);
+            }
+            firstDay = 1;
+            if (++month > 12) {
+                month = 1;
+                year++;
+            }
+        }
+        return count;
     }
 
-    /* need get next unit methods
-       in the get next unit, take a zdt, check if there is overflow from the unit beloww
-       if there is, add on to the unit from the zdt and pass it to the get next int method
-       if there is no overflow the just pass the unit to the get next int.
-       For minutes always add one to the current value
-    */
+    /* Next execution for many schedules from the same minute, out[i] is the next execution of schedules[i].
+       The calendar fields of epochMinute are worked out once for the whole batch and large batches are
+       split across the common fork-join pool. See CronTimeBatch to keep the schedules as primitive arrays. */
+    public static void nextExecutions(CronTime[] schedules, long epochMinute, long[] out) {
+        if (out.length < schedules.length) {
+            throw new IllegalArgumentException("Output holds " + out.length + " values for " +
+                                               schedules.length + " schedules");
+        }
+        SearchStart start = new SearchStart(epochMinute);
+        CronTimeBatch.forEachRange(schedules.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                CronTime c = schedules[i];
+                out[i] = c.yearBits != null ? c.nextExecution(epochMinute)
+                    : start.nextExecution(c.minuteBits, c.hourBits, c.dayOfMonthBits, c.monthBits,
+                                          c.dayOfWeekBits, c.dayRestricted);
+            }
+        });
+    }
 
-    public ZonedDateTime nextExecution(ZonedDateTime currentTime) {
-        // Reset all overflow switches
-        ZonedDateTime next = nextMinute(currentTime);
-        next = nextHour(next);
-        next = nextDay(next);
-        next = nextMonth(next);
-        next = nextYear(next);
-        return next;
+    /* Calendar fields of the minute after epochMinute, where a search for the next execution starts */
+    static final class SearchStart {
+        final int year, month, day, minuteOfDay;
+        final long firstOfMonth;  /* epoch day of the 1st of the month */
+
+        SearchStart(long epochMinute) {
+            long start = epochMinute + 1;
+            long epochDay = Math.floorDiv(start, EpochCalendar.MINUTES_PER_DAY);
+            long date = EpochCalendar.civilFromDays(epochDay);
+            this.year = EpochCalendar.year(date);
+            this.month = EpochCalendar.month(date);
+            this.day = EpochCalendar.day(date);
+            this.minuteOfDay = (int) (start - epochDay * EpochCalendar.MINUTES_PER_DAY);
+            this.firstOfMonth = epochDay - day + 1;
+        }
+
+        long nextExecution(long minuteBits, long hourBits, long dayOfMonthBits, long monthBits,
+                           long dayOfWeekBits, boolean dayRestricted) {
+            return CronTime.nextExecution(minuteBits, hourBits, dayOfMonthBits, monthBits, dayOfWeekBits,
+                                          dayRestricted, year, month, day, minuteOfDay, firstOfMonth);
+        }
+    }
+
+    /* The search itself, on the compiled fields and the calendar fields of the first minute that may match.
+       firstOfMonth is the epoch day of the 1st of the starting month, it is recomputed once the month changes. */
+    static long nextExecution(long minuteBits, long hourBits, long dayOfMonthBits, long monthBits,
+                              long dayOfWeekBits, boolean dayRestricted,
+                              int year, int month, int day, int minuteOfDay, long firstOfMonth) {
+        if (minuteBits == 0 || hourBits == 0 || monthBits == 0) {
+            return NEVER;
+        }
+        int lastYear = year + MAX_SEARCH_YEARS;
+        int hour = minuteOfDay / EpochCalendar.MINUTES_PER_HOUR;
+        int minute = minuteOfDay % EpochCalendar.MINUTES_PER_HOUR;
+        long monthStart = firstOfMonth;
+        while (year <= lastYear) {
+            long months = monthBits & (-1L << month);
+            if (months == 0) {
+                year++;
+                month = Long.numberOfTrailingZeros(monthBits);
+                monthStart = Long.MIN_VALUE;
+                day = 1; hour = 0; minute = 0;
+                continue;
+            }
+            int m = Long.numberOfTrailingZeros(months);
+            if (m != month) {
+                month = m;
+                monthStart = Long.MIN_VALUE;
+                day = 1; hour = 0; minute = 0;
+            }
+            if (monthStart == Long.MIN_VALUE) {
+                monthStart = EpochCalendar.daysFromCivil(year, month, 1);
+            }
+
+            long days = dayBits(dayOfMonthBits, dayOfWeekBits, dayRestricted,
+                                EpochCalendar.lengthOfMonth(year, month),
+                                EpochCalendar.dayOfWeek(monthStart)) & (-1L << day);
+            if (days == 0) {
+                month++;
+                monthStart = Long.MIN_VALUE;
+                day = 1; hour = 0; minute = 0;
+                continue;
+            }
+            int d = Long.numberOfTrailingZeros(days);
+            if (d != day) {
+                day = d;
+                hour = 0; minute = 0;
+            }
+
+            long hours = hourBits & (-1L << hour);
+            if (hours == 0) {
+                day++;
+                hour = 0; minute = 0;
+                continue;
+            }
+            int h = Long.numberOfTrailingZeros(hours);
+            if (h != hour) {
+                hour = h;
+                minute = 0;
+            }
+
+            long minutes = minuteBits & (-1L << minute);
+            if (minutes == 0) {
+                hour++;
+                minute = 0;
+                continue;
+            }
+            minute = Long.numberOfTrailingZeros(minutes);
+            return (monthStart + day - 1) * EpochCalendar.MINUTES_PER_DAY
+                + hour * EpochCalendar.MINUTES_PER_HOUR + minute;
+        }
+        return NEVER;
+    }
+
+    /* Days of the given month that satisfy the day of month and day of week fields, bit n is day n */
+    long dayBits(int year, int month) {
+        return dayBits(dayOfMonthBits, dayOfWeekBits, dayRestricted, EpochCalendar.lengthOfMonth(year, month),
+                       EpochCalendar.dayOfWeek(EpochCalendar.daysFromCivil(year, month, 1)));
+    }
+
+    /* firstDayOfWeek is the weekday of the 1st of the month, Sunday being 0 */
+    static long dayBits(long dayOfMonthBits, long dayOfWeekBits, boolean dayRestricted,
+                        int length, int firstDayOfWeek) {
+        long inMonth = (-1L >>> (63 - length)) & ~1L;
+        /* Rotate the week so bit 0 is the weekday of the 1st, then repeat it across the month */
+        long week = ((dayOfWeekBits >>> firstDayOfWeek) | (dayOfWeekBits << (7 - firstDayOfWeek))) & 0x7F;
+        long dowDays = (week | week << 7 | week << 14 | week << 21 | week << 28) << 1;
+        long days = dayRestricted ? dayOfMonthBits | dowDays : dayOfMonthBits & dowDays;
+        return days & inMonth;
+    }
+
+    boolean isDayRestricted() { return dayRestricted; }
+
+    /* Equal when both fire at the same seconds of the same minutes, whatever their fields were written as:
+       the masks are the normalized value sets of the fields, so '*' and '0-59', '1,2,3' and '1-3' or
+       '0' and '7' for Sunday compile to the same masks and are equal */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CronTime)) {
+            return false;
+        }
+        CronTime other = (CronTime) o;
+        return secondBits == other.secondBits && sameMinutes(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return minutesHash() * 31 + Long.hashCode(secondBits);
+    }
+
+    /* Whether other fires at the same minutes, seconds aside, whatever the fields were written as */
+    boolean sameMinutes(CronTime other) {
+        return minuteBits == other.minuteBits && hourBits == other.hourBits
+            && dayOfMonthBits == other.dayOfMonthBits && monthBits == other.monthBits
+            && dayOfWeekBits == other.dayOfWeekBits && dayRestricted == other.dayRestricted
+            && Arrays.equals(yearBits, other.yearBits);
+    }
+
+    int minutesHash() {
+        long h = minuteBits;
+        h = h * 31 + hourBits;
+        h = h * 31 + dayOfMonthBits;
+        h = h * 31 + monthBits;
+        h = h * 31 + dayOfWeekBits;
+        return Long.hashCode(h) * 31 + Arrays.hashCode(yearBits) + (dayRestricted ? 1 : 0);
     }
 }
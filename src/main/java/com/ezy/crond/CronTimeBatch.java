@@ -0,0 +1,96 @@
+package com.ezy.crond;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/* The compiled fields of many schedules laid out as parallel primitive arrays, for dispatchers that
+   recompute the next execution of a large set of schedules from the same minute over and over.
+   Schedules restricted to some years are rare and searched on the CronTime itself.
+   Immutable, one instance can be evaluated from several threads at once. */
+public final class CronTimeBatch {
+    /* Below this many schedules a batch is evaluated on the calling thread */
+    static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private final long[] minuteBits;
+    private final long[] hourBits;
+    private final long[] dayOfMonthBits;
+    private final long[] monthBits;
+    private final long[] dayOfWeekBits;
+    private final boolean[] dayRestricted;
+    private final CronTime[] yearRestricted;  /* null for the schedules allowing every year */
+
+    public CronTimeBatch(CronTime[] schedules) {
+        int size = schedules.length;
+        minuteBits = new long[size];
+        hourBits = new long[size];
+        dayOfMonthBits = new long[size];
+        monthBits = new long[size];
+        dayOfWeekBits = new long[size];
+        dayRestricted = new boolean[size];
+        yearRestricted = new CronTime[size];
+        for (int i = 0; i < size; i++) {
+            CronTime c = schedules[i];
+            minuteBits[i] = c.getMinuteBits();
+            hourBits[i] = c.getHourBits();
+            dayOfMonthBits[i] = c.getDayOfMonthBits();
+            monthBits[i] = c.getMonthBits();
+            dayOfWeekBits[i] = c.getDayOfWeekBits();
+            dayRestricted[i] = c.isDayRestricted();
+            yearRestricted[i] = c.isYearRestricted() ? c : null;
+        }
+    }
+
+    public int size() { return minuteBits.length; }
+
+    /* out[i] is set to the next execution of schedule i strictly after epochMinute, or CronTime.NEVER */
+    public void nextExecutions(long epochMinute, long[] out) {
+        if (out.length < size()) {
+            throw new IllegalArgumentException("Output holds " + out.length + " values for " +
+                                               size() + " schedules");
+        }
+        CronTime.SearchStart start = new CronTime.SearchStart(epochMinute);
+        forEachRange(size(), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                out[i] = yearRestricted[i] != null ? yearRestricted[i].nextExecution(epochMinute)
+                    : start.nextExecution(minuteBits[i], hourBits[i], dayOfMonthBits[i], monthBits[i],
+                                          dayOfWeekBits[i], dayRestricted[i]);
+            }
+        });
+    }
+
+    interface Range {
+        void run(int from, int to);
+    }
+
+    /* Runs body over [0, size), split in halves on the common fork-join pool when the range is large */
+    static void forEachRange(int size, Range body) {
+        if (size <= PARALLEL_THRESHOLD) {
+            body.run(0, size);
+        } else {
+            ForkJoinPool.commonPool().invoke(new Split(body, 0, size));
+        }
+    }
+
+    private static final class Split extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Range body;
+        private final int from, to;
+
+        Split(Range body, int from, int to) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                body.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Split(body, from, middle), new Split(body, middle, to));
+        }
+    }
+}
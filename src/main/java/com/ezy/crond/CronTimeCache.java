@@ -0,0 +1,146 @@
+package com.ezy.crond;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/* Bounded, concurrent cache from normalized cron expressions to their parsed CronTime.
+   Jobs sharing an expression share one immutable CronTime instead of each holding their own.
+   Once the cache grows past its maximum size entries are evicted with the CLOCK algorithm:
+   a lookup marks an entry as referenced, and eviction gives referenced entries a second chance.
+   The clock is a queue of the entries in the order they were cached, its head being the hand: the
+   hand evicts an entry that was not referenced since it last passed, and sends a referenced one
+   round to the tail again, so every sweep carries on where the previous one stopped. */
+public final class CronTimeCache {
+    public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    private static final CronTimeCache SHARED = new CronTimeCache(DEFAULT_MAXIMUM_SIZE);
+
+    private static final class Entry {
+        final String key;
+        final CronTime cronTime;
+        volatile boolean referenced;
+
+        Entry(String key, CronTime cronTime) {
+            this.key = key;
+            this.cronTime = cronTime;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> clock = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final int maximumSize;
+
+    public CronTimeCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /* The cache behind CronTime.parseCached */
+    public static CronTimeCache shared() { return SHARED; }
+
+    public CronTime parse(String crontab) {
+        String expression = normalize(crontab);
+        return lookup(expression, expression, null);
+    }
+
+    /* Expressions with 'H' fields are cached per seed, the others are shared whatever the seed */
+    public CronTime parse(String crontab, String seed) {
+        String expression = normalize(crontab);
+        if (!CronParser.isHashed(expression)) {
+            return lookup(expression, expression, null);
+        }
+        return lookup(expression + '\n' + seed, expression, seed);
+    }
+
+    private CronTime lookup(String key, String expression, String seed) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.referenced = true;
+            return entry.cronTime;
+        }
+        Entry parsed = new Entry(key, CronTime.parse(expression, seed));
+        entry = entries.putIfAbsent(key, parsed);
+        if (entry != null) {
+            entry.referenced = true;
+            return entry.cronTime;
+        }
+        clock.offer(parsed);
+        if (entries.size() > maximumSize) {
+            evict();
+        }
+        return parsed.cronTime;
+    }
+
+    public int size() { return entries.size(); }
+    public int getMaximumSize() { return maximumSize; }
+
+    public void clear() {
+        evictionLock.lock();
+        try {
+            entries.clear();
+            clock.clear();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /* One thread sweeps at a time, the others carry on and let it catch up. The hand goes round the
+       clock twice at most, every entry it meets the second time is unreferenced unless looked up since. */
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            for (int moves = 2 * clock.size(); moves > 0 && entries.size() > maximumSize; moves--) {
+                Entry entry = clock.poll();
+                if (entry == null) {
+                    break;
+                }
+                if (entry.referenced) {
+                    entry.referenced = false;
+                    clock.offer(entry);
+                } else {
+                    entries.remove(entry.key, entry);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /* Upper case fields separated by a single space without leading or trailing blanks, names and macros
+       are case insensitive.
+       Returns the expression itself when it already is, which is the common case. */
+    static String normalize(String crontab) {
+        int length = crontab.length();
+        boolean normalized = length > 0
+            && !CronTime.isSeparator(crontab.charAt(0))
+            && !CronTime.isSeparator(crontab.charAt(length - 1));
+        for (int i = 0; normalized && i < length; i++) {
+            char c = crontab.charAt(i);
+            normalized = c != '\t' && !(c == ' ' && crontab.charAt(i - 1) == ' ') && !Character.isLowerCase(c);
+        }
+        if (normalized) {
+            return crontab;
+        }
+        StringBuilder sb = new StringBuilder(length);
+        boolean separator = false;
+        for (int i = 0; i < length; i++) {
+            char c = crontab.charAt(i);
+            if (CronTime.isSeparator(c)) {
+                separator = sb.length() > 0;
+            } else {
+                if (separator) {
+                    sb.append(' ');
+                    separator = false;
+                }
+                sb.append(Character.toUpperCase(c));
+            }
+        }
+        return sb.toString();
+    }
+}
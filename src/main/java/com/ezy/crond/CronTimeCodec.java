@@ -0,0 +1,230 @@
+package com.ezy.crond;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ezy.crond.CronTime.Field;
+import com.ezy.crond.CronTime.FieldType;
+import com.ezy.crond.CronTime.Unit;
+
+/* Fixed-width binary form of a CronTime, so stored schedules are loaded again without parsing.
+   Every field is kept as the bitmask of its values together with its FieldType and, for an INTERVAL,
+   its step, which is all a Field is built from. Layout of the BYTES bytes, in the order of the buffer:
+
+     0  long   minute bits          20  short  field types, 3 bits per field starting with the minutes
+     8  int    hour bits            22  byte[5] interval steps, 0 when the field is not an INTERVAL
+    12  int    day of month bits    27  byte   interval step of the seconds
+    16  short  month bits           28  short  interval step of the years
+    18  byte   day of week bits     30  short  day fields written starting with '*'
+    19  byte   types of the seconds and of the years, 3 bits each
+    32  long   second bits          40  long[3] year bits, bit n is year 1970 + n
+
+   The day of week bits run from 0 to 7 with Sunday on both ends. Bit 0 of the short at 30 is set when
+   the days of the month start with '*' and bit 1 when the days of the week do, which decides whether
+   a day matches on either day field or on both. Schedules written before a step counted from the
+   lowest value of its field, whose INTERVALs do not give their stored bits, are read as the LIST of
+   those bits so they keep firing as they did.
+
+   Decoding with one codec hands out the same CronTime for identical schedules, so a bulk load of
+   jobs sharing a handful of expressions builds each of them once. Not safe for concurrent use. */
+public final class CronTimeCodec {
+    public static final int BYTES = 64;
+
+    private static final int TYPE_BITS = 3;
+    private static final int MAX_STEP = 64;  /* any larger step allows the same values */
+
+    /* The longs of an encoded schedule */
+    private static final class Key {
+        final long[] words = new long[BYTES / 8];
+
+        Key(ByteBuffer buffer, int offset) {
+            for (int i = 0; i < words.length; i++) {
+                words[i] = buffer.getLong(offset + i * 8);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(words, ((Key) o).words);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(words);
+        }
+    }
+
+    private final Map<Key, CronTime> decoded = new HashMap<>();
+
+    /* Writes cronTime at offset without moving the position of buffer */
+    public static void write(CronTime cronTime, ByteBuffer buffer, int offset) {
+        Field[] fields = fields(cronTime);
+        buffer.putLong(offset, fields[0].toBits(Unit.MINUTE.min, Unit.MINUTE.max));
+        buffer.putInt(offset + 8, (int) fields[1].toBits(Unit.HOUR.min, Unit.HOUR.max));
+        buffer.putInt(offset + 12, (int) fields[2].toBits(Unit.DAY_OF_MONTH.min, Unit.DAY_OF_MONTH.max));
+        buffer.putShort(offset + 16, (short) fields[3].toBits(Unit.MONTH.min, Unit.MONTH.max));
+        buffer.put(offset + 18, (byte) fields[4].toBits(Unit.DAY_OF_WEEK.min, Unit.DAY_OF_WEEK.max));
+        int types = 0;
+        for (int i = 0; i < fields.length; i++) {
+            types |= fields[i].getType().ordinal() << (i * TYPE_BITS);
+            buffer.put(offset + 22 + i, (byte) step(fields[i], MAX_STEP));
+        }
+        buffer.putShort(offset + 20, (short) types);
+
+        Field seconds = cronTime.getSeconds();
+        Field years = cronTime.getYears();
+        buffer.put(offset + 19, (byte) (seconds.getType().ordinal() | years.getType().ordinal() << TYPE_BITS));
+        buffer.put(offset + 27, (byte) step(seconds, MAX_STEP));
+        /* A step past the last year allows none of them, as does any larger one */
+        buffer.putShort(offset + 28, (short) step(years, Unit.YEAR.max + 1));
+        buffer.putShort(offset + 30, (short) ((fields[2].startsWithStar() ? 1 : 0) |
+                                              (fields[4].startsWithStar() ? 2 : 0)));
+        buffer.putLong(offset + 32, seconds.toBits(Unit.SECOND.min, Unit.SECOND.max));
+        long[] yearBits = years.toWords(Unit.YEAR.min, Unit.YEAR.max);
+        for (int i = 0; i < yearBits.length; i++) {
+            buffer.putLong(offset + 40 + i * 8, yearBits[i]);
+        }
+    }
+
+    private static int step(Field field, int max) {
+        return field.getType() == FieldType.INTERVAL ? Math.min(field.getValues().get(0), max) : 0;
+    }
+
+    /* Reads the CronTime written at offset, throws IllegalArgumentException when the bytes do not hold one */
+    public CronTime read(ByteBuffer buffer, int offset) {
+        Key key = new Key(buffer, offset);
+        CronTime cronTime = decoded.get(key);
+        if (cronTime == null) {
+            cronTime = decode(buffer, offset);
+            decoded.put(key, cronTime);
+        }
+        return cronTime;
+    }
+
+    private static CronTime decode(ByteBuffer buffer, int offset) {
+        long[] bits = {
+            buffer.getLong(offset),
+            buffer.getInt(offset + 8) & 0xFFFFFFFFL,
+            buffer.getInt(offset + 12) & 0xFFFFFFFFL,
+            buffer.getShort(offset + 16) & 0xFFFFL,
+            buffer.get(offset + 18) & 0xFFL,
+        };
+        int types = buffer.getShort(offset + 20) & 0xFFFF;
+        int stars = buffer.getShort(offset + 30);
+        Unit[] units = { Unit.MINUTE, Unit.HOUR, Unit.DAY_OF_MONTH, Unit.MONTH, Unit.DAY_OF_WEEK };
+        Field[] fields = new Field[units.length];
+        for (int i = 0; i < fields.length; i++) {
+            boolean star = i == 2 ? (stars & 1) != 0 : i == 4 && (stars & 2) != 0;
+            fields[i] = field(type(types, i), bits[i], buffer.get(offset + 22 + i) & 0xFF, units[i], star);
+        }
+        int extraTypes = buffer.get(offset + 19) & 0xFF;
+        Field seconds = field(type(extraTypes, 0), buffer.getLong(offset + 32), buffer.get(offset + 27) & 0xFF,
+                              Unit.SECOND, false);
+        Field years = years(type(extraTypes, 1), buffer, offset, buffer.getShort(offset + 28) & 0xFFFF);
+        return new CronTime(seconds, fields[0], fields[1], fields[2], fields[3], fields[4], years);
+    }
+
+    private static int type(int types, int field) {
+        return (types >>> (field * TYPE_BITS)) & ((1 << TYPE_BITS) - 1);
+    }
+
+    /* The year field, built from its words like field() builds the others from their bits */
+    private static Field years(int type, ByteBuffer buffer, int offset, int step) {
+        FieldType[] types = FieldType.values();
+        Unit unit = Unit.YEAR;
+        long[] words = new long[(unit.max - unit.min + 64) >>> 6];
+        List<Integer> values = new ArrayList<>();
+        for (int w = 0; w < words.length; w++) {
+            words[w] = buffer.getLong(offset + 40 + w * 8);
+            for (long remaining = words[w]; remaining != 0; remaining &= remaining - 1) {
+                values.add(unit.min + (w << 6) + Long.numberOfTrailingZeros(remaining));
+            }
+        }
+        if (type >= types.length || (types[type] != FieldType.WILDCARD && types[type] != FieldType.INTERVAL
+                                     && values.isEmpty())) {
+            throw new IllegalArgumentException("Invalid encoded year field");
+        }
+        Field field;
+        switch (types[type]) {
+            case WILDCARD:
+                field = new Field(FieldType.WILDCARD);
+                break;
+            case NUMBER:
+                field = new Field(FieldType.NUMBER, values.subList(0, 1));
+                break;
+            case RANGE:
+                field = new Field(FieldType.RANGE, Arrays.asList(values.get(0), values.get(values.size() - 1)));
+                break;
+            case INTERVAL:
+                field = new Field(FieldType.INTERVAL, Collections.singletonList(step));
+                if (!values.isEmpty() && !Arrays.equals(field.toWords(unit.min, unit.max), words)) {
+                    field = new Field(FieldType.LIST, values, false);  /* written before, see above */
+                }
+                break;
+            case LIST:
+                field = new Field(FieldType.LIST, values);
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid encoded year field");
+        }
+        if (!Arrays.equals(field.toWords(unit.min, unit.max), words)) {
+            throw new IllegalArgumentException("Invalid encoded year field");
+        }
+        return field;
+    }
+
+    private static Field field(int type, long bits, int step, Unit unit, boolean startsWithStar) {
+        FieldType[] types = FieldType.values();
+        long range = (-1L >>> (63 - unit.max)) & (-1L << unit.min);
+        if (type >= types.length || (bits & ~range) != 0) {
+            throw new IllegalArgumentException("Invalid encoded " + unit.name().toLowerCase() + " field");
+        }
+        Field field;
+        switch (types[type]) {
+            case WILDCARD:
+                field = new Field(FieldType.WILDCARD);
+                break;
+            case NUMBER:
+                field = new Field(FieldType.NUMBER, Collections.singletonList(Long.numberOfTrailingZeros(bits)));
+                break;
+            case RANGE:
+                field = new Field(FieldType.RANGE, Arrays.asList(Long.numberOfTrailingZeros(bits),
+                                                                 63 - Long.numberOfLeadingZeros(bits)));
+                break;
+            case INTERVAL:
+                field = new Field(FieldType.INTERVAL, Collections.singletonList(step));
+                if (bits != 0 && field.toBits(unit.min, unit.max) != bits) {
+                    field = new Field(FieldType.LIST, values(bits), false);  /* written before, see above */
+                }
+                break;
+            case LIST:
+                field = new Field(FieldType.LIST, values(bits), startsWithStar);
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid encoded " + unit.name().toLowerCase() + " field");
+        }
+        if (field.toBits(unit.min, unit.max) != bits) {
+            throw new IllegalArgumentException("Invalid encoded " + unit.name().toLowerCase() + " field");
+        }
+        return field;
+    }
+
+    private static List<Integer> values(long bits) {
+        Integer[] values = new Integer[Long.bitCount(bits)];
+        int i = 0;
+        for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+            values[i++] = Long.numberOfTrailingZeros(remaining);
+        }
+        return Arrays.asList(values);
+    }
+
+    private static Field[] fields(CronTime cronTime) {
+        return new Field[] { cronTime.getMinutes(), cronTime.getHours(), cronTime.getDaysOfMonth(),
+                             cronTime.getMonths(), cronTime.getDaysOfWeek() };
+    }
+}
@@ -0,0 +1,13 @@
+package com.ezy.crond;
+
+/* How executions falling on wall-clock times a daylight saving transition skips or repeats are run.
+   Going forward the clocks skip an hour (the gap), going back they repeat one (the overlap). */
+public enum DstPolicy {
+    /* Executions in the gap run once, at the instant it ends, and executions in the overlap run once,
+       the first time that hour comes around. Close to what cron daemons do for jobs at fixed times. */
+    LENIENT,
+    /* Executions in the gap do not run, executions in the overlap run once, the first time around */
+    SKIP_GAP,
+    /* Executions in the gap run once when it ends and executions in the overlap run both times around */
+    REPEAT_OVERLAP
+}
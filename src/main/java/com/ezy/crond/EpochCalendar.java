@@ -0,0 +1,68 @@
+package com.ezy.crond;
+
+/* Proleptic Gregorian calendar arithmetic on primitive epoch values.
+   The conversions follow Howard Hinnant's days_from_civil / civil_from_days algorithms
+   so the compiled CronTime path never has to allocate a LocalDate or ZonedDateTime. */
+final class EpochCalendar {
+    static final int MINUTES_PER_HOUR = 60;
+    static final int MINUTES_PER_DAY = 24 * MINUTES_PER_HOUR;
+
+    private static final int DAYS_PER_ERA = 146097;     /* 400 years */
+    private static final int DAYS_0000_TO_1970 = 719468;
+
+    private EpochCalendar() {}
+
+    static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    static int lengthOfMonth(int year, int month) {
+        switch (month) {
+        case 2:
+            return isLeapYear(year) ? 29 : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    /* Returns the date packed as (year << 16 | month << 8 | day), see year(), month() and day() */
+    static long civilFromDays(long epochDay) {
+        long z = epochDay + DAYS_0000_TO_1970;
+        long era = Math.floorDiv(z, DAYS_PER_ERA);
+        long dayOfEra = z - era * DAYS_PER_ERA;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return pack((int) year, month, day);
+    }
+
+    static long pack(int year, int month, int day) {
+        return ((long) year << 16) | (month << 8) | day;
+    }
+
+    static int year(long packed) { return (int) (packed >> 16); }
+    static int month(long packed) { return (int) (packed >> 8) & 0xFF; }
+    static int day(long packed) { return (int) packed & 0xFF; }
+
+    /* 0 is Sunday through 6 for Saturday, the way cron numbers the days of the week */
+    static int dayOfWeek(long epochDay) {
+        return (int) Math.floorMod(epochDay + 4, 7L); /* 1970-01-01 was a Thursday */
+    }
+}
@@ -0,0 +1,112 @@
+package com.ezy.crond;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/* Successive executions of a CronTime in [from, to), as epoch minutes in UTC.
+   Only the first execution is searched for, after that the iterator keeps the calendar fields of the
+   last match and steps the smallest field that still has a later value, so most steps are a single
+   bit scan of the minutes. Moving into a year the schedule does not allow searches again. */
+final class ExecutionIterator implements PrimitiveIterator.OfLong {
+    private final CronTime cronTime;
+    private final long to;
+    private final int firstHour, firstMinute;
+
+    private int year, month, day, hour, minute;
+    private long monthStart;  /* epoch day of the 1st of the month */
+    private long days;        /* matching days of the month */
+    private long next;        /* the pending execution, or NEVER once exhausted */
+
+    ExecutionIterator(CronTime cronTime, long from, long to) {
+        this.cronTime = cronTime;
+        this.to = to;
+        this.firstHour = Long.numberOfTrailingZeros(cronTime.getHourBits());
+        this.firstMinute = Long.numberOfTrailingZeros(cronTime.getMinuteBits());
+
+        next = position(cronTime.nextExecution(from - 1));
+    }
+
+    /* Sets the calendar fields to those of execution and returns it */
+    private long position(long execution) {
+        if (execution == CronTime.NEVER || execution >= to) {
+            return CronTime.NEVER;
+        }
+        long epochDay = Math.floorDiv(execution, EpochCalendar.MINUTES_PER_DAY);
+        int minuteOfDay = (int) (execution - epochDay * EpochCalendar.MINUTES_PER_DAY);
+        long date = EpochCalendar.civilFromDays(epochDay);
+        year = EpochCalendar.year(date);
+        month = EpochCalendar.month(date);
+        day = EpochCalendar.day(date);
+        hour = minuteOfDay / EpochCalendar.MINUTES_PER_HOUR;
+        minute = minuteOfDay % EpochCalendar.MINUTES_PER_HOUR;
+        monthStart = epochDay - day + 1;
+        days = cronTime.dayBits(year, month);
+        return execution;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != CronTime.NEVER;
+    }
+
+    @Override
+    public long nextLong() {
+        if (next == CronTime.NEVER) {
+            throw new NoSuchElementException();
+        }
+        long current = next;
+        next = advance();
+        if (next >= to) {
+            next = CronTime.NEVER;
+        }
+        return current;
+    }
+
+    private long advance() {
+        long minutes = cronTime.getMinuteBits() & (-1L << (minute + 1));
+        if (minutes != 0) {
+            minute = Long.numberOfTrailingZeros(minutes);
+            return current();
+        }
+        long hours = cronTime.getHourBits() & (-1L << (hour + 1));
+        if (hours != 0) {
+            hour = Long.numberOfTrailingZeros(hours);
+            minute = firstMinute;
+            return current();
+        }
+        long laterDays = days & (-1L << (day + 1));
+        if (laterDays != 0) {
+            day = Long.numberOfTrailingZeros(laterDays);
+            hour = firstHour;
+            minute = firstMinute;
+            return current();
+        }
+        long monthBits = cronTime.getMonthBits();
+        int lastYear = year + CronTime.MAX_SEARCH_YEARS;
+        while (year <= lastYear) {
+            long months = monthBits & (-1L << (month + 1));
+            if (months == 0) {
+                if (!cronTime.allowsYear(++year)) {
+                    return position(cronTime.nextExecution(current()));
+                }
+                month = Long.numberOfTrailingZeros(monthBits);
+            } else {
+                month = Long.numberOfTrailingZeros(months);
+            }
+            monthStart = EpochCalendar.daysFromCivil(year, month, 1);
+            days = cronTime.dayBits(year, month);
+            if (days != 0) {
+                day = Long.numberOfTrailingZeros(days);
+                hour = firstHour;
+                minute = firstMinute;
+                return current();
+            }
+        }
+        return CronTime.NEVER;
+    }
+
+    private long current() {
+        return (monthStart + day - 1) * EpochCalendar.MINUTES_PER_DAY
+            + hour * EpochCalendar.MINUTES_PER_HOUR + minute;
+    }
+}
@@ -0,0 +1,241 @@
+package com.ezy.crond;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/* Fire times of schedules materialized ahead of time, for schedules that fire so often that searching
+   for every next fire costs more than a binary search over a table of them.
+   Time is cut into windows of horizonDays days from the epoch. The first lookup of a schedule in a
+   window lists the epoch minutes it fires at in that window into a sorted int[], later lookups binary
+   search it, or a Cursor steps through it. Tables are shared by every CronTime firing at the same
+   minutes, however it was written.
+   Once the tables take more than the memory budget they are evicted with the CLOCK algorithm, like
+   CronTimeCache evicts its entries. A schedule whose table alone would not fit the budget is searched
+   as usual. Safe for concurrent use. */
+public final class FireTimeTables {
+    public static final long DEFAULT_BUDGET_BYTES = 64L << 20;
+    public static final int DEFAULT_HORIZON_DAYS = 366;
+
+    /* Charged for every table on top of its fire times, also for the tables that were not built */
+    static final int OVERHEAD_BYTES = 64;
+
+    private static final class Key {
+        final CronTime cronTime;
+        final long window;
+
+        Key(CronTime cronTime, long window) {
+            this.cronTime = cronTime;
+            this.window = window;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return window == k.window && cronTime.sameMinutes(k.cronTime);
+        }
+
+        @Override
+        public int hashCode() {
+            return cronTime.minutesHash() * 31 + Long.hashCode(window);
+        }
+    }
+
+    private static final class Table {
+        final Key key;
+        final int[] minutes;  /* ascending epoch minutes, null when the table was too large to build */
+        volatile boolean referenced;
+
+        Table(Key key, int[] minutes) {
+            this.key = key;
+            this.minutes = minutes;
+        }
+
+        long bytes() {
+            return OVERHEAD_BYTES + (minutes == null ? 0 : 4L * minutes.length);
+        }
+    }
+
+    private final ConcurrentHashMap<Key, Table> tables = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Table> clock = new ConcurrentLinkedQueue<>();  /* its head is the hand */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AtomicLong bytes = new AtomicLong();
+    private final long budgetBytes;
+    private final long windowMinutes;
+
+    public FireTimeTables() {
+        this(DEFAULT_BUDGET_BYTES, DEFAULT_HORIZON_DAYS);
+    }
+
+    public FireTimeTables(long budgetBytes, int horizonDays) {
+        if (budgetBytes < OVERHEAD_BYTES) {
+            throw new IllegalArgumentException("Budget must be at least " + OVERHEAD_BYTES + " bytes: " + budgetBytes);
+        }
+        if (horizonDays < 1) {
+            throw new IllegalArgumentException("Horizon must be at least a day: " + horizonDays);
+        }
+        this.budgetBytes = budgetBytes;
+        this.windowMinutes = (long) horizonDays * EpochCalendar.MINUTES_PER_DAY;
+    }
+
+    /* Same as cronTime.nextExecution(epochMinute), from the table of the window after epochMinute */
+    public long nextExecution(CronTime cronTime, long epochMinute) {
+        int[] minutes = table(cronTime, Math.floorDiv(epochMinute + 1, windowMinutes));
+        if (minutes != null) {
+            int index = indexAfter(minutes, epochMinute);
+            if (index < minutes.length) {
+                return minutes[index];
+            }
+        }
+        /* Past the last fire of the window, the search carries on into the next one */
+        return cronTime.nextExecution(epochMinute);
+    }
+
+    private static int indexAfter(int[] minutes, long epochMinute) {
+        int index = Arrays.binarySearch(minutes, (int) (epochMinute + 1));
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /* Position of one schedule in its table, for a caller asking for the fires of a schedule in order.
+       Following on from the previous fire is a step to the next entry, without looking the table up.
+       A cursor keeps its table while its window lasts, even once the table is evicted. Not safe for
+       concurrent use. */
+    public final class Cursor {
+        private final CronTime cronTime;
+        private long window = Long.MIN_VALUE;
+        private int[] minutes;
+        private int index;
+
+        Cursor(CronTime cronTime) {
+            this.cronTime = cronTime;
+        }
+
+        public CronTime getCronTime() { return cronTime; }
+        public FireTimeTables getTables() { return FireTimeTables.this; }
+
+        /* Same as cronTime.nextExecution(epochMinute) */
+        public long nextExecution(long epochMinute) {
+            long next = Math.floorDiv(epochMinute + 1, windowMinutes);
+            if (next != window) {
+                window = next;
+                minutes = table(cronTime, next);
+                index = 0;
+            }
+            if (minutes == null) {
+                return cronTime.nextExecution(epochMinute);
+            }
+            if (index > 0 && minutes[index - 1] > epochMinute) {
+                index = indexAfter(minutes, epochMinute);  /* moved back */
+            } else if (index < minutes.length && minutes[index] <= epochMinute) {
+                index++;
+                if (index < minutes.length && minutes[index] <= epochMinute) {
+                    index = indexAfter(minutes, epochMinute);  /* skipped ahead */
+                }
+            }
+            return index < minutes.length ? minutes[index] : cronTime.nextExecution(epochMinute);
+        }
+    }
+
+    public Cursor cursor(CronTime cronTime) {
+        return new Cursor(cronTime);
+    }
+
+    /* Fire times of cronTime in the window, null when they are not tabulated */
+    private int[] table(CronTime cronTime, long window) {
+        Key key = new Key(cronTime, window);
+        Table table = tables.get(key);
+        if (table != null) {
+            table.referenced = true;
+            return table.minutes;
+        }
+        Table built = new Table(key, build(cronTime, window));
+        table = tables.putIfAbsent(key, built);
+        if (table != null) {
+            table.referenced = true;
+            return table.minutes;
+        }
+        clock.offer(built);
+        if (bytes.addAndGet(built.bytes()) > budgetBytes) {
+            evict();
+        }
+        return built.minutes;
+    }
+
+    private int[] build(CronTime cronTime, long window) {
+        long from = window * windowMinutes;
+        long to = from + windowMinutes;
+        if (from < Integer.MIN_VALUE || to > Integer.MAX_VALUE) {
+            return null;  /* past the years an int of minutes reaches */
+        }
+        long count = cronTime.countBetween(from, to);
+        if (OVERHEAD_BYTES + 4 * count > budgetBytes) {
+            return null;
+        }
+        int[] minutes = new int[(int) count];
+        PrimitiveIterator.OfLong executions = cronTime.executions(from, to);
+        for (int i = 0; i < minutes.length; i++) {
+            minutes[i] = (int) executions.nextLong();
+        }
+        return minutes;
+    }
+
+    /* Whether the table nextExecution(cronTime, epochMinute) reads is kept, without marking it referenced */
+    boolean isTabulated(CronTime cronTime, long epochMinute) {
+        return tables.containsKey(new Key(cronTime, Math.floorDiv(epochMinute + 1, windowMinutes)));
+    }
+
+    /* Number of tables, including those of schedules too large to tabulate */
+    public int size() { return tables.size(); }
+
+    /* Bytes charged for the tables against the budget */
+    public long bytes() { return bytes.get(); }
+
+    public long getBudgetBytes() { return budgetBytes; }
+
+    public void clear() {
+        evictionLock.lock();
+        try {
+            Iterator<Table> it = tables.values().iterator();
+            while (it.hasNext()) {
+                Table table = it.next();
+                it.remove();
+                bytes.addAndGet(-table.bytes());
+            }
+            clock.clear();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /* One thread sweeps at a time, the others carry on and let it catch up. Tables join the clock in
+       the order they are built and the hand carries on where the previous sweep stopped, going round
+       twice at most. */
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            for (int moves = 2 * clock.size(); moves > 0 && bytes.get() > budgetBytes; moves--) {
+                Table table = clock.poll();
+                if (table == null) {
+                    break;
+                }
+                if (table.referenced) {
+                    table.referenced = false;
+                    clock.offer(table);
+                } else if (tables.remove(table.key, table)) {
+                    bytes.addAndGet(-table.bytes());
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+}
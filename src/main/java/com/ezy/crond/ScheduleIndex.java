@@ -0,0 +1,213 @@
+package com.ezy.crond;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+/* Inverted index answering "which schedules fire at this minute" without testing every schedule.
+   Every registered CronTime gets a small integer id. For each value of each field there is a posting
+   bitmap of the ids whose field allows that value, so the schedules firing at a minute are the
+   intersection of five postings, with the day of month and day of week postings combined the way
+   CronTime.matches combines them.
+   Each posting also keeps a summary with one bit per word of the bitmap telling whether the word is
+   non-zero. A lookup intersects the summaries first and only reads the words that can hold a match,
+   so its cost follows the number of matching schedules and not the number registered.
+   Schedules restricted to some years are also in a posting of their own, their year is checked on
+   the schedule itself once the five fields matched. Schedules with seconds match the minutes they fire in.
+   Safe for concurrent use, lookups share a read lock and registration takes the write lock. */
+public final class ScheduleIndex {
+
+    /* Bitmap of ids plus a summary bit per word of it */
+    private static final class Posting {
+        long[] words = new long[0];
+        long[] summary = new long[0];
+
+        void grow(int wordCount) {
+            words = Arrays.copyOf(words, wordCount);
+            summary = Arrays.copyOf(summary, (wordCount + 63) >>> 6);
+        }
+
+        void set(int id) {
+            int word = id >>> 6;
+            words[word] |= 1L << id;
+            summary[word >>> 6] |= 1L << word;
+        }
+
+        void clear(int id) {
+            int word = id >>> 6;
+            words[word] &= ~(1L << id);
+            if (words[word] == 0) {
+                summary[word >>> 6] &= ~(1L << word);
+            }
+        }
+    }
+
+    private final Posting[] minutes = postings(60);
+    private final Posting[] hours = postings(24);
+    private final Posting[] daysOfMonth = postings(32);  /* index 0 unused */
+    private final Posting[] months = postings(13);       /* index 0 unused */
+    private final Posting[] daysOfWeek = postings(7);
+    private final Posting restricted = new Posting();    /* days match on either day field */
+    private final Posting yearly = new Posting();        /* the year field is not a wildcard */
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private CronTime[] schedules = new CronTime[0];
+    private int[] freeIds = new int[0];
+    private int freeCount;
+    private int highestId = -1;
+    private int size;
+
+    private static Posting[] postings(int count) {
+        Posting[] postings = new Posting[count];
+        for (int i = 0; i < count; i++) {
+            postings[i] = new Posting();
+        }
+        return postings;
+    }
+
+    /* Returns the id of the schedule, ids of removed schedules are handed out again */
+    public int add(CronTime cronTime) {
+        lock.writeLock().lock();
+        try {
+            int id = freeCount > 0 ? freeIds[--freeCount] : ++highestId;
+            if (id >= schedules.length) {
+                grow(Math.max(64, schedules.length * 2));
+            }
+            schedules[id] = cronTime;
+            forEachPosting(cronTime, id, true);
+            size++;
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public CronTime remove(int id) {
+        lock.writeLock().lock();
+        try {
+            CronTime cronTime = id >= 0 && id < schedules.length ? schedules[id] : null;
+            if (cronTime == null) {
+                return null;
+            }
+            forEachPosting(cronTime, id, false);
+            schedules[id] = null;
+            if (freeCount == freeIds.length) {
+                freeIds = Arrays.copyOf(freeIds, Math.max(16, freeIds.length * 2));
+            }
+            freeIds[freeCount++] = id;
+            size--;
+            return cronTime;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public CronTime get(int id) {
+        lock.readLock().lock();
+        try {
+            return id >= 0 && id < schedules.length ? schedules[id] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Calls action with the id of every schedule firing at epochMinute, evaluated as wall-clock time in zone */
+    public void forEachMatch(long epochMinute, ZoneId zone, IntConsumer action) {
+        int offsetSeconds = ZoneTransitions.offsetSeconds(zone, epochMinute * 60);
+        forEachMatch(epochMinute + Math.floorDiv(offsetSeconds, 60), action);
+    }
+
+    /* Calls action with the id of every schedule firing at epochMinute, evaluated as UTC wall-clock time.
+       action runs under the read lock and must not add or remove schedules. */
+    public void forEachMatch(long epochMinute, IntConsumer action) {
+        long epochDay = Math.floorDiv(epochMinute, EpochCalendar.MINUTES_PER_DAY);
+        int minuteOfDay = (int) (epochMinute - epochDay * EpochCalendar.MINUTES_PER_DAY);
+        long date = EpochCalendar.civilFromDays(epochDay);
+        Posting minute = minutes[minuteOfDay % EpochCalendar.MINUTES_PER_HOUR];
+        Posting hour = hours[minuteOfDay / EpochCalendar.MINUTES_PER_HOUR];
+        Posting month = months[EpochCalendar.month(date)];
+        Posting dayOfMonth = daysOfMonth[EpochCalendar.day(date)];
+        Posting dayOfWeek = daysOfWeek[EpochCalendar.dayOfWeek(epochDay)];
+        int year = EpochCalendar.year(date);
+
+        lock.readLock().lock();
+        try {
+            long[] summary = minute.summary;
+            for (int s = 0; s < summary.length; s++) {
+                long candidates = summary[s] & hour.summary[s] & month.summary[s]
+                    & (dayOfMonth.summary[s] | dayOfWeek.summary[s]);
+                while (candidates != 0) {
+                    int word = (s << 6) + Long.numberOfTrailingZeros(candidates);
+                    candidates &= candidates - 1;
+                    long dom = dayOfMonth.words[word];
+                    long dow = dayOfWeek.words[word];
+                    long either = restricted.words[word];
+                    long matches = minute.words[word] & hour.words[word] & month.words[word]
+                        & ((either & (dom | dow)) | (~either & dom & dow));
+                    for (long check = matches & yearly.words[word]; check != 0; check &= check - 1) {
+                        int bit = Long.numberOfTrailingZeros(check);
+                        if (!schedules[(word << 6) + bit].allowsYear(year)) {
+                            matches &= ~(1L << bit);
+                        }
+                    }
+                    while (matches != 0) {
+                        action.accept((word << 6) + Long.numberOfTrailingZeros(matches));
+                        matches &= matches - 1;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void grow(int capacity) {
+        schedules = Arrays.copyOf(schedules, capacity);
+        int wordCount = capacity >>> 6;
+        for (Posting[] field : new Posting[][] { minutes, hours, daysOfMonth, months, daysOfWeek }) {
+            for (Posting posting : field) {
+                posting.grow(wordCount);
+            }
+        }
+        restricted.grow(wordCount);
+        yearly.grow(wordCount);
+    }
+
+    private void forEachPosting(CronTime cronTime, int id, boolean set) {
+        update(minutes, cronTime.getMinuteBits(), id, set);
+        update(hours, cronTime.getHourBits(), id, set);
+        update(daysOfMonth, cronTime.getDayOfMonthBits(), id, set);
+        update(months, cronTime.getMonthBits(), id, set);
+        update(daysOfWeek, cronTime.getDayOfWeekBits(), id, set);
+        if (cronTime.isDayRestricted()) {
+            update(restricted, id, set);
+        }
+        if (cronTime.isYearRestricted()) {
+            update(yearly, id, set);
+        }
+    }
+
+    private static void update(Posting posting, int id, boolean set) {
+        if (set) {
+            posting.set(id);
+        } else {
+            posting.clear(id);
+        }
+    }
+
+    private static void update(Posting[] postings, long bits, int id, boolean set) {
+        for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+            update(postings[Long.numberOfTrailingZeros(remaining)], id, set);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.ezy.crond;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* UTC offsets of time zones looked up by epoch second without allocating.
+   For every zone a table of its transitions over the years around the last lookup is kept, so only a
+   lookup outside of those years goes back to the ZoneRules. Between two transitions the offset is
+   constant, a span of time like that is a segment of the table. */
+final class ZoneTransitions {
+    /* Years of transitions kept on either side of the lookup a table is built for */
+    private static final long HORIZON_SECONDS = 10L * 366 * 24 * 60 * 60;
+
+    /* Immutable, replaced as a whole when a lookup falls outside of it */
+    static final class Table {
+        final long from, to;        /* epoch seconds covered, [from, to) */
+        final long[] transitions;   /* epoch seconds of the transitions in [from, to), ascending */
+        final int[] offsets;        /* offsets[i] holds before transitions[i], the last one after all of them */
+
+        Table(long from, long to, long[] transitions, int[] offsets) {
+            this.from = from;
+            this.to = to;
+            this.transitions = transitions;
+            this.offsets = offsets;
+        }
+
+        boolean covers(long epochSecond) {
+            return epochSecond >= from && epochSecond < to;
+        }
+
+        /* Index of the segment holding epochSecond */
+        int segment(long epochSecond) {
+            int index = Arrays.binarySearch(transitions, epochSecond);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+
+        int offsetSeconds(int segment) {
+            return offsets[segment];
+        }
+
+        /* Offset of the segment before, the same offset when the table has no transition before it */
+        int offsetSecondsBefore(int segment) {
+            return offsets[segment == 0 ? 0 : segment - 1];
+        }
+
+        /* Epoch minute the segment starts at, Long.MIN_VALUE when it starts before the table */
+        long startMinute(int segment) {
+            return segment == 0 ? Long.MIN_VALUE : ceilMinute(transitions[segment - 1]);
+        }
+
+        /* Epoch minute the segment ends at, which is not a transition when it is the end of the table */
+        long endMinute(int segment) {
+            if (segment < transitions.length) {
+                return ceilMinute(transitions[segment]);
+            }
+            return to == Long.MAX_VALUE ? Long.MAX_VALUE : ceilMinute(to);
+        }
+
+        private static long ceilMinute(long epochSecond) {
+            return Math.floorDiv(epochSecond + 59, 60);
+        }
+    }
+
+    private static final ConcurrentHashMap<ZoneId, Table> TABLES = new ConcurrentHashMap<>();
+
+    private ZoneTransitions() {}
+
+    static int offsetSeconds(ZoneId zone, long epochSecond) {
+        if (zone instanceof ZoneOffset) {
+            return ((ZoneOffset) zone).getTotalSeconds();
+        }
+        Table table = table(zone, epochSecond);
+        return table.offsetSeconds(table.segment(epochSecond));
+    }
+
+    /* A table of zone covering epochSecond */
+    static Table table(ZoneId zone, long epochSecond) {
+        Table table = TABLES.get(zone);
+        if (table == null || !table.covers(epochSecond)) {
+            table = build(zone.getRules(), epochSecond);
+            TABLES.put(zone, table);
+        }
+        return table;
+    }
+
+    private static Table build(ZoneRules rules, long epochSecond) {
+        long second = clamp(epochSecond);
+        if (rules.isFixedOffset()) {
+            int offset = rules.getOffset(Instant.ofEpochSecond(second)).getTotalSeconds();
+            return new Table(Long.MIN_VALUE, Long.MAX_VALUE, new long[0], new int[] { offset });
+        }
+        long from = clamp(second - HORIZON_SECONDS);
+        long to = clamp(second + HORIZON_SECONDS);
+        long[] transitions = new long[16];
+        int[] offsets = new int[17];
+        offsets[0] = rules.getOffset(Instant.ofEpochSecond(from)).getTotalSeconds();
+        int count = 0;
+        ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochSecond(from));
+        while (transition != null && transition.toEpochSecond() < to) {
+            if (count == transitions.length) {
+                transitions = Arrays.copyOf(transitions, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2 + 1);
+            }
+            transitions[count] = transition.toEpochSecond();
+            offsets[++count] = transition.getOffsetAfter().getTotalSeconds();
+            transition = rules.nextTransition(transition.getInstant());
+        }
+        /* Past the last transition of the rules the offset never changes again */
+        return new Table(from, transition == null ? Long.MAX_VALUE : to,
+                         Arrays.copyOf(transitions, count), Arrays.copyOf(offsets, count + 1));
+    }
+
+    private static long clamp(long epochSecond) {
+        return Math.max(Instant.MIN.getEpochSecond(), Math.min(Instant.MAX.getEpochSecond(), epochSecond));
+    }
+}
@@ -0,0 +1,247 @@
+package com.ezy.crond.cluster;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.ezy.crond.CronTime;
+import com.ezy.crond.scheduler.CronScheduler;
+import com.ezy.crond.scheduler.JobExecutor;
+import com.ezy.crond.scheduler.ScheduledJob;
+
+/* One node of a cluster of schedulers sharing a job set. Every node is given all the jobs, keyed by
+   a name unique in the cluster, but only schedules the ones the HashRing of the live nodes assigns to
+   it, so each node carries about 1/n of the jobs. Nodes announce themselves with heartbeats in the
+   LeaseStore; when the live nodes change every node rebuilds the ring and moves only the jobs whose
+   owner changed.
+   While nodes disagree on the members, around a join or a missed heartbeat, two of them may hold the
+   same job for a moment. Before running a job a node claims the execution in the LeaseStore, so each
+   execution still runs once. Jobs of a node that died are picked up once its heartbeat expires. */
+public final class ClusterScheduler implements AutoCloseable {
+    /* How long claims are kept after the minute they are for */
+    private static final long CLAIM_RETENTION_MINUTES = 60;
+
+    private static final class Job {
+        final CronTime cronTime;
+        final Runnable task;
+        ScheduledJob scheduled;  /* null when another node owns the job */
+
+        Job(CronTime cronTime, Runnable task) {
+            this.cronTime = cronTime;
+            this.task = task;
+        }
+    }
+
+    private final String node;
+    private final LeaseStore leases;
+    private final long heartbeatMillis;
+    private final CronScheduler scheduler;
+    private final Map<String, Job> jobs = new HashMap<>();
+    private HashRing ring;
+    private ScheduledExecutorService heartbeats;
+
+    /* heartbeatMillis is how long a heartbeat keeps the node alive, start() renews it three times as often */
+    public ClusterScheduler(String node, JobExecutor executor, LeaseStore leases, long heartbeatMillis, long startMinute) {
+        this.node = node;
+        this.leases = leases;
+        this.heartbeatMillis = heartbeatMillis;
+        this.scheduler = new CronScheduler(new ClaimingExecutor(executor), startMinute);
+        this.ring = new HashRing(Collections.singleton(node));
+    }
+
+    /* Hands the local scheduler's jobs to executor once this node claimed their execution, by fire
+       minute or by fire second for jobs with seconds. Batches keep going to executor as batches of
+       the jobs claimed. */
+    private final class ClaimingExecutor implements JobExecutor {
+        private final JobExecutor executor;
+        private final List<ScheduledJob> claimed = new ArrayList<>();  /* used by the advancing thread */
+
+        ClaimingExecutor(JobExecutor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(ScheduledJob job, long fireMinute) {
+            if (claim(job.getName(), fireMinute, false)) {
+                executor.execute(job, fireMinute);
+            }
+        }
+
+        @Override
+        public void executeAtSecond(ScheduledJob job, long fireSecond) {
+            if (claim(job.getName(), fireSecond, true)) {
+                executor.executeAtSecond(job, fireSecond);
+            }
+        }
+
+        @Override
+        public void executeAll(List<ScheduledJob> jobs, long fireMinute) {
+            claimAll(jobs, fireMinute, false);
+            try {
+                if (!claimed.isEmpty()) {
+                    executor.executeAll(claimed, fireMinute);
+                }
+            } finally {
+                claimed.clear();
+            }
+        }
+
+        @Override
+        public void executeAllAtSecond(List<ScheduledJob> jobs, long fireSecond) {
+            claimAll(jobs, fireSecond, true);
+            try {
+                if (!claimed.isEmpty()) {
+                    executor.executeAllAtSecond(claimed, fireSecond);
+                }
+            } finally {
+                claimed.clear();
+            }
+        }
+
+        /* A claim failing is reported like a job failing to start and does not keep the others from running */
+        private void claimAll(List<ScheduledJob> jobs, long fireTime, boolean bySecond) {
+            for (int i = 0; i < jobs.size(); i++) {
+                ScheduledJob job = jobs.get(i);
+                try {
+                    if (claim(job.getName(), fireTime, bySecond)) {
+                        claimed.add(job);
+                    }
+                } catch (RuntimeException e) {
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, e);
+                }
+            }
+        }
+    }
+
+    private boolean claim(String job, long fireTime, boolean bySecond) {
+        try {
+            return bySecond ? leases.claimAtSecond(job, fireTime, node) : leases.claim(job, fireTime, node);
+        } catch (IOException e) {
+            /* Without the store nobody can tell whether another node ran it, better not run it twice */
+            throw new IllegalStateException("Cannot claim " + job + " at " + (bySecond ? "second " : "minute ") +
+                                            fireTime, e);
+        }
+    }
+
+    public String getNode() { return node; }
+
+    /* The local scheduler holding the jobs owned by this node, advance it or start it as usual */
+    public CronScheduler scheduler() { return scheduler; }
+
+    /* Adds a job to the cluster job set, replacing the job with the same key.
+       Throws IllegalArgumentException when cronTime never fires again, on every node alike. */
+    public synchronized void add(String key, CronTime cronTime, Runnable task) {
+        if (cronTime.nextExecution(scheduler.currentMinute() - 1) == CronTime.NEVER) {
+            throw new IllegalArgumentException("Schedule of " + key + " never fires again");
+        }
+        remove(key);
+        Job job = new Job(cronTime, task);
+        if (node.equals(ring.owner(key))) {
+            job.scheduled = scheduler.schedule(key, cronTime, task);
+        }
+        jobs.put(key, job);
+    }
+
+    public synchronized boolean remove(String key) {
+        Job job = jobs.remove(key);
+        if (job == null) {
+            return false;
+        }
+        if (job.scheduled != null) {
+            scheduler.cancel(job.scheduled);
+        }
+        return true;
+    }
+
+    public synchronized boolean owns(String key) {
+        Job job = jobs.get(key);
+        return job != null && job.scheduled != null;
+    }
+
+    /* Jobs scheduled on this node */
+    public synchronized int ownedCount() {
+        return scheduler.size();
+    }
+
+    public synchronized List<String> members() {
+        return ring.nodes();
+    }
+
+    /* Renews the heartbeat of this node and rebalances when the live nodes changed.
+       Returns the number of jobs this node took over or gave up. */
+    public synchronized int heartbeat(long nowMillis) throws IOException {
+        leases.heartbeat(node, nowMillis + heartbeatMillis);
+        leases.expireClaims(scheduler.currentMinute() - CLAIM_RETENTION_MINUTES);
+        List<String> live = leases.liveNodes(nowMillis);
+        if (!live.contains(node)) {
+            live = new ArrayList<>(live);
+            live.add(node);  /* a clock behind the others must not drop the node from its own ring */
+            Collections.sort(live);
+        }
+        if (live.equals(ring.nodes())) {
+            return 0;
+        }
+        ring = new HashRing(live);
+        return rebalance();
+    }
+
+    private int rebalance() {
+        int moved = 0;
+        for (Map.Entry<String, Job> entry : jobs.entrySet()) {
+            Job job = entry.getValue();
+            boolean owned = node.equals(ring.owner(entry.getKey()));
+            if (owned && job.scheduled == null) {
+                try {
+                    job.scheduled = scheduler.schedule(entry.getKey(), job.cronTime, job.task);
+                } catch (IllegalArgumentException ranOut) {
+                    continue;  /* its schedule ran out since it was added, nothing left to run */
+                }
+                moved++;
+            } else if (!owned && job.scheduled != null) {
+                scheduler.cancel(job.scheduled);
+                job.scheduled = null;
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    /* Starts heartbeats and the local scheduler on daemon threads */
+    public synchronized void start() throws IOException {
+        if (heartbeats != null) {
+            return;
+        }
+        heartbeat(System.currentTimeMillis());
+        heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jcrond-cluster-" + node);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, heartbeatMillis / 3);
+        heartbeats.scheduleWithFixedDelay(() -> {
+            try {
+                heartbeat(System.currentTimeMillis());
+            } catch (IOException | RuntimeException e) {
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+        scheduler.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (heartbeats != null) {
+            heartbeats.shutdownNow();
+            heartbeats = null;
+        }
+        scheduler.close();
+    }
+}
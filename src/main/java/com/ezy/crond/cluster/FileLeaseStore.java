@@ -0,0 +1,144 @@
+package com.ezy.crond.cluster;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/* LeaseStore in a directory shared by the nodes, on one machine or a file system with atomic file
+   creation. A claim is a file created with CREATE_NEW in a directory per fire minute, or per fire
+   second for jobs with seconds, only one node can create it. A heartbeat is a file per node holding
+   its expiry on the first line and the name of the node after it, replaced by an atomic rename. */
+public final class FileLeaseStore implements LeaseStore {
+    private static final int MAX_NAME_BYTES = 100;
+
+    private final Path claims;
+    private final Path secondClaims;
+    private final Path nodes;
+
+    public FileLeaseStore(Path directory) throws IOException {
+        this.claims = Files.createDirectories(directory.resolve("claims"));
+        this.secondClaims = Files.createDirectories(directory.resolve("second-claims"));
+        this.nodes = Files.createDirectories(directory.resolve("nodes"));
+    }
+
+    @Override
+    public boolean claim(String job, long fireMinute, String node) throws IOException {
+        return claim(claims, job, fireMinute, node);
+    }
+
+    @Override
+    public boolean claimAtSecond(String job, long fireSecond, String node) throws IOException {
+        return claim(secondClaims, job, fireSecond, node);
+    }
+
+    private static boolean claim(Path claims, String job, long fireTime, String node) throws IOException {
+        Path time = Files.createDirectories(claims.resolve(Long.toString(fireTime)));
+        try {
+            Files.write(time.resolve(fileName(job)), node.getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE_NEW);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void heartbeat(String node, long expiresAtMillis) throws IOException {
+        Path temporary = Files.createTempFile(nodes, ".heartbeat", null);
+        Files.write(temporary, (expiresAtMillis + "\n" + node).getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, nodes.resolve(fileName(node)), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public List<String> liveNodes(long nowMillis) throws IOException {
+        List<String> live = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(nodes)) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().startsWith(".")) {
+                    continue;  /* a heartbeat being written */
+                }
+                try {
+                    String heartbeat = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                    int newline = heartbeat.indexOf('\n');
+                    if (newline >= 0 && Long.parseLong(heartbeat.substring(0, newline)) > nowMillis) {
+                        live.add(heartbeat.substring(newline + 1));
+                    }
+                } catch (NoSuchFileException | NumberFormatException e) {
+                    /* removed or being replaced, the next look will tell */
+                }
+            }
+        }
+        Collections.sort(live);
+        return live;
+    }
+
+    @Override
+    public void expireClaims(long beforeMinute) throws IOException {
+        expireClaims(claims, beforeMinute);
+        expireClaims(secondClaims, beforeMinute * 60);
+    }
+
+    private static void expireClaims(Path claims, long before) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(claims)) {
+            for (Path time : stream) {
+                long value;
+                try {
+                    value = Long.parseLong(time.getFileName().toString());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (value < before) {
+                    delete(time);
+                }
+            }
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                Files.deleteIfExists(file);
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    /* Names are hex encoded so any job or node name makes a valid file name, names too long for a
+       file name are replaced by their SHA-256 */
+    static String fileName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length == 0) {
+            return "-";
+        }
+        if (bytes.length > MAX_NAME_BYTES) {
+            try {
+                return "h" + hex(MessageDigest.getInstance("SHA-256").digest(bytes));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);  /* every Java platform has SHA-256 */
+            }
+        }
+        return hex(bytes);
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package com.ezy.crond.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/* Consistent hash ring assigning keys to nodes. Every node is placed on the ring at a number of
+   points, a key belongs to the node of the first point at or after its hash, so a node joining or
+   leaving only moves the keys of the points it takes or frees, about 1/n of them.
+   Immutable, a change of nodes builds a new ring. */
+public final class HashRing {
+    public static final int DEFAULT_POINTS_PER_NODE = 128;
+
+    private final List<String> nodes;
+    private final long[] points;    /* ascending hashes */
+    private final String[] owners;  /* node of each point */
+
+    public HashRing(Collection<String> nodes) {
+        this(nodes, DEFAULT_POINTS_PER_NODE);
+    }
+
+    public HashRing(Collection<String> nodes, int pointsPerNode) {
+        if (pointsPerNode < 1) {
+            throw new IllegalArgumentException("Points per node must be positive: " + pointsPerNode);
+        }
+        String[] sorted = new TreeSet<>(nodes).toArray(new String[0]);
+        this.nodes = Arrays.asList(sorted);
+        int size = sorted.length * pointsPerNode;
+        long[] keyed = new long[size];
+        String[] byPoint = new String[size];
+        /* Sort points with their owner, ties go to the node sorting first so every ring agrees */
+        Integer[] order = new Integer[size];
+        for (int n = 0; n < sorted.length; n++) {
+            for (int p = 0; p < pointsPerNode; p++) {
+                int i = n * pointsPerNode + p;
+                keyed[i] = hash(sorted[n] + "#" + p);
+                order[i] = i;
+            }
+        }
+        Arrays.sort(order, (a, b) -> keyed[a] != keyed[b] ? Long.compare(keyed[a], keyed[b]) : Integer.compare(a, b));
+        this.points = new long[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = keyed[order[i]];
+            byPoint[i] = sorted[order[i] / pointsPerNode];
+        }
+        this.owners = byPoint;
+    }
+
+    /* Sorted node names */
+    public List<String> nodes() { return nodes; }
+
+    /* The node owning key, null when the ring has no nodes */
+    public String owner(String key) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        /* Equal hashes: the first point holding it */
+        while (index > 0 && index < points.length && points[index - 1] == points[index]) {
+            index--;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /* 64-bit FNV-1a of the UTF-8 bytes, finished with the MurmurHash3 mixer to spread nearby keys */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
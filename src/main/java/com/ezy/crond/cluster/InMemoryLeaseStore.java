@@ -0,0 +1,51 @@
+package com.ezy.crond.cluster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/* LeaseStore for nodes running in one process, mostly for tests */
+public final class InMemoryLeaseStore implements LeaseStore {
+    /* Claims by fire minute, so expiring them drops whole minutes */
+    private final ConcurrentSkipListMap<Long, Map<String, String>> claims = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, Map<String, String>> secondClaims = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Long> heartbeats = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean claim(String job, long fireMinute, String node) {
+        Map<String, String> minute = claims.computeIfAbsent(fireMinute, m -> new ConcurrentHashMap<>());
+        return minute.putIfAbsent(job, node) == null;
+    }
+
+    @Override
+    public boolean claimAtSecond(String job, long fireSecond, String node) {
+        Map<String, String> second = secondClaims.computeIfAbsent(fireSecond, s -> new ConcurrentHashMap<>());
+        return second.putIfAbsent(job, node) == null;
+    }
+
+    @Override
+    public void heartbeat(String node, long expiresAtMillis) {
+        heartbeats.put(node, expiresAtMillis);
+    }
+
+    @Override
+    public List<String> liveNodes(long nowMillis) {
+        List<String> live = new ArrayList<>();
+        for (Map.Entry<String, Long> heartbeat : heartbeats.entrySet()) {
+            if (heartbeat.getValue() > nowMillis) {
+                live.add(heartbeat.getKey());
+            }
+        }
+        Collections.sort(live);
+        return live;
+    }
+
+    @Override
+    public void expireClaims(long beforeMinute) {
+        claims.headMap(beforeMinute).clear();
+        secondClaims.headMap(beforeMinute * 60).clear();
+    }
+}
@@ -0,0 +1,28 @@
+package com.ezy.crond.cluster;
+
+import java.io.IOException;
+import java.util.List;
+
+/* Shared state of a cluster of schedulers: which nodes are alive and which node ran an execution.
+   InMemoryLeaseStore serves nodes in one process and FileLeaseStore nodes sharing a directory, an
+   implementation over a database or a coordination service only has to make claim atomic. */
+public interface LeaseStore {
+
+    /* Claims the execution of job at fireMinute for node. Returns true for exactly one claim of the
+       same job and minute, whichever node makes it first. */
+    boolean claim(String job, long fireMinute, String node) throws IOException;
+
+    /* As claim, for a job whose schedule has seconds at fireSecond. Claims at seconds are kept apart
+       from claims at minutes, a job firing every few seconds makes one claim per fire. */
+    boolean claimAtSecond(String job, long fireSecond, String node) throws IOException;
+
+    /* Records that node is alive until expiresAtMillis */
+    void heartbeat(String node, long expiresAtMillis) throws IOException;
+
+    /* Nodes not expired at nowMillis, sorted */
+    List<String> liveNodes(long nowMillis) throws IOException;
+
+    /* Forgets the claims of executions before minute, at seconds as well as at minutes, they cannot
+       be claimed again in time anyway */
+    void expireClaims(long beforeMinute) throws IOException;
+}
@@ -0,0 +1,48 @@
+package com.ezy.crond.crontab;
+
+import com.ezy.crond.CronTime;
+
+/* One job line of a crontab file: the time fields and the command to run.
+   Two entries are equal when their time fields and command are, wherever they are in the file, so
+   moving a line or editing another one leaves the entry unchanged. */
+public final class CrontabEntry {
+    private final String expression;
+    private final CronTime cronTime;
+    private final String command;
+    private final String source;
+    private final int line;
+
+    CrontabEntry(String expression, CronTime cronTime, String command, String source, int line) {
+        this.expression = expression;
+        this.cronTime = cronTime;
+        this.command = command;
+        this.source = source;
+        this.line = line;
+    }
+
+    /* The time fields as written, separated by single spaces */
+    public String getExpression() { return expression; }
+    public CronTime getCronTime() { return cronTime; }
+    public String getCommand() { return command; }
+    public String getSource() { return source; }
+    public int getLine() { return line; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CrontabEntry)) {
+            return false;
+        }
+        CrontabEntry other = (CrontabEntry) o;
+        return expression.equals(other.expression) && command.equals(other.command);
+    }
+
+    @Override
+    public int hashCode() {
+        return expression.hashCode() * 31 + command.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return source + ":" + line + " " + expression + " " + command;
+    }
+}
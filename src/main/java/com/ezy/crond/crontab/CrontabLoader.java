@@ -0,0 +1,211 @@
+package com.ezy.crond.crontab;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.ezy.crond.scheduler.CronScheduler;
+import com.ezy.crond.scheduler.ScheduledJob;
+
+/* Keeps a CronScheduler in step with the crontab files of watched directories.
+   When a file changes it is parsed again and compared with the entries loaded from it before: only
+   the entries that disappeared are cancelled and only the new ones are scheduled, so editing one line
+   of a large crontab costs a parse of the file and two scheduler calls.
+   A file that fails to parse keeps the entries it had, the error goes to the uncaught exception
+   handler of the thread reloading it. Files whose name starts with '.' or ends with '~' are ignored,
+   as editors use those for backups and swap files. */
+public final class CrontabLoader implements AutoCloseable {
+    private final CronScheduler scheduler;
+    private final Function<CrontabEntry, Runnable> tasks;
+    private final WatchService watcher;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    /* Jobs of every loaded file by entry, a list as a file may hold the same entry more than once */
+    private final Map<Path, Map<CrontabEntry, Deque<ScheduledJob>>> files = new HashMap<>();
+    private Thread thread;
+
+    /* tasks turns an entry into the body of its job, typically running its command */
+    public CrontabLoader(CronScheduler scheduler, Function<CrontabEntry, Runnable> tasks) throws IOException {
+        this.scheduler = scheduler;
+        this.tasks = tasks;
+        this.watcher = FileSystems.getDefault().newWatchService();
+    }
+
+    /* Loads every crontab in directory and reloads them from then on as they change */
+    public synchronized void watch(Path directory) throws IOException {
+        WatchKey key = directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                                          StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        directories.put(key, directory);
+        rescan(directory);
+    }
+
+    /* Brings the jobs of file in line with its contents, a file that does not exist has no jobs.
+       Returns the number of jobs cancelled and scheduled. */
+    public synchronized int reload(Path file) {
+        List<CrontabEntry> entries;
+        try {
+            entries = Files.isRegularFile(file) ? CrontabParser.parse(file) : Collections.<CrontabEntry>emptyList();
+        } catch (IOException | RuntimeException e) {
+            Thread current = Thread.currentThread();
+            current.getUncaughtExceptionHandler().uncaughtException(current, e);
+            return 0;
+        }
+        Map<CrontabEntry, Deque<ScheduledJob>> loaded = files.remove(file);
+        if (loaded == null) {
+            loaded = Collections.emptyMap();
+        }
+        Map<CrontabEntry, Deque<ScheduledJob>> current = new HashMap<>();
+        int changes = 0;
+        for (CrontabEntry entry : entries) {
+            Deque<ScheduledJob> jobs = loaded.get(entry);
+            ScheduledJob job = jobs == null ? null : jobs.poll();
+            if (job == null) {
+                try {
+                    job = scheduler.schedule(entry.toString(), entry.getCronTime(), tasks.apply(entry));
+                } catch (IllegalArgumentException e) {
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);  /* never fires */
+                    continue;
+                }
+                changes++;
+            }
+            current.computeIfAbsent(entry, e -> new ArrayDeque<>()).add(job);
+        }
+        for (Deque<ScheduledJob> removed : loaded.values()) {
+            for (ScheduledJob job : removed) {
+                scheduler.cancel(job);
+                changes++;
+            }
+        }
+        if (!current.isEmpty()) {
+            files.put(file, current);
+        }
+        return changes;
+    }
+
+    /* Jobs currently loaded from file */
+    public synchronized List<ScheduledJob> jobs(Path file) {
+        List<ScheduledJob> jobs = new ArrayList<>();
+        Map<CrontabEntry, Deque<ScheduledJob>> loaded = files.get(file);
+        if (loaded != null) {
+            for (Deque<ScheduledJob> entryJobs : loaded.values()) {
+                jobs.addAll(entryJobs);
+            }
+        }
+        return jobs;
+    }
+
+    /* Applies the changes reported by the file system, waiting up to timeout for the first one.
+       Returns false when there were none. */
+    public boolean poll(long timeout, TimeUnit unit) throws InterruptedException {
+        WatchKey key = watcher.poll(timeout, unit);
+        if (key == null) {
+            return false;
+        }
+        while (key != null) {
+            process(key);
+            key = watcher.poll();
+        }
+        return true;
+    }
+
+    private synchronized void process(WatchKey key) {
+        Path directory = directories.get(key);
+        List<WatchEvent<?>> events = key.pollEvents();
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+        if (directory == null) {
+            return;
+        }
+        for (WatchEvent<?> event : events) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                try {
+                    rescan(directory);
+                } catch (IOException e) {
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, e);
+                }
+                return;
+            }
+            Path file = directory.resolve((Path) event.context());
+            if (isCrontab(file)) {
+                reload(file);
+            }
+        }
+    }
+
+    /* Reloads every crontab of directory, including the ones loaded before that are gone */
+    private void rescan(Path directory) throws IOException {
+        Set<Path> seen = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                if (isCrontab(file) && Files.isRegularFile(file)) {
+                    seen.add(file);
+                }
+            }
+        }
+        for (Path file : new ArrayList<>(files.keySet())) {
+            if (directory.equals(file.getParent()) && !seen.contains(file)) {
+                reload(file);
+            }
+        }
+        for (Path file : seen) {
+            reload(file);
+        }
+    }
+
+    private static boolean isCrontab(Path file) {
+        String name = file.getFileName().toString();
+        return !name.startsWith(".") && !name.endsWith("~");
+    }
+
+    /* Starts a daemon thread applying changes as the file system reports them */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    poll(1, TimeUnit.MINUTES);
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                /* closed */
+            }
+        }, "jcrond-crontab-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /* Stops watching, the jobs loaded stay scheduled */
+    @Override
+    public void close() throws IOException {
+        Thread running;
+        synchronized (this) {
+            running = thread;
+            thread = null;
+        }
+        if (running != null) {
+            running.interrupt();
+        }
+        watcher.close();
+    }
+}
@@ -0,0 +1,104 @@
+package com.ezy.crond.crontab;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ezy.crond.CronTime;
+
+/* Reads crontab files, 'minute hour day_of_month month day_of_week command' per line or an '@' macro
+   in place of the five time fields. Blank lines, '#' comments and environment settings such as
+   'SHELL=/bin/sh' are skipped. Jenkins style 'H' fields are hashed from the command. Schedules are
+   parsed through CronTime.parseCached, so the many lines of a large crontab sharing an expression
+   share one CronTime. */
+public final class CrontabParser {
+    private static final int TIME_FIELDS = 5;
+
+    private CrontabParser() {}
+
+    public static List<CrontabEntry> parse(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(file.toString(), reader);
+        }
+    }
+
+    /* Throws IllegalArgumentException naming source and the line at the first invalid line */
+    public static List<CrontabEntry> parse(String source, BufferedReader reader) throws IOException {
+        List<CrontabEntry> entries = new ArrayList<>();
+        int number = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            number++;
+            CrontabEntry entry;
+            try {
+                entry = parseLine(line, source, number);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(source + ":" + number + ": " + e.getMessage(), e);
+            }
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /* The entry on line, null when the line holds none */
+    static CrontabEntry parseLine(String line, String source, int number) {
+        int start = skipBlanks(line, 0);
+        if (start == line.length() || line.charAt(start) == '#' || isSetting(line, start)) {
+            return null;
+        }
+        int fields = line.charAt(start) == '@' ? 1 : TIME_FIELDS;
+        StringBuilder expression = new StringBuilder();
+        int i = start;
+        for (int field = 0; field < fields; field++) {
+            if (i == line.length()) {
+                throw new IllegalArgumentException("Missing command");
+            }
+            int end = i;
+            while (end < line.length() && !isBlank(line.charAt(end))) {
+                end++;
+            }
+            if (field > 0) {
+                expression.append(' ');
+            }
+            expression.append(line, i, end);
+            i = skipBlanks(line, end);
+        }
+        int end = line.length();
+        while (end > i && isBlank(line.charAt(end - 1))) {
+            end--;
+        }
+        if (i == end) {
+            throw new IllegalArgumentException("Missing command");
+        }
+        String text = expression.toString();
+        String command = line.substring(i, end);
+        /* 'H' fields are seeded with the command, the identity of an entry */
+        return new CrontabEntry(text, CronTime.parseCached(text, command), command, source, number);
+    }
+
+    /* NAME=value, the name being a run of letters, digits and underscores */
+    private static boolean isSetting(String line, int start) {
+        int i = start;
+        while (i < line.length() && (Character.isLetterOrDigit(line.charAt(i)) || line.charAt(i) == '_')) {
+            i++;
+        }
+        return i > start && !Character.isDigit(line.charAt(start)) && skipBlanks(line, i) < line.length()
+            && line.charAt(skipBlanks(line, i)) == '=';
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static int skipBlanks(String line, int i) {
+        while (i < line.length() && isBlank(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,150 @@
+package com.ezy.crond.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.ezy.crond.scheduler.ScheduledJob;
+import com.ezy.crond.scheduler.SchedulerMetrics;
+
+/* SchedulerMetrics keeping global histograms of fire lag and of next execution computation time,
+   counters of fires, misfires, overlap skips, shed runs and dispatch saturation, and a few counters
+   per job. Readable directly or over JMX once registered. Install it with CronScheduler.setMetrics,
+   for overlap skips with ConcurrentJobExecutor.setMetrics and for shed runs with
+   BatchDispatcher.setMetrics. */
+public final class MetricsRecorder implements SchedulerMetrics, MetricsRecorderMBean {
+
+    /* What is kept of every job, a histogram per job would not fit a million jobs */
+    public static final class JobStats {
+        private final LongAdder fired = new LongAdder();
+        private final LongAdder misfired = new LongAdder();
+        private final LongAdder overlapSkipped = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+        private final LongAccumulator maxLagMillis = new LongAccumulator(Math::max, 0);
+        private volatile long lastLagMillis;
+
+        public long getFired() { return fired.sum(); }
+        public long getMisfired() { return misfired.sum(); }
+        public long getOverlapSkipped() { return overlapSkipped.sum(); }
+        public long getShed() { return shed.sum(); }
+        public long getMaxLagMillis() { return maxLagMillis.get(); }
+        public long getLastLagMillis() { return lastLagMillis; }
+
+        @Override
+        public String toString() {
+            return "fired: " + getFired() + " misfired: " + getMisfired() + " overlap skipped: " +
+                getOverlapSkipped() + " shed: " + getShed() + " last lag: " + lastLagMillis + "ms max lag: " + getMaxLagMillis() + "ms";
+        }
+    }
+
+    private final LatencyHistogram fireLag = new LatencyHistogram();
+    private final LatencyHistogram nextExecution = new LatencyHistogram();
+    private final LongAdder misfired = new LongAdder();
+    private final LongAdder overlapSkipped = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder dispatchSaturated = new LongAdder();
+    private final ConcurrentHashMap<Long, JobStats> jobs = new ConcurrentHashMap<>();
+    private volatile IntSupplier queueDepth = () -> 0;
+
+    /* Where the queue depth is read from, typically ConcurrentJobExecutor::queued or BatchDispatcher::queued */
+    public void setQueueDepth(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    /* Registers the recorder with the platform MBean server as com.ezy.crond:type=Scheduler,name=name */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("com.ezy.crond:type=Scheduler,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    private JobStats stats(ScheduledJob job) {
+        return jobs.computeIfAbsent(job.getId(), id -> new JobStats());
+    }
+
+    @Override
+    public void fired(ScheduledJob job, long fireMinute, long lagMillis) {
+        fireLag.record(lagMillis);
+        JobStats stats = stats(job);
+        stats.fired.increment();
+        stats.lastLagMillis = lagMillis;
+        stats.maxLagMillis.accumulate(lagMillis);
+    }
+
+    @Override
+    public void nextExecutionComputed(ScheduledJob job, long nanos) {
+        nextExecution.record(nanos);
+    }
+
+    @Override
+    public void misfired(ScheduledJob job, long count) {
+        misfired.add(count);
+        stats(job).misfired.add(count);
+    }
+
+    @Override
+    public void overlapSkipped(ScheduledJob job) {
+        overlapSkipped.increment();
+        stats(job).overlapSkipped.increment();
+    }
+
+    @Override
+    public void shed(ScheduledJob job) {
+        shed.increment();
+        stats(job).shed.increment();
+    }
+
+    @Override
+    public void dispatchSaturated(int queued) {
+        dispatchSaturated.increment();
+    }
+
+    @Override
+    public void cancelled(ScheduledJob job) {
+        jobs.remove(job.getId());
+    }
+
+    public LatencyHistogram getFireLag() { return fireLag; }
+    public LatencyHistogram getNextExecution() { return nextExecution; }
+
+    /* null when nothing was recorded for the job */
+    public JobStats job(long jobId) { return jobs.get(jobId); }
+
+    @Override public long getFiredCount() { return fireLag.count(); }
+    @Override public long getMisfiredCount() { return misfired.sum(); }
+    @Override public long getOverlapSkippedCount() { return overlapSkipped.sum(); }
+    @Override public long getShedCount() { return shed.sum(); }
+    @Override public long getDispatchSaturatedCount() { return dispatchSaturated.sum(); }
+    @Override public int getQueueDepth() { return queueDepth.getAsInt(); }
+
+    @Override public double getFireLagMeanMillis() { return fireLag.mean(); }
+    @Override public long getFireLagP50Millis() { return fireLag.valueAtPercentile(50); }
+    @Override public long getFireLagP99Millis() { return fireLag.valueAtPercentile(99); }
+    @Override public long getFireLagMaxMillis() { return fireLag.max(); }
+
+    @Override public long getNextExecutionP50Nanos() { return nextExecution.valueAtPercentile(50); }
+    @Override public long getNextExecutionP99Nanos() { return nextExecution.valueAtPercentile(99); }
+    @Override public long getNextExecutionMaxNanos() { return nextExecution.max(); }
+
+    @Override
+    public String describeJob(long jobId) {
+        JobStats stats = jobs.get(jobId);
+        return stats == null ? "no data for job " + jobId : stats.toString();
+    }
+
+    @Override
+    public void reset() {
+        fireLag.reset();
+        nextExecution.reset();
+        misfired.reset();
+        overlapSkipped.reset();
+        shed.reset();
+        dispatchSaturated.reset();
+        jobs.clear();
+    }
+}
@@ -0,0 +1,25 @@
+package com.ezy.crond.metrics;
+
+/* JMX view of a MetricsRecorder, registered with MetricsRecorder.register */
+public interface MetricsRecorderMBean {
+    long getFiredCount();
+    long getMisfiredCount();
+    long getOverlapSkippedCount();
+    long getShedCount();
+    long getDispatchSaturatedCount();
+    int getQueueDepth();
+
+    double getFireLagMeanMillis();
+    long getFireLagP50Millis();
+    long getFireLagP99Millis();
+    long getFireLagMaxMillis();
+
+    long getNextExecutionP50Nanos();
+    long getNextExecutionP99Nanos();
+    long getNextExecutionMaxNanos();
+
+    /* Fires, misfires, overlap skips, shed runs and fire lag of one job */
+    String describeJob(long jobId);
+
+    void reset();
+}
@@ -0,0 +1,325 @@
+package com.ezy.crond.scheduler;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/* Dispatch stage between a CronScheduler and the JobExecutor running its jobs.
+   The batches the scheduler hands over, the jobs of a schedule due at the same instant, are queued
+   in an MpscRingBuffer and handed to the target executor by a dispatching thread of their own, so
+   the scheduler thread only pays for a copy of the batch and never contends with the threads
+   running jobs. The queue is bounded to capacity jobs. Optionally the dispatching thread hands at
+   most a rate of jobs per second to the target, the queue absorbing bursts above it.
+   A batch that does not fit the room left in the queue is queued in part, as many of its jobs as fit,
+   those that may not be shed first. Of the jobs left, those below the shed priority (see
+   ScheduledJob.setPriority) are dropped. The others are dropped as well while a rate limit is set, so
+   the limit caps the jobs handed over, and without one they are handed to the target directly on
+   the calling thread, ahead of the queue. Either way the saturation is counted and reported to the
+   metrics. */
+public final class BatchDispatcher implements JobExecutor, AutoCloseable {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /* Jobs due at one tick, copied out of the list of the scheduler */
+    private static final class Batch {
+        final ScheduledJob[] jobs;
+        final long fireTick;
+        final boolean bySecond;
+
+        Batch(ScheduledJob[] jobs, long fireTick, boolean bySecond) {
+            this.jobs = jobs;
+            this.fireTick = fireTick;
+            this.bySecond = bySecond;
+        }
+    }
+
+    private final JobExecutor target;
+    private final int capacity;
+    private final MpscRingBuffer<Batch> ring;
+    private final AtomicInteger queued = new AtomicInteger();  /* jobs in the ring or being handed over */
+    private final AtomicInteger submitting = new AtomicInteger();  /* calls to submit under way */
+    private final LongAdder saturated = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder dispatched = new LongAdder();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean parked;
+    private volatile int shedBelowPriority = Integer.MIN_VALUE;
+    private volatile double rateLimit;  /* jobs per second, 0 when unlimited */
+    private volatile SchedulerMetrics metrics;  /* null when disabled */
+
+    /* Owned by the dispatching thread */
+    private double tokens;
+    private long refilled;
+
+    /* Starts the dispatching thread, a daemon */
+    public BatchDispatcher(JobExecutor target, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Dispatch queue capacity must be positive: " + capacity);
+        }
+        this.target = target;
+        this.capacity = capacity;
+        this.ring = new MpscRingBuffer<>(capacity);
+        this.thread = new Thread(this::dispatch, "jcrond-dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /* Jobs with a priority below shedBelowPriority are dropped when the queue is full, none are by default */
+    public void setShedBelowPriority(int shedBelowPriority) {
+        this.shedBelowPriority = shedBelowPriority;
+    }
+
+    public int getShedBelowPriority() { return shedBelowPriority; }
+
+    /* Most jobs handed to the target per second, 0 removes the limit. Up to a second worth of jobs
+       is handed over at once after a quiet period. */
+    public void setRateLimit(double jobsPerSecond) {
+        if (jobsPerSecond < 0 || Double.isNaN(jobsPerSecond)) {
+            throw new IllegalArgumentException("Rate limit must not be negative: " + jobsPerSecond);
+        }
+        this.rateLimit = jobsPerSecond;
+    }
+
+    public double getRateLimit() { return rateLimit; }
+
+    /* Installs metrics receiving shed runs and saturation, null disables them */
+    public void setMetrics(SchedulerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void execute(ScheduledJob job, long fireMinute) {
+        submit(Arrays.asList(job), fireMinute, false);
+    }
+
+    @Override
+    public void executeAtSecond(ScheduledJob job, long fireSecond) {
+        submit(Arrays.asList(job), fireSecond, true);
+    }
+
+    @Override
+    public void executeAll(List<ScheduledJob> jobs, long fireMinute) {
+        submit(jobs, fireMinute, false);
+    }
+
+    @Override
+    public void executeAllAtSecond(List<ScheduledJob> jobs, long fireSecond) {
+        submit(jobs, fireSecond, true);
+    }
+
+    private void submit(List<ScheduledJob> jobs, long fireTick, boolean bySecond) {
+        submitting.incrementAndGet();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Batch dispatcher is closed");
+            }
+            ScheduledJob[] batch = jobs.toArray(new ScheduledJob[0]);
+            int room = reserve(batch.length);
+            if (room == batch.length) {
+                enqueue(new Batch(batch, fireTick, bySecond));
+                return;
+            }
+            saturated.increment();
+            SchedulerMetrics m = metrics;
+            if (m != null) {
+                m.dispatchSaturated(queued.get());
+            }
+            int shedBelow = shedBelowPriority;
+            int kept = keptFirst(batch, shedBelow);
+            if (room > 0) {
+                enqueue(new Batch(Arrays.copyOf(batch, room), fireTick, bySecond));
+            }
+            int from = queue(batch, room, fireTick, bySecond);
+            if (from == batch.length) {
+                return;
+            }
+            /* Left over: shed unless kept, and everything while the rate limit applies */
+            int overflow = rateLimit > 0 ? from : Math.max(from, kept);
+            for (int i = overflow; i < batch.length; i++) {
+                shed.increment();
+                if (m != null) {
+                    m.shed(batch[i]);
+                }
+            }
+            if (from < overflow) {
+                overflowed.add(overflow - from);
+                handOver(new Batch(Arrays.copyOfRange(batch, from, overflow), fireTick, bySecond), false);
+            }
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    /* Claims room for up to count jobs in the queue, returns how many fit */
+    private int reserve(int count) {
+        while (true) {
+            int current = queued.get();
+            int room = Math.min(count, capacity - current);
+            if (room <= 0) {
+                return 0;
+            }
+            if (queued.compareAndSet(current, current + room)) {
+                return room;
+            }
+        }
+    }
+
+    /* Queues the jobs of batch from index from in chunks fitting the room the dispatching thread made
+       meanwhile, returns the index of the first job left out */
+    private int queue(ScheduledJob[] batch, int from, long fireTick, boolean bySecond) {
+        while (from < batch.length) {
+            int room = reserve(batch.length - from);
+            if (room == 0) {
+                break;
+            }
+            enqueue(new Batch(Arrays.copyOfRange(batch, from, from + room), fireTick, bySecond));
+            from += room;
+        }
+        return from;
+    }
+
+    /* Moves the jobs at or above shedBelow ahead of the others, keeping their order, returns their count */
+    private static int keptFirst(ScheduledJob[] batch, int shedBelow) {
+        ScheduledJob[] low = null;
+        int kept = 0;
+        int lows = 0;
+        for (ScheduledJob job : batch) {
+            if (job.getPriority() >= shedBelow) {
+                batch[kept++] = job;
+            } else {
+                if (low == null) {
+                    low = new ScheduledJob[batch.length];
+                }
+                low[lows++] = job;
+            }
+        }
+        if (lows > 0) {
+            System.arraycopy(low, 0, batch, kept, lows);
+        }
+        return kept;
+    }
+
+    private void enqueue(Batch batch) {
+        if (!ring.offer(batch)) {
+            /* Not expected as every batch holds a job, the ring has a slot for each job of the capacity */
+            queued.addAndGet(-batch.jobs.length);
+            overflowed.add(batch.jobs.length);
+            handOver(batch, false);
+            return;
+        }
+        if (parked) {
+            parked = false;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void dispatch() {
+        while (true) {
+            Batch batch = ring.poll();
+            if (batch != null) {
+                handOver(batch, true);
+                queued.addAndGet(-batch.jobs.length);
+                continue;
+            }
+            if (!running) {
+                return;
+            }
+            parked = true;
+            if (ring.size() == 0 && running) {
+                LockSupport.park(this);
+            }
+            parked = false;
+        }
+    }
+
+    /* Runs on the dispatching thread for queued batches, on the calling thread for those overflowing
+       with limited false */
+    private void handOver(Batch batch, boolean limited) {
+        List<ScheduledJob> jobs = Arrays.asList(batch.jobs);
+        try {
+            double rate = limited ? rateLimit : 0;
+            if (rate == 0) {
+                if (batch.bySecond) {
+                    target.executeAllAtSecond(jobs, batch.fireTick);
+                } else {
+                    target.executeAll(jobs, batch.fireTick);
+                }
+            } else {
+                for (ScheduledJob job : batch.jobs) {
+                    acquire(rate);
+                    if (batch.bySecond) {
+                        target.executeAtSecond(job, batch.fireTick);
+                    } else {
+                        target.execute(job, batch.fireTick);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            Thread current = Thread.currentThread();
+            current.getUncaughtExceptionHandler().uncaughtException(current, e);
+        }
+        dispatched.add(batch.jobs.length);
+    }
+
+    /* Token bucket holding up to a second worth of jobs */
+    private void acquire(double rate) {
+        while (true) {
+            long now = System.nanoTime();
+            tokens = Math.min(Math.max(rate, 1), tokens + (now - refilled) * rate / NANOS_PER_SECOND);
+            refilled = now;
+            if (tokens >= 1) {
+                tokens--;
+                return;
+            }
+            LockSupport.parkNanos((long) ((1 - tokens) * NANOS_PER_SECOND / rate));
+        }
+    }
+
+    /* Jobs waiting in the queue or being handed to the target */
+    public int queued() { return queued.get(); }
+
+    public int getCapacity() { return capacity; }
+
+    /* Batches that found the queue full */
+    public long saturated() { return saturated.sum(); }
+
+    /* Runs dropped while the queue was full, for their priority or, with a rate limit, for not fitting */
+    public long shed() { return shed.sum(); }
+
+    /* Runs handed to the target on the calling thread as they did not fit the queue, without a rate limit */
+    public long overflowed() { return overflowed.sum(); }
+
+    /* Runs handed to the target so far, queued or overflowing */
+    public long dispatched() { return dispatched.sum(); }
+
+    /* Stops accepting batches, hands the queued ones to the target and waits for the dispatching thread.
+       Batches submitted while closing are handed over too, by the closing thread once the dispatching
+       thread has stopped. */
+    @Override
+    public void close() {
+        running = false;
+        while (submitting.get() > 0) {
+            Thread.yield();  /* submits that saw the dispatcher running finish queuing */
+        }
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        for (Batch batch = ring.poll(); batch != null; batch = ring.poll()) {
+            handOver(batch, true);
+            queued.addAndGet(-batch.jobs.length);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.ezy.crond.scheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Runs job bodies on an ExecutorService, honouring the OverlapPolicy of every job and running at most
+   maxConcurrency bodies at once across all jobs.
+   Runs waiting for a permit wait on the thread they were handed to, which is cheap with one virtual
+   thread per run (see VirtualThreadJobExecutor, built with the java21 profile) but ties up a thread of
+   a platform pool. Queued runs of a job cost a counter, the thread running the job picks them up. */
+public final class ConcurrentJobExecutor implements JobExecutor, AutoCloseable {
+    private static final AtomicIntegerFieldUpdater<ScheduledJob> PENDING =
+        AtomicIntegerFieldUpdater.newUpdater(ScheduledJob.class, "pending");
+
+    private final ExecutorService threads;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final LongAdder skipped = new LongAdder();
+    private final AtomicInteger queued = new AtomicInteger();
+    private volatile SchedulerMetrics metrics;  /* null when disabled */
+
+    public ConcurrentJobExecutor(ExecutorService threads, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Maximum concurrency must be positive: " + maxConcurrency);
+        }
+        this.threads = threads;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    @Override
+    public void execute(ScheduledJob job, long fireMinute) {
+        queued.incrementAndGet();
+        switch (job.getOverlapPolicy()) {
+            case SKIP:
+                if (!PENDING.compareAndSet(job, 0, 1)) {
+                    skipped.increment();
+                    queued.decrementAndGet();
+                    SchedulerMetrics m = metrics;
+                    if (m != null) {
+                        m.overlapSkipped(job);
+                    }
+                    return;
+                }
+                submit(job, () -> runOnce(job));
+                break;
+            case QUEUE:
+                if (PENDING.getAndIncrement(job) == 0) {
+                    submit(job, () -> drain(job));
+                }
+                break;
+            default:
+                PENDING.incrementAndGet(job);
+                submit(job, () -> runOnce(job));
+        }
+    }
+
+    private void submit(ScheduledJob job, Runnable run) {
+        try {
+            threads.execute(run);
+        } catch (RejectedExecutionException e) {
+            PENDING.decrementAndGet(job);
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void runOnce(ScheduledJob job) {
+        try {
+            run(job);
+        } finally {
+            PENDING.decrementAndGet(job);
+        }
+    }
+
+    /* Runs the job until no run of it is queued anymore */
+    private void drain(ScheduledJob job) {
+        do {
+            run(job);
+        } while (PENDING.decrementAndGet(job) > 0);
+    }
+
+    private void run(ScheduledJob job) {
+        try {
+            if (!job.isCancelled()) {
+                runPermitted(job);
+            }
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    private void runPermitted(ScheduledJob job) {
+        permits.acquireUninterruptibly();
+        try {
+            job.getTask().run();
+        } catch (RuntimeException e) {
+            /* A queued run must still happen when the one before it failed */
+            Thread current = Thread.currentThread();
+            current.getUncaughtExceptionHandler().uncaughtException(current, e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /* Bodies running now */
+    public int running() { return maxConcurrency - permits.availablePermits(); }
+
+    /* Runs started or waiting for the running one to finish, of one job */
+    public int pending(ScheduledJob job) { return job.pending; }
+
+    /* Runs handed to the executor that have not finished yet, running or waiting */
+    public int queued() { return queued.get(); }
+
+    /* Runs dropped by jobs with OverlapPolicy.SKIP */
+    public long skipped() { return skipped.sum(); }
+
+    public int getMaxConcurrency() { return maxConcurrency; }
+
+    /* Installs metrics receiving the runs dropped by overlap, null disables them */
+    public void setMetrics(SchedulerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /* Stops accepting runs and waits for the started ones to finish */
+    @Override
+    public void close() {
+        threads.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (threads.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
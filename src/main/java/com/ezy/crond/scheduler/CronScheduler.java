@@ -0,0 +1,464 @@
+package com.ezy.crond.scheduler;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ezy.crond.CronTime;
+import com.ezy.crond.FireTimeTables;
+
+/* Fires registered jobs at the minutes their CronTime matches.
+   Jobs with equal CronTimes, however they were written, share a ScheduleGroup. Groups are kept in a
+   TimingWheel keyed by their next execution, so registering, cancelling and firing a job cost the
+   same with a thousand or a million jobs registered, and the next execution of a schedule is worked
+   out once per fire for all of its jobs. Due jobs are handed to the JobExecutor outside of the lock,
+   a group at a time through executeAll, the scheduler thread itself never runs a job body unless the
+   executor does so. Times are epoch minutes, evaluated in UTC.
+   Jobs whose CronTime has seconds are kept in a second wheel ticking every second, which the
+   scheduler thread only ticks while it holds jobs. Firing them reuses the wheel links and the due
+   lists, so a job firing every few seconds allocates nothing per fire.
+   When the scheduler falls behind, each job's MisfirePolicy decides which of the executions it
+   catches up on are still run.
+   The current time is read from a Clock, the system clock unless another one is given, see
+   VirtualClock to run a scheduler ahead of time. */
+public final class CronScheduler implements AutoCloseable {
+    private static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long MILLIS_PER_SECOND = TimeUnit.SECONDS.toMillis(1);
+    public static final int DEFAULT_CATCH_UP_LIMIT = 100;
+
+    private final JobExecutor executor;
+    private final Clock clock;
+    private final TimingWheel minutes;
+    private final TimingWheel seconds;  /* groups whose CronTime has seconds, by epoch second */
+    private final Object lock = new Object();
+    private final Object advancing = new Object();  /* held by the one thread advancing the wheels */
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<CronTime, ScheduleGroup> groups = new HashMap<>();  /* guarded by lock */
+    private int jobs;  /* in the groups, guarded by lock */
+
+    /* Guarded by advancing: the due jobs of a tick, group after group, and where the jobs of each
+       group end */
+    private final List<ScheduleGroup> expired = new ArrayList<>();
+    private final List<ScheduledJob> due = new ArrayList<>();
+    private final List<ScheduledJob> batch = new ArrayList<>();
+    private int[] batchEnds = new int[16];
+    private int batches;
+    private ScheduledExecutorService ticker;
+    private ScheduledFuture<?> nextTick;
+    private volatile int catchUpLimit = DEFAULT_CATCH_UP_LIMIT;
+    private volatile SchedulerMetrics metrics;  /* null when disabled */
+    private volatile FireTimeTables fireTimeTables;  /* null when next fires are searched */
+
+    public CronScheduler(JobExecutor executor) {
+        this(executor, Clock.systemUTC());
+    }
+
+    /* Starts at the current minute of clock */
+    public CronScheduler(JobExecutor executor, Clock clock) {
+        this(executor, clock, Math.floorDiv(clock.millis(), MILLIS_PER_MINUTE));
+    }
+
+    /* startMinute is treated as already processed, the first jobs fire after it */
+    public CronScheduler(JobExecutor executor, long startMinute) {
+        this(executor, Clock.systemUTC(), startMinute);
+    }
+
+    public CronScheduler(JobExecutor executor, Clock clock, long startMinute) {
+        this.executor = executor;
+        this.clock = clock;
+        this.minutes = new TimingWheel(startMinute);
+        this.seconds = new TimingWheel(startMinute * 60);
+    }
+
+    /* Most missed executions a FIRE_ALL job runs when it is registered again after a restart */
+    public void setCatchUpLimit(int catchUpLimit) {
+        if (catchUpLimit < 1) {
+            throw new IllegalArgumentException("Catch-up limit must be positive: " + catchUpLimit);
+        }
+        this.catchUpLimit = catchUpLimit;
+    }
+
+    public int getCatchUpLimit() { return catchUpLimit; }
+
+    /* Installs metrics, null disables them */
+    public void setMetrics(SchedulerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public SchedulerMetrics getMetrics() { return metrics; }
+
+    /* Looks the next fires of jobs without seconds up in tables, null searches them again every time.
+       Each group steps through the table of its schedule with a cursor of its own. */
+    public void setFireTimeTables(FireTimeTables fireTimeTables) {
+        this.fireTimeTables = fireTimeTables;
+    }
+
+    public FireTimeTables getFireTimeTables() { return fireTimeTables; }
+
+    public Clock getClock() { return clock; }
+
+    /* Throws IllegalArgumentException when cronTime never fires again, e.g. '0 0 31 2 *' or a year
+       that has passed */
+    public ScheduledJob schedule(String name, CronTime cronTime, Runnable task) {
+        return schedule(name, cronTime, task, MisfirePolicy.FIRE_ALL);
+    }
+
+    public ScheduledJob schedule(String name, CronTime cronTime, Runnable task, MisfirePolicy misfirePolicy) {
+        ScheduledJob job = new ScheduledJob(ids.incrementAndGet(), name, cronTime, task, misfirePolicy);
+        synchronized (lock) {
+            add(job);
+        }
+        if (cronTime.hasSeconds()) {
+            tickEverySecond();
+        }
+        return job;
+    }
+
+    /* Registers a job that last fired at lastFireMinute, typically one restored after a restart.
+       The executions it missed since then, up to the current minute, are run on the calling thread
+       as its MisfirePolicy says before the job carries on as usual. A job with seconds catches up
+       once per minute it missed fires in. A schedule that never fires again is rejected as above,
+       without catching up. */
+    public ScheduledJob schedule(String name, CronTime cronTime, Runnable task, MisfirePolicy misfirePolicy,
+                                 long lastFireMinute) {
+        ScheduledJob job = new ScheduledJob(ids.incrementAndGet(), name, cronTime, task, misfirePolicy);
+        long currentMinute;
+        synchronized (lock) {
+            currentMinute = minutes.currentTick();
+            add(job);
+        }
+        if (cronTime.hasSeconds()) {
+            tickEverySecond();
+        }
+        if (misfirePolicy == MisfirePolicy.SKIP) {
+            SchedulerMetrics m = metrics;
+            if (m != null && lastFireMinute < currentMinute) {
+                m.misfired(job, cronTime.countBetween(lastFireMinute + 1, currentMinute + 1));
+            }
+            return job;
+        }
+        int limit = misfirePolicy == MisfirePolicy.FIRE_ONCE ? 1 : catchUpLimit;
+        long[] missed = cronTime.missedExecutions(lastFireMinute, currentMinute, limit);
+        for (long fireMinute : missed) {
+            execute(job, fireMinute);
+        }
+        SchedulerMetrics m = metrics;
+        if (m != null && lastFireMinute < currentMinute) {
+            long dropped = cronTime.countBetween(lastFireMinute + 1, currentMinute + 1) - missed.length;
+            if (dropped > 0) {
+                m.misfired(job, dropped);
+            }
+        }
+        return job;
+    }
+
+    /* Joins the group of the job's schedule, throws IllegalArgumentException when it never fires again */
+    private void add(ScheduledJob job) {
+        CronTime cronTime = job.getCronTime();
+        ScheduleGroup group = groups.get(cronTime);
+        if (group == null) {
+            group = new ScheduleGroup(cronTime);
+            TimingWheel wheel = wheel(cronTime);
+            long next = next(group, startTick(wheel));
+            if (next == CronTime.NEVER) {
+                throw new IllegalArgumentException("Schedule of " + job.getName() + " never fires again");
+            }
+            wheel.add(group, next);
+            groups.put(cronTime, group);
+        }
+        group.add(job);
+        jobs++;
+    }
+
+    /* The tick a new group of wheel fires after. The seconds wheel is only ticked every second while it
+       holds groups and may lag the clock by up to a minute, so while the clock is in the minutes the
+       scheduler is at a group with seconds starts from the current second of the clock instead of
+       firing the seconds before it was added. */
+    private long startTick(TimingWheel wheel) {
+        long tick = wheel.currentTick();
+        if (wheel != seconds) {
+            return tick;
+        }
+        long now = Math.floorDiv(clock.millis(), MILLIS_PER_SECOND);
+        if (now <= tick || now >= (minutes.currentTick() + 2) * 60) {
+            return tick;
+        }
+        if (seconds.size() == 0) {
+            seconds.skipTo(now);
+        }
+        return now;
+    }
+
+    private TimingWheel wheel(CronTime cronTime) {
+        return cronTime.hasSeconds() ? seconds : minutes;
+    }
+
+    /* Next fire of group after tick, in the ticks of its wheel */
+    private long next(ScheduleGroup group, long tick) {
+        CronTime cronTime = group.cronTime;
+        if (cronTime.hasSeconds()) {
+            return cronTime.nextExecutionSecond(tick);
+        }
+        FireTimeTables tables = fireTimeTables;
+        if (tables == null) {
+            return cronTime.nextExecution(tick);
+        }
+        if (group.cursor == null || group.cursor.getTables() != tables) {
+            group.cursor = tables.cursor(cronTime);
+        }
+        return group.cursor.nextExecution(tick);
+    }
+
+    /* Returns false when the job was not scheduled anymore */
+    public boolean cancel(ScheduledJob job) {
+        job.cancelled();
+        SchedulerMetrics m = metrics;
+        if (m != null) {
+            m.cancelled(job);
+        }
+        synchronized (lock) {
+            ScheduleGroup group = job.group;
+            if (group == null) {
+                return false;
+            }
+            group.remove(job);
+            jobs--;
+            if (group.size == 0) {
+                wheel(group.cronTime).remove(group);
+                groups.remove(group.cronTime);
+            }
+            return true;
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return jobs;
+        }
+    }
+
+    /* Number of distinct schedules among the jobs */
+    public int groupCount() {
+        synchronized (lock) {
+            return groups.size();
+        }
+    }
+
+    /* Last minute the scheduler has fired jobs for */
+    public long currentMinute() {
+        synchronized (lock) {
+            return minutes.currentTick();
+        }
+    }
+
+    /* Fires every job due up to and including epochMinute, minute by minute.
+       Jobs with seconds fire up to the start of epochMinute.
+       Executions before epochMinute are late and only run when the MisfirePolicy of their job allows.
+       Callers advancing at the same time, the started scheduler thread among them, take turns. */
+    public void advanceTo(long epochMinute) {
+        synchronized (advancing) {
+            advance(seconds, epochMinute * 60);
+            advance(minutes, epochMinute);
+        }
+    }
+
+    /* Fires every job due up to the current second of the clock */
+    public void advanceToNow() {
+        advanceToSecond(Math.floorDiv(clock.millis(), MILLIS_PER_SECOND));
+    }
+
+    /* Fires every job due up to and including epochSecond, jobs without seconds at the start of their minutes */
+    public void advanceToSecond(long epochSecond) {
+        synchronized (advancing) {
+            advance(seconds, epochSecond);
+            advance(minutes, Math.floorDiv(epochSecond, 60));
+        }
+    }
+
+    /* Moves wheel to target one tick at a time, dispatching the jobs due at each tick */
+    private void advance(TimingWheel wheel, long target) {
+        SchedulerMetrics m = metrics;
+        while (true) {
+            long fireTick;
+            synchronized (lock) {
+                if (wheel.currentTick() >= target) {
+                    return;
+                }
+                if (wheel.size() == 0) {
+                    wheel.skipTo(target);
+                    return;
+                }
+                wheel.advance(expired);
+                fireTick = wheel.currentTick();
+                for (int g = 0; g < expired.size(); g++) {
+                    ScheduleGroup group = expired.get(g);
+                    long next;
+                    if (m == null) {
+                        next = next(group, fireTick);
+                    } else {
+                        long started = System.nanoTime();
+                        next = next(group, fireTick);
+                        m.nextExecutionComputed(group.jobs[0], System.nanoTime() - started);
+                    }
+                    for (int i = 0; i < group.size; i++) {
+                        ScheduledJob job = group.jobs[i];
+                        if (fireTick == target || runsLate(job.getMisfirePolicy(), next, target)) {
+                            due.add(job);
+                        } else if (m != null) {
+                            m.misfired(job, 1);
+                        }
+                    }
+                    endBatch();
+                    if (next != CronTime.NEVER) {
+                        wheel.add(group, next);
+                    } else {
+                        /* The schedule ran out, e.g. its last year passed */
+                        groups.remove(group.cronTime);
+                        jobs -= group.size;
+                        while (group.size > 0) {
+                            group.remove(group.jobs[group.size - 1]);
+                        }
+                    }
+                }
+                expired.clear();
+            }
+            dispatch(wheel, fireTick, m);
+        }
+    }
+
+    /* Closes the batch of the jobs of a group, unless none of them runs */
+    private void endBatch() {
+        if (due.size() == (batches == 0 ? 0 : batchEnds[batches - 1])) {
+            return;
+        }
+        if (batches == batchEnds.length) {
+            batchEnds = Arrays.copyOf(batchEnds, batches * 2);
+        }
+        batchEnds[batches++] = due.size();
+    }
+
+    /* A late execution runs under FIRE_ALL, and under FIRE_ONCE when it is the last one before catching up */
+    private static boolean runsLate(MisfirePolicy policy, long next, long target) {
+        switch (policy) {
+            case FIRE_ALL:
+                return true;
+            case FIRE_ONCE:
+                return next > target;
+            default:
+                return false;
+        }
+    }
+
+    /* Hands the due jobs of fireTick to the executor, one call per group */
+    private void dispatch(TimingWheel wheel, long fireTick, SchedulerMetrics m) {
+        boolean bySecond = wheel == seconds;
+        long fireMinute = bySecond ? Math.floorDiv(fireTick, 60) : fireTick;
+        long lagMillis = m == null ? 0
+            : clock.millis() - fireTick * (bySecond ? MILLIS_PER_SECOND : MILLIS_PER_MINUTE);
+        int from = 0;
+        for (int b = 0; b < batches; b++) {
+            int to = batchEnds[b];
+            for (int i = from; i < to; i++) {
+                ScheduledJob job = due.get(i);
+                if (job.isCancelled()) {
+                    continue;
+                }
+                if (m != null) {
+                    m.fired(job, fireMinute, lagMillis);
+                }
+                batch.add(job);
+            }
+            from = to;
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                if (bySecond) {
+                    executor.executeAllAtSecond(batch, fireTick);
+                } else {
+                    executor.executeAll(batch, fireMinute);
+                }
+            } catch (RuntimeException e) {
+                /* One failing group must not stop the others due at the same tick */
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, e);
+            } finally {
+                batch.clear();
+            }
+        }
+        due.clear();
+        batches = 0;
+    }
+
+    private void execute(ScheduledJob job, long fireMinute) {
+        if (job.isCancelled()) {
+            return;
+        }
+        try {
+            executor.execute(job, fireMinute);
+        } catch (RuntimeException e) {
+            /* One failing job must not stop the others due in the same minute */
+            Thread current = Thread.currentThread();
+            current.getUncaughtExceptionHandler().uncaughtException(current, e);
+        }
+    }
+
+    /* Starts a daemon thread advancing the scheduler at every minute boundary of the clock, and every
+       second while jobs with seconds are scheduled. The thread waits in real time, a clock running
+       ahead of it is better driven with advanceToNow. */
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jcrond-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleTick();
+    }
+
+    private synchronized void scheduleTick() {
+        if (ticker == null) {
+            return;
+        }
+        long period;
+        synchronized (lock) {
+            period = seconds.size() > 0 ? MILLIS_PER_SECOND : MILLIS_PER_MINUTE;
+        }
+        long now = clock.millis();
+        nextTick = ticker.schedule(this::tick, period - Math.floorMod(now, period), TimeUnit.MILLISECONDS);
+    }
+
+    /* Brings a tick waiting for the next minute forward to the next second */
+    private synchronized void tickEverySecond() {
+        if (nextTick != null && nextTick.getDelay(TimeUnit.MILLISECONDS) > MILLIS_PER_SECOND && nextTick.cancel(false)) {
+            scheduleTick();
+        }
+    }
+
+    private void tick() {
+        try {
+            advanceToNow();
+        } finally {
+            scheduleTick();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+            nextTick = null;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ezy.crond.scheduler;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/* Runs the body of a job once the scheduler decided it is due */
+public interface JobExecutor {
+
+    /* fireMinute is the epoch minute the job was scheduled for, not the time it is started */
+    void execute(ScheduledJob job, long fireMinute);
+
+    /* Runs a job whose schedule has seconds, fireSecond is the epoch second it was scheduled for.
+       By default the job runs as any other, with the minute holding fireSecond. */
+    default void executeAtSecond(ScheduledJob job, long fireSecond) {
+        execute(job, Math.floorDiv(fireSecond, 60));
+    }
+
+    /* Runs jobs sharing a schedule, all due at fireMinute and handed over in one call by CronScheduler.
+       jobs is only valid during the call. By default every job runs on its own, a job failing to start
+       is reported to the uncaught exception handler of the thread and does not keep the others from
+       running. */
+    default void executeAll(List<ScheduledJob> jobs, long fireMinute) {
+        for (int i = 0; i < jobs.size(); i++) {
+            try {
+                execute(jobs.get(i), fireMinute);
+            } catch (RuntimeException e) {
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, e);
+            }
+        }
+    }
+
+    /* As executeAll, for jobs whose schedule has seconds */
+    default void executeAllAtSecond(List<ScheduledJob> jobs, long fireSecond) {
+        for (int i = 0; i < jobs.size(); i++) {
+            try {
+                executeAtSecond(jobs.get(i), fireSecond);
+            } catch (RuntimeException e) {
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, e);
+            }
+        }
+    }
+
+    /* Runs the job on the scheduler thread, only suitable for short jobs and tests */
+    static JobExecutor direct() {
+        return (job, fireMinute) -> job.getTask().run();
+    }
+
+    static JobExecutor of(Executor executor) {
+        return (job, fireMinute) -> executor.execute(job.getTask());
+    }
+
+    /* As of(executor), except that the jobs sharing a schedule are submitted to executor as a single
+       task running their bodies one after the other. Fanning out a thousand jobs then costs one
+       submission, at the price of running them in turn, so it suits short jobs. */
+    static JobExecutor batched(Executor executor) {
+        return new JobExecutor() {
+            @Override
+            public void execute(ScheduledJob job, long fireMinute) {
+                executor.execute(job.getTask());
+            }
+
+            @Override
+            public void executeAll(List<ScheduledJob> jobs, long fireMinute) {
+                ScheduledJob[] batch = jobs.toArray(new ScheduledJob[0]);
+                executor.execute(() -> {
+                    for (ScheduledJob job : batch) {
+                        try {
+                            job.getTask().run();
+                        } catch (RuntimeException e) {
+                            /* One failing body must not stop the others of the batch */
+                            Thread current = Thread.currentThread();
+                            current.getUncaughtExceptionHandler().uncaughtException(current, e);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void executeAllAtSecond(List<ScheduledJob> jobs, long fireSecond) {
+                executeAll(jobs, Math.floorDiv(fireSecond, 60));
+            }
+        };
+    }
+}
@@ -0,0 +1,13 @@
+package com.ezy.crond.scheduler;
+
+/* What a job does with executions the scheduler was too late for, because the scheduler thread
+   was held up or because the job is registered again after a restart with the last time it fired.
+   An execution is late when the scheduler only gets to it while catching up to a later minute. */
+public enum MisfirePolicy {
+    /* Run every missed execution, in order, up to the catch-up limit of the scheduler */
+    FIRE_ALL,
+    /* Run the most recent missed execution once and drop the others */
+    FIRE_ONCE,
+    /* Drop missed executions and wait for the next one on time */
+    SKIP
+}
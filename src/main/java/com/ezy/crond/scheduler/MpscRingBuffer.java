@@ -0,0 +1,75 @@
+package com.ezy.crond.scheduler;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/* Bounded lock-free queue for any number of producers and a single consumer, after Dmitry Vyukov's
+   bounded queue. Every slot carries a sequence number telling whose turn it is: a producer claims a
+   position by a compare and set on the tail and publishes its element by moving the sequence of the
+   slot on, the consumer takes the element once the sequence says it was published and hands the
+   slot to the producer one lap later. Producers never wait for each other to finish publishing. */
+final class MpscRingBuffer<E> {
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();  /* only moved by the consumer */
+
+    /* capacity is rounded up to a power of two */
+    MpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Ring buffer capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        size = Math.max(size, 1);
+        elements = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    int capacity() { return mask + 1; }
+
+    /* Returns false when the buffer is full */
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    sequences.lazySet(index, position + 1);  /* publishes the element */
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;  /* the consumer has not freed the slot of the previous lap */
+            } else {
+                position = tail.get();  /* another producer took the position */
+            }
+        }
+    }
+
+    /* Only called by the consumer, null when no published element is waiting */
+    E poll() {
+        long position = head.get();
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        E element = elements.get(index);
+        elements.lazySet(index, null);
+        sequences.lazySet(index, position + mask + 1);
+        head.lazySet(position + 1);
+        return element;
+    }
+
+    /* Elements claimed and not taken yet, including those still being published */
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+}
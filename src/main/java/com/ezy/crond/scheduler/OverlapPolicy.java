@@ -0,0 +1,11 @@
+package com.ezy.crond.scheduler;
+
+/* What a ConcurrentJobExecutor does when a job is due while an earlier run of it has not finished */
+public enum OverlapPolicy {
+    /* Start the new run alongside the running one */
+    CONCURRENT,
+    /* Drop the new run */
+    SKIP,
+    /* Run it once the running one finishes, runs of the job never overlap and are never dropped */
+    QUEUE
+}
@@ -0,0 +1,45 @@
+package com.ezy.crond.scheduler;
+
+import com.ezy.crond.CronTime;
+import com.ezy.crond.FireTimeTables;
+
+/* The jobs of a CronScheduler sharing a schedule, by CronTime equality, so '0-59 * * * *' and
+   '* * * * *' are one group. The timing wheel holds the group rather than its jobs: the next fire of
+   the schedule is worked out once per fire however many jobs share it, and the jobs are handed to the
+   JobExecutor together. Jobs are kept in an array, swapped out on removal, so adding and removing a
+   job are O(1) and firing them walks the array.
+   Only touched under the scheduler lock. */
+final class ScheduleGroup {
+    final CronTime cronTime;
+    ScheduledJob[] jobs = new ScheduledJob[1];
+    int size;
+    FireTimeTables.Cursor cursor;  /* position in the fire time table, see CronScheduler.setFireTimeTables */
+
+    /* Owned by the TimingWheel */
+    long deadline;              /* epoch minute of the next fire, epoch second for schedules with seconds */
+    TimingWheel.Bucket bucket;  /* null when the group is not in the wheel */
+    ScheduleGroup prev, next;
+
+    ScheduleGroup(CronTime cronTime) {
+        this.cronTime = cronTime;
+    }
+
+    void add(ScheduledJob job) {
+        if (size == jobs.length) {
+            ScheduledJob[] grown = new ScheduledJob[size * 2];
+            System.arraycopy(jobs, 0, grown, 0, size);
+            jobs = grown;
+        }
+        job.group = this;
+        job.index = size;
+        jobs[size++] = job;
+    }
+
+    void remove(ScheduledJob job) {
+        ScheduledJob last = jobs[--size];
+        jobs[job.index] = last;
+        last.index = job.index;
+        jobs[size] = null;
+        job.group = null;
+    }
+}
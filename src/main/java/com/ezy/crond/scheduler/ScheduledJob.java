@@ -0,0 +1,57 @@
+package com.ezy.crond.scheduler;
+
+import com.ezy.crond.CronTime;
+
+/* A job registered with a CronScheduler, also the handle used to cancel it */
+public final class ScheduledJob {
+    private final long id;
+    private final String name;
+    private final CronTime cronTime;
+    private final Runnable task;
+    private final MisfirePolicy misfirePolicy;
+    private volatile boolean cancelled;
+    private volatile OverlapPolicy overlapPolicy = OverlapPolicy.CONCURRENT;
+    private volatile int priority;
+
+    /* Runs started or queued and not finished yet, owned by ConcurrentJobExecutor */
+    volatile int pending;
+
+    /* Owned by the ScheduleGroup and only touched under the scheduler lock */
+    ScheduleGroup group;  /* null when the job is not scheduled */
+    int index;            /* in the jobs of its group */
+
+    ScheduledJob(long id, String name, CronTime cronTime, Runnable task, MisfirePolicy misfirePolicy) {
+        this.id = id;
+        this.name = name;
+        this.cronTime = cronTime;
+        this.task = task;
+        this.misfirePolicy = misfirePolicy;
+    }
+
+    public long getId() { return id; }
+    public String getName() { return name; }
+    public CronTime getCronTime() { return cronTime; }
+    public Runnable getTask() { return task; }
+    public MisfirePolicy getMisfirePolicy() { return misfirePolicy; }
+    public boolean isCancelled() { return cancelled; }
+    public OverlapPolicy getOverlapPolicy() { return overlapPolicy; }
+    public int getPriority() { return priority; }
+
+    /* Only honoured by executors that track running jobs, such as ConcurrentJobExecutor */
+    public void setOverlapPolicy(OverlapPolicy overlapPolicy) {
+        this.overlapPolicy = overlapPolicy;
+    }
+
+    /* Higher runs first to be kept when runs are shed, 0 by default. Only honoured by executors that
+       shed runs, such as BatchDispatcher. */
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    void cancelled() { cancelled = true; }
+
+    @Override
+    public String toString() {
+        return "job: " + id + " name: " + name;
+    }
+}
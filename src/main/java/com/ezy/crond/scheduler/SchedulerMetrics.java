@@ -0,0 +1,28 @@
+package com.ezy.crond.scheduler;
+
+/* Receives what a CronScheduler and its executor do, for monitoring.
+   Schedulers and executors without metrics skip the measurements altogether, so instrumentation only
+   costs something once it is installed. Callbacks run on the scheduler thread or the thread running
+   the job and must be quick and thread safe. */
+public interface SchedulerMetrics {
+
+    /* job was handed to the executor lagMillis after the start of fireMinute */
+    default void fired(ScheduledJob job, long fireMinute, long lagMillis) {}
+
+    /* Working out the next execution of job took nanos */
+    default void nextExecutionComputed(ScheduledJob job, long nanos) {}
+
+    /* count executions of job were dropped by its MisfirePolicy */
+    default void misfired(ScheduledJob job, long count) {}
+
+    /* A run of job was dropped as the previous one was still running, see OverlapPolicy.SKIP */
+    default void overlapSkipped(ScheduledJob job) {}
+
+    /* A run of job was dropped as the dispatch queue was full, see BatchDispatcher */
+    default void shed(ScheduledJob job) {}
+
+    /* A batch of jobs found the dispatch queue full, queued jobs waiting in it */
+    default void dispatchSaturated(int queued) {}
+
+    default void cancelled(ScheduledJob job) {}
+}
@@ -0,0 +1,143 @@
+package com.ezy.crond.scheduler;
+
+import java.util.List;
+
+/* Hierarchical timing wheel with a resolution of one tick, a minute or a second for CronScheduler.
+   Level 0 has a slot per tick, every level above it has slots 64 times as wide, so four levels
+   cover 64^4 ticks (about 31 years of minutes or 194 days of seconds) ahead of the current tick,
+   later deadlines wait in an overflow list placed again every 64^4 ticks. An entry is placed on the
+   lowest level its deadline fits in and falls down a level each time the wheel reaches the start of
+   its slot. Entries are the ScheduleGroups of CronScheduler, linked into their slot directly, so add,
+   remove and expire are all O(1).
+   Not thread safe, CronScheduler guards it with its lock. */
+final class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    /* Doubly linked list of groups sharing a slot */
+    static final class Bucket {
+        ScheduleGroup head, tail;
+
+        void append(ScheduleGroup group) {
+            group.bucket = this;
+            group.prev = tail;
+            group.next = null;
+            if (tail == null) {
+                head = group;
+            } else {
+                tail.next = group;
+            }
+            tail = group;
+        }
+
+        void unlink(ScheduleGroup group) {
+            if (group.prev == null) {
+                head = group.next;
+            } else {
+                group.prev.next = group.next;
+            }
+            if (group.next == null) {
+                tail = group.prev;
+            } else {
+                group.next.prev = group.prev;
+            }
+            group.bucket = null;
+            group.prev = null;
+            group.next = null;
+        }
+
+        /* Detaches the whole list and returns its first group, still linked through next */
+        ScheduleGroup clear() {
+            ScheduleGroup first = head;
+            head = null;
+            tail = null;
+            return first;
+        }
+    }
+
+    private final Bucket[][] levels = new Bucket[LEVELS][SLOTS];
+    private final Bucket overflow = new Bucket();  /* deadlines beyond the top level */
+    private long current;                          /* every deadline up to this tick has expired */
+    private int size;
+
+    TimingWheel(long currentTick) {
+        this.current = currentTick;
+        for (Bucket[] level : levels) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Bucket();
+            }
+        }
+    }
+
+    long currentTick() { return current; }
+    int size() { return size; }
+
+    /* Deadlines at or before the current tick expire on the next advance */
+    void add(ScheduleGroup group, long deadline) {
+        group.deadline = Math.max(deadline, current + 1);
+        place(group);
+        size++;
+    }
+
+    boolean remove(ScheduleGroup group) {
+        if (group.bucket == null) {
+            return false;
+        }
+        group.bucket.unlink(group);
+        size--;
+        return true;
+    }
+
+    /* Moves the wheel forward one tick and appends every group due at that tick to expired */
+    void advance(List<ScheduleGroup> expired) {
+        long now = ++current;
+        if ((now & ((1L << (SLOT_BITS * LEVELS)) - 1)) == 0) {
+            cascade(overflow);
+        }
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((now & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                cascade(levels[level][(int) (now >> (SLOT_BITS * level)) & SLOT_MASK]);
+            }
+        }
+        ScheduleGroup group = levels[0][(int) now & SLOT_MASK].clear();
+        while (group != null) {
+            ScheduleGroup next = group.next;
+            group.bucket = null;
+            group.prev = null;
+            group.next = null;
+            expired.add(group);
+            size--;
+            group = next;
+        }
+    }
+
+    /* Jumps straight to a later tick, only valid while the wheel is empty */
+    void skipTo(long tick) {
+        if (size != 0) {
+            throw new IllegalStateException("Can not skip a timing wheel holding " + size + " groups");
+        }
+        current = Math.max(current, tick);
+    }
+
+    private void cascade(Bucket bucket) {
+        ScheduleGroup group = bucket.clear();
+        while (group != null) {
+            ScheduleGroup next = group.next;
+            place(group);
+            group = next;
+        }
+    }
+
+    private void place(ScheduleGroup group) {
+        long delta = group.deadline - current;
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < (1L << (SLOT_BITS * (level + 1)))) {
+                levels[level][(int) (group.deadline >> (SLOT_BITS * level)) & SLOT_MASK].append(group);
+                return;
+            }
+        }
+        overflow.append(group);
+    }
+}
@@ -0,0 +1,51 @@
+package com.ezy.crond.scheduler;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/* Clock that only moves when told to, for driving a CronScheduler through simulated time as fast as
+   it keeps up, see LoadReplay in the tests. Always in UTC like the scheduler. Safe for concurrent use. */
+public final class VirtualClock extends Clock {
+    private volatile long millis;
+
+    public VirtualClock(long epochMillis) {
+        this.millis = epochMillis;
+    }
+
+    /* Moving the clock back is allowed, a scheduler ignores times it already processed */
+    public synchronized void set(long epochMillis) {
+        millis = epochMillis;
+    }
+
+    public synchronized void advance(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Can not advance a clock by a negative duration: " + millis);
+        }
+        this.millis += millis;
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        if (!ZoneOffset.UTC.equals(zone.normalized())) {
+            throw new IllegalArgumentException("A virtual clock is always in UTC: " + zone);
+        }
+        return this;
+    }
+}
@@ -0,0 +1,305 @@
+package com.ezy.crond.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import com.ezy.crond.CronTime;
+import com.ezy.crond.CronTimeCodec;
+
+/* Local store of compiled schedules and the minute each last fired, so a restart loads jobs in bulk
+   instead of parsing every expression again.
+   The store is a directory holding a snapshot and an append-only log of the changes made since it.
+   Both are made of fixed-width records: a job id, the schedule as written by CronTimeCodec and the
+   last fire minute. Opening the store maps the snapshot and replays the log over it, compact() folds
+   the log into a new snapshot. The store compacts itself once the log outgrows both the compaction
+   threshold and a snapshot of the jobs it holds, so the log stays within the larger of the two and
+   every snapshot written is paid for by at least as many bytes of log.
+
+     snapshot  int magic, int version, int record count, int zero, then the records
+     log       entries of byte operation, 3 zero bytes, int CRC32 of the rest, then a record
+
+   Changes are appended to the log as they are made but only reach the disk for sure after sync().
+   A log cut short by a crash is truncated after its last complete entry when the store is opened,
+   which is logged as a warning along with the bytes dropped.
+   Safe for concurrent use. */
+public final class CronStore implements AutoCloseable {
+    static final String SNAPSHOT = "schedules.snapshot";
+    static final String LOG = "schedules.log";
+
+    static final int MAGIC = 0x4A43524E;  /* "JCRN" */
+    static final int VERSION = 2;  /* 2 widened the schedules to seconds and years */
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 8 + CronTimeCodec.BYTES + 8;
+    static final int ENTRY_BYTES = 8 + RECORD_BYTES;
+    static final int REPLAY_CHUNK_ENTRIES = 4096;  /* log entries read at once when opening */
+    public static final long DEFAULT_COMPACTION_BYTES = 64L << 20;
+
+    private static final Logger LOGGER = Logger.getLogger(CronStore.class.getName());
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte FIRED = 3;
+
+    /* Receives the jobs of the store, see forEach */
+    public interface Visitor {
+        void accept(long id, CronTime cronTime, long lastFireMinute);
+    }
+
+    private static final class Entry {
+        final CronTime cronTime;
+        long lastFireMinute;
+
+        Entry(CronTime cronTime, long lastFireMinute) {
+            this.cronTime = cronTime;
+            this.lastFireMinute = lastFireMinute;
+        }
+    }
+
+    private final Path directory;
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final ByteBuffer entry = ByteBuffer.allocateDirect(ENTRY_BYTES);
+    private final CRC32 crc = new CRC32();
+    private FileChannel log;
+    private long compactionBytes = DEFAULT_COMPACTION_BYTES;
+
+    private CronStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /* Opens the store in directory, creating it when it does not exist */
+    public static CronStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        CronStore store = new CronStore(directory);
+        CronTimeCodec codec = new CronTimeCodec();
+        store.loadSnapshot(codec);
+        store.replayLog(codec);
+        return store;
+    }
+
+    private void loadSnapshot(CronTimeCodec codec) throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT);
+        if (!Files.exists(snapshot)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a schedule snapshot: " + snapshot);
+            }
+            int count = buffer.getInt(8);
+            if ((long) count * RECORD_BYTES + HEADER_BYTES != buffer.limit()) {
+                throw new IOException("Schedule snapshot is " + buffer.limit() + " bytes for " + count +
+                                      " records: " + snapshot);
+            }
+            for (int i = 0; i < count; i++) {
+                int offset = HEADER_BYTES + i * RECORD_BYTES;
+                entries.put(buffer.getLong(offset), new Entry(read(codec, buffer, offset + 8, snapshot),
+                                                              buffer.getLong(offset + 8 + CronTimeCodec.BYTES)));
+            }
+        }
+    }
+
+    /* Reads the log a chunk of entries at a time, so its size is only limited by the disk */
+    private void replayLog(CronTimeCodec codec) throws IOException {
+        Path path = directory.resolve(LOG);
+        log = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = log.size();
+        ByteBuffer chunk = ByteBuffer.allocateDirect(REPLAY_CHUNK_ENTRIES * ENTRY_BYTES);
+        long valid = 0;
+        replay:
+        while (valid + ENTRY_BYTES <= size) {
+            chunk.clear();
+            chunk.limit((int) Math.min(chunk.capacity(), (size - valid) / ENTRY_BYTES * ENTRY_BYTES));
+            while (chunk.hasRemaining() && log.read(chunk, valid + chunk.position()) >= 0) {
+                /* reads until the chunk is full */
+            }
+            if (chunk.position() < ENTRY_BYTES) {
+                break;  /* the log shrank while it was read */
+            }
+            for (int offset = 0; offset + ENTRY_BYTES <= chunk.position(); offset += ENTRY_BYTES) {
+                if (checksum(chunk, offset) != chunk.getInt(offset + 4)) {
+                    break replay;
+                }
+                apply(codec, chunk, offset, path);
+                valid += ENTRY_BYTES;
+            }
+        }
+        if (valid < size) {
+            LOGGER.warning("Schedule log " + path + " is torn or corrupt after " + valid / ENTRY_BYTES +
+                           " entries, dropping its last " + (size - valid) + " bytes");
+            log.truncate(valid);
+        }
+        log.position(valid);
+    }
+
+    /* Replays the log entry at offset in buffer */
+    private void apply(CronTimeCodec codec, ByteBuffer buffer, int offset, Path path) throws IOException {
+        long id = buffer.getLong(offset + 8);
+        long lastFireMinute = buffer.getLong(offset + 16 + CronTimeCodec.BYTES);
+        switch (buffer.get(offset)) {
+            case PUT:
+                entries.put(id, new Entry(read(codec, buffer, offset + 16, path), lastFireMinute));
+                break;
+            case REMOVE:
+                entries.remove(id);
+                break;
+            case FIRED:
+                Entry fired = entries.get(id);
+                if (fired != null) {
+                    fired.lastFireMinute = lastFireMinute;
+                }
+                break;
+            default:
+                throw new IOException("Unknown operation in schedule log: " + path);
+        }
+    }
+
+    private static CronTime read(CronTimeCodec codec, ByteBuffer buffer, int offset, Path path) throws IOException {
+        try {
+            return codec.read(buffer, offset);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt schedule in " + path, e);
+        }
+    }
+
+    /* CRC32 of the entry at offset without its operation header */
+    private int checksum(ByteBuffer buffer, int offset) {
+        crc.reset();
+        crc.update(buffer.get(offset));
+        for (int i = offset + 8; i < offset + ENTRY_BYTES; i++) {
+            crc.update(buffer.get(i));
+        }
+        return (int) crc.getValue();
+    }
+
+    /* Least size of the log compacting the store on its own, Long.MAX_VALUE leaves compaction to compact() */
+    public synchronized void setCompactionThreshold(long bytes) {
+        if (bytes < 1) {
+            throw new IllegalArgumentException("Compaction threshold must be positive: " + bytes);
+        }
+        this.compactionBytes = bytes;
+    }
+
+    public synchronized long getCompactionThreshold() { return compactionBytes; }
+
+    public synchronized void put(long id, CronTime cronTime, long lastFireMinute) throws IOException {
+        append(PUT, id, cronTime, lastFireMinute);
+        entries.put(id, new Entry(cronTime, lastFireMinute));
+        compactWhenDue();
+    }
+
+    /* Records that the job fired at fireMinute, does nothing for jobs not in the store */
+    public synchronized void fired(long id, long fireMinute) throws IOException {
+        Entry fired = entries.get(id);
+        if (fired != null) {
+            append(FIRED, id, null, fireMinute);
+            fired.lastFireMinute = fireMinute;
+            compactWhenDue();
+        }
+    }
+
+    public synchronized boolean remove(long id) throws IOException {
+        if (!entries.containsKey(id)) {
+            return false;
+        }
+        append(REMOVE, id, null, 0);
+        entries.remove(id);
+        compactWhenDue();
+        return true;
+    }
+
+    public synchronized CronTime get(long id) {
+        Entry found = entries.get(id);
+        return found == null ? null : found.cronTime;
+    }
+
+    /* The minute the job last fired, Long.MIN_VALUE when the job is not in the store */
+    public synchronized long lastFireMinute(long id) {
+        Entry found = entries.get(id);
+        return found == null ? Long.MIN_VALUE : found.lastFireMinute;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void forEach(Visitor visitor) {
+        for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+            visitor.accept(e.getKey(), e.getValue().cronTime, e.getValue().lastFireMinute);
+        }
+    }
+
+    private void append(byte operation, long id, CronTime cronTime, long lastFireMinute) throws IOException {
+        ByteBuffer buffer = entry;
+        for (int i = 0; i < ENTRY_BYTES; i += 8) {
+            buffer.putLong(i, 0L);
+        }
+        buffer.put(0, operation);
+        buffer.putLong(8, id);
+        if (cronTime != null) {
+            CronTimeCodec.write(cronTime, buffer, 16);
+        }
+        buffer.putLong(16 + CronTimeCodec.BYTES, lastFireMinute);
+        buffer.putInt(4, checksum(buffer, 0));
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            log.write(buffer);
+        }
+    }
+
+    /* Compacts once the log outgrows both the threshold and a snapshot of the jobs */
+    private void compactWhenDue() throws IOException {
+        long logBytes = log.position();
+        if (logBytes > compactionBytes && logBytes > HEADER_BYTES + (long) entries.size() * RECORD_BYTES) {
+            compact();
+        }
+    }
+
+    /* Forces the changes made so far to the disk */
+    public synchronized void sync() throws IOException {
+        log.force(false);
+    }
+
+    /* Writes every job to a new snapshot and empties the log. The snapshot replaces the old one in a
+       single rename, a crash before the log is emptied replays changes the snapshot already holds. */
+    public synchronized void compact() throws IOException {
+        Path temporary = directory.resolve(SNAPSHOT + ".tmp");
+        long bytes = HEADER_BYTES + (long) entries.size() * RECORD_BYTES;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, entries.size());
+            buffer.putInt(12, 0);
+            int offset = HEADER_BYTES;
+            for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+                buffer.putLong(offset, e.getKey());
+                CronTimeCodec.write(e.getValue().cronTime, buffer, offset + 8);
+                buffer.putLong(offset + 8 + CronTimeCodec.BYTES, e.getValue().lastFireMinute);
+                offset += RECORD_BYTES;
+            }
+            buffer.force();
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        log.truncate(0);
+        log.position(0);
+        log.force(true);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+}
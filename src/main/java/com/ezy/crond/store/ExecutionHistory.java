@@ -0,0 +1,380 @@
+package com.ezy.crond.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+
+import com.ezy.crond.CronTime;
+
+/* The last runs of every job, kept off the heap so millions of jobs cost the garbage collector
+   nothing. Each job gets a slot holding a ring of fixed-width records, the oldest record making
+   room for a new one once the ring is full. Records are kept in the order of their fire minutes,
+   so time ranges are found by binary search.
+   Slots live in a memory-mapped file, or in direct buffers for a history that is not kept. Appends
+   and queries do not allocate, job ids are found through an open-addressing table of primitives.
+
+     file    int magic, int version, int runs per job, int slots, then the slots
+     slot    long job id, int records, int index of the oldest record, then the records
+     record  long fire minute, long start millis, long end millis, int exit status, int zero
+
+   Appends reach the file as they are made and the disk for sure after sync(). Safe for concurrent use. */
+public final class ExecutionHistory implements AutoCloseable {
+    static final int MAGIC = 0x4A435248;  /* "JCRH" */
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int SLOT_HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 32;
+
+    /* Receives the runs of a job, see runs */
+    public interface Visitor {
+        void accept(long fireMinute, long startMillis, long endMillis, int exitStatus);
+    }
+
+    private final FileChannel channel;  /* null when the history is not kept */
+    private final ByteBuffer[] chunks;  /* the slots, split in buffers of at most 2GB */
+    private final int slotsPerChunk;
+    private final int slotBytes;
+    private final int runsPerJob;
+    private final int maxJobs;
+    private final SlotTable table;
+    private final int[] free;  /* stack of slots freed by remove */
+    private int freeCount;
+    private int nextSlot;      /* slots from here on were never used */
+
+    private ExecutionHistory(FileChannel channel, int maxJobs, int runsPerJob) throws IOException {
+        this.channel = channel;
+        this.maxJobs = maxJobs;
+        this.runsPerJob = runsPerJob;
+        this.slotBytes = SLOT_HEADER_BYTES + runsPerJob * RECORD_BYTES;
+        this.slotsPerChunk = Integer.MAX_VALUE / slotBytes;
+        this.chunks = new ByteBuffer[(maxJobs + slotsPerChunk - 1) / slotsPerChunk];
+        for (int c = 0; c < chunks.length; c++) {
+            int slots = Math.min(slotsPerChunk, maxJobs - c * slotsPerChunk);
+            long offset = HEADER_BYTES + (long) c * slotsPerChunk * slotBytes;
+            chunks[c] = channel == null ? ByteBuffer.allocateDirect(slots * slotBytes)
+                : channel.map(FileChannel.MapMode.READ_WRITE, offset, (long) slots * slotBytes);
+        }
+        this.table = new SlotTable(maxJobs);
+        this.free = new int[maxJobs];
+    }
+
+    private static void validate(int maxJobs, int runsPerJob) {
+        if (maxJobs < 1) {
+            throw new IllegalArgumentException("History must hold at least one job: " + maxJobs);
+        }
+        if (runsPerJob < 1 || runsPerJob > (Integer.MAX_VALUE - SLOT_HEADER_BYTES) / RECORD_BYTES) {
+            throw new IllegalArgumentException("Runs per job must be positive and fit a slot: " + runsPerJob);
+        }
+    }
+
+    /* A history that is lost when closed */
+    public static ExecutionHistory inMemory(int maxJobs, int runsPerJob) {
+        validate(maxJobs, runsPerJob);
+        try {
+            return new ExecutionHistory(null, maxJobs, runsPerJob);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);  /* nothing is mapped */
+        }
+    }
+
+    /* Opens the history kept in file, creating it when it does not exist. An existing file must have
+       been created for as many jobs and runs. */
+    public static ExecutionHistory open(Path file, int maxJobs, int runsPerJob) throws IOException {
+        validate(maxJobs, runsPerJob);
+        boolean exists = Files.exists(file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            if (exists) {
+                if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                    throw new IOException("Not an execution history: " + file);
+                }
+                if (header.getInt(8) != runsPerJob || header.getInt(12) != maxJobs) {
+                    throw new IOException("Execution history " + file + " holds " + header.getInt(8) +
+                                          " runs of " + header.getInt(12) + " jobs, not " + runsPerJob +
+                                          " runs of " + maxJobs + " jobs");
+                }
+            } else {
+                header.putInt(0, MAGIC);
+                header.putInt(4, VERSION);
+                header.putInt(8, runsPerJob);
+                header.putInt(12, maxJobs);
+            }
+            ExecutionHistory history = new ExecutionHistory(channel, maxJobs, runsPerJob);
+            history.load();
+            return history;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /* Finds the slots in use, the others are free */
+    private void load() {
+        for (int slot = 0; slot < maxJobs; slot++) {
+            if (buffer(slot).getInt(base(slot) + 8) > 0) {
+                table.put(buffer(slot).getLong(base(slot)), slot);
+                nextSlot = slot + 1;
+            }
+        }
+        for (int slot = nextSlot - 1; slot >= 0; slot--) {
+            if (buffer(slot).getInt(base(slot) + 8) == 0) {
+                free[freeCount++] = slot;
+            }
+        }
+    }
+
+    private ByteBuffer buffer(int slot) {
+        return chunks[slot / slotsPerChunk];
+    }
+
+    private int base(int slot) {
+        return (slot % slotsPerChunk) * slotBytes;
+    }
+
+    /* Offset of the record at index in ring order, 0 being the oldest */
+    private int record(int base, int oldest, int index) {
+        int position = oldest + index;
+        if (position >= runsPerJob) {
+            position -= runsPerJob;
+        }
+        return base + SLOT_HEADER_BYTES + position * RECORD_BYTES;
+    }
+
+    /* Records a run of job, dropping its oldest run once it holds runsPerJob of them, or the new run
+       when it is older than all of them. exitStatus is up to the caller, typically the exit code of
+       the command run, 0 meaning success.
+       Throws IllegalStateException when the job is new and every slot is taken. */
+    public synchronized void append(long jobId, long fireMinute, long startMillis, long endMillis, int exitStatus) {
+        int slot = table.get(jobId);
+        if (slot < 0) {
+            if (freeCount > 0) {
+                slot = free[--freeCount];
+            } else if (nextSlot < maxJobs) {
+                slot = nextSlot++;
+            } else {
+                throw new IllegalStateException("Execution history holds its maximum of " + maxJobs + " jobs");
+            }
+            table.put(jobId, slot);
+            ByteBuffer buffer = buffer(slot);
+            buffer.putLong(base(slot), jobId);
+            buffer.putInt(base(slot) + 12, 0);
+        }
+        ByteBuffer buffer = buffer(slot);
+        int base = base(slot);
+        int size = buffer.getInt(base + 8);
+        int oldest = buffer.getInt(base + 12);
+        if (size < runsPerJob) {
+            size++;
+        } else if (buffer.getLong(record(base, oldest, 0)) > fireMinute) {
+            return;  /* older than every run kept, it would be the one dropped */
+        } else {
+            oldest = oldest + 1 == runsPerJob ? 0 : oldest + 1;  /* the new run takes the place of the oldest */
+        }
+        int index = size - 1;
+        /* Runs finishing out of order are moved back to keep the fire minutes sorted */
+        while (index > 0 && buffer.getLong(record(base, oldest, index - 1)) > fireMinute) {
+            int from = record(base, oldest, index - 1);
+            int to = record(base, oldest, index);
+            for (int i = 0; i < RECORD_BYTES; i += 8) {
+                buffer.putLong(to + i, buffer.getLong(from + i));
+            }
+            index--;
+        }
+        int offset = record(base, oldest, index);
+        buffer.putLong(offset, fireMinute);
+        buffer.putLong(offset + 8, startMillis);
+        buffer.putLong(offset + 16, endMillis);
+        buffer.putInt(offset + 24, exitStatus);
+        buffer.putInt(offset + 28, 0);
+        buffer.putInt(base + 12, oldest);
+        buffer.putInt(base + 8, size);  /* last, a slot with records is in use */
+    }
+
+    /* Visits the runs of job fired from fromMinute, inclusive, to toMinute, exclusive, oldest first.
+       Returns the number of runs visited. */
+    public synchronized int runs(long jobId, long fromMinute, long toMinute, Visitor visitor) {
+        int slot = table.get(jobId);
+        if (slot < 0) {
+            return 0;
+        }
+        ByteBuffer buffer = buffer(slot);
+        int base = base(slot);
+        int size = buffer.getInt(base + 8);
+        int oldest = buffer.getInt(base + 12);
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getLong(record(base, oldest, middle)) < fromMinute) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int visited = 0;
+        for (int index = low; index < size; index++) {
+            int offset = record(base, oldest, index);
+            long fireMinute = buffer.getLong(offset);
+            if (fireMinute >= toMinute) {
+                break;
+            }
+            visitor.accept(fireMinute, buffer.getLong(offset + 8), buffer.getLong(offset + 16), buffer.getInt(offset + 24));
+            visited++;
+        }
+        return visited;
+    }
+
+    /* The latest fire minute recorded for job, Long.MIN_VALUE when it has no runs */
+    public synchronized long lastFireMinute(long jobId) {
+        int slot = table.get(jobId);
+        if (slot < 0) {
+            return Long.MIN_VALUE;
+        }
+        ByteBuffer buffer = buffer(slot);
+        int base = base(slot);
+        return buffer.getLong(record(base, buffer.getInt(base + 12), buffer.getInt(base + 8) - 1));
+    }
+
+    /* Visits the jobs whose last recorded run fired before the last fire of their schedule up to and
+       including epochMinute, as given by schedules. Jobs for which schedules returns null, and jobs
+       without any recorded run, are not visited. Returns the number of jobs visited. */
+    public synchronized int overdue(long epochMinute, LongFunction<CronTime> schedules, LongConsumer visitor) {
+        Map<CronTime, Long> previous = new HashMap<>();  /* equal schedules are searched once */
+        int visited = 0;
+        for (int slot = 0; slot < nextSlot; slot++) {
+            ByteBuffer buffer = buffer(slot);
+            int base = base(slot);
+            int size = buffer.getInt(base + 8);
+            if (size == 0) {
+                continue;
+            }
+            long jobId = buffer.getLong(base);
+            CronTime cronTime = schedules.apply(jobId);
+            if (cronTime == null) {
+                continue;
+            }
+            Long due = previous.get(cronTime);
+            if (due == null) {
+                due = cronTime.previousExecution(epochMinute + 1);
+                previous.put(cronTime, due);
+            }
+            if (buffer.getLong(record(base, buffer.getInt(base + 12), size - 1)) < due) {
+                visitor.accept(jobId);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    /* Forgets the runs of job, returns false when it had none */
+    public synchronized boolean remove(long jobId) {
+        int slot = table.remove(jobId);
+        if (slot < 0) {
+            return false;
+        }
+        buffer(slot).putInt(base(slot) + 8, 0);
+        free[freeCount++] = slot;
+        return true;
+    }
+
+    /* Number of jobs with recorded runs */
+    public synchronized int size() {
+        return table.size;
+    }
+
+    public int getMaxJobs() { return maxJobs; }
+    public int getRunsPerJob() { return runsPerJob; }
+
+    /* Forces the runs recorded so far to the disk, does nothing for a history that is not kept */
+    public synchronized void sync() {
+        if (channel == null) {
+            return;
+        }
+        for (ByteBuffer chunk : chunks) {
+            ((MappedByteBuffer) chunk).force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /* Job id to slot, open addressing with linear probing, deletion moves the following entries back
+       so no tombstones are left */
+    private static final class SlotTable {
+        private final long[] keys;
+        private final int[] slots;  /* slot + 1, 0 for an empty entry */
+        private final int mask;
+        int size;
+
+        SlotTable(int maxJobs) {
+            int capacity = Integer.highestOneBit(Math.max(2, maxJobs) * 2 - 1) << 1;
+            keys = new long[capacity];
+            slots = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        private int index(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ h >>> 32) & mask;
+        }
+
+        int get(long key) {
+            for (int i = index(key); slots[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return slots[i] - 1;
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, int slot) {
+            int i = index(key);
+            while (slots[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (slots[i] == 0) {
+                size++;
+            }
+            keys[i] = key;
+            slots[i] = slot + 1;
+        }
+
+        int remove(long key) {
+            int i = index(key);
+            while (slots[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (slots[i] == 0) {
+                return -1;
+            }
+            int removed = slots[i] - 1;
+            size--;
+            /* Moves back every following entry that its home index allows to fill the hole */
+            int hole = i;
+            for (int j = (i + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+                int home = index(keys[j]);
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    keys[hole] = keys[j];
+                    slots[hole] = slots[j];
+                    hole = j;
+                }
+            }
+            slots[hole] = 0;
+            return removed;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.ezy.crond.scheduler;
+
+import java.util.concurrent.Executors;
+
+/* Job executors running every job body on a virtual thread of its own, so a burst of jobs blocking on
+   I/O waits on cheap threads instead of exhausting a pool. Only built with the java21 profile, the
+   rest of the library keeps running on Java 8. */
+public final class VirtualThreadJobExecutor {
+
+    private VirtualThreadJobExecutor() {}
+
+    public static ConcurrentJobExecutor create(int maxConcurrency) {
+        return new ConcurrentJobExecutor(Executors.newVirtualThreadPerTaskExecutor(), maxConcurrency);
+    }
+}
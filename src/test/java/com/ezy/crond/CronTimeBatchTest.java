@@ -0,0 +1,67 @@
+package com.ezy.crond;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CronTimeBatchTest {
+    private static final String[] CRONTABS = {
+        "* * * * *", "5 * * * *", "*/7 */5 * * *", "0 0 1 1 *", "59 23 31 12 *", "1,3,5,8,13 2-6 * * *",
+        "0 9 * * 1", "30 4 13 * 5", "0 0 8,31 * 7", "15 10 * 2 *", "0 0 29 2 *", "0 0 31 2 *",
+    };
+
+    private static CronTime[] schedules(int size) {
+        CronTime[] schedules = new CronTime[size];
+        for (int i = 0; i < size; i++) {
+            schedules[i] = CronTime.parse(CRONTABS[i % CRONTABS.length]);
+        }
+        return schedules;
+    }
+
+    private static void assertMatchesSingleCalls(CronTime[] schedules, long epochMinute, long[] out) {
+        for (int i = 0; i < schedules.length; i++) {
+            assertEquals(CRONTABS[i % CRONTABS.length], schedules[i].nextExecution(epochMinute), out[i]);
+        }
+    }
+
+    @Test
+    public void testSmallBatch() {
+        CronTime[] schedules = schedules(CRONTABS.length);
+        long[] out = new long[schedules.length];
+        long[] starts = {
+            LocalDateTime.of(2019, 12, 31, 23, 59).toEpochSecond(ZoneOffset.UTC) / 60,
+            LocalDateTime.of(2020, 2, 28, 23, 30).toEpochSecond(ZoneOffset.UTC) / 60,
+            -2,
+        };
+        for (long start : starts) {
+            CronTime.nextExecutions(schedules, start, out);
+            assertMatchesSingleCalls(schedules, start, out);
+
+            new CronTimeBatch(schedules).nextExecutions(start, out);
+            assertMatchesSingleCalls(schedules, start, out);
+        }
+    }
+
+    @Test
+    public void testBatchSplitAcrossThreads() {
+        CronTime[] schedules = schedules(CronTimeBatch.PARALLEL_THRESHOLD * 5 + 3);
+        long start = LocalDateTime.of(2023, 6, 15, 12, 0).toEpochSecond(ZoneOffset.UTC) / 60;
+        long[] out = new long[schedules.length];
+
+        CronTime.nextExecutions(schedules, start, out);
+        assertMatchesSingleCalls(schedules, start, out);
+
+        CronTimeBatch batch = new CronTimeBatch(schedules);
+        assertEquals(schedules.length, batch.size());
+        batch.nextExecutions(start + 1, out);
+        assertMatchesSingleCalls(schedules, start + 1, out);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutputTooSmall() {
+        CronTime.nextExecutions(schedules(3), 0, new long[2]);
+    }
+}
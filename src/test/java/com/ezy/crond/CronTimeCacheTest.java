@@ -0,0 +1,94 @@
+package com.ezy.crond;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CronTimeCacheTest {
+
+    @Test
+    public void testNormalize() {
+        String normalized = "*/5 * * * *";
+        assertSame(normalized, CronTimeCache.normalize(normalized));
+        assertEquals(normalized, CronTimeCache.normalize("  */5 *\t*   * *  "));
+        assertEquals(normalized, CronTimeCache.normalize("*/5\t*\t*\t*\t*"));
+        assertEquals("0 9 * JAN MON-FRI", CronTimeCache.normalize("0 9 * jan Mon-Fri"));
+        assertEquals("@DAILY", CronTimeCache.normalize("@daily"));
+    }
+
+    @Test
+    public void testEquivalentExpressionsShareInstance() {
+        CronTimeCache cache = new CronTimeCache(10);
+        CronTime first = cache.parse("*/5 * * * *");
+
+        assertSame(first, cache.parse("*/5 * * * *"));
+        assertSame(first, cache.parse(" */5  * * *\t* "));
+        assertNotSame(first, cache.parse("0 * * * *"));
+        assertSame(cache.parse("0 9 * * MON-FRI"), cache.parse("0 9 * * mon-fri"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testBoundedSize() {
+        CronTimeCache cache = new CronTimeCache(16);
+        CronTime hot = cache.parse("0 * * * *");
+        for (int i = 0; i < 60; i++) {
+            cache.parse(i + " 1 * * *");
+            assertSame(hot, cache.parse("0 * * * *"));
+            assertTrue(cache.size() <= 16);
+        }
+    }
+
+    @Test
+    public void testEvictionCarriesOnWhereItStopped() {
+        CronTimeCache cache = new CronTimeCache(3);
+        CronTime first = cache.parse("1 * * * *");
+        CronTime second = cache.parse("2 * * * *");
+        cache.parse("3 * * * *");
+        cache.parse("4 * * * *");  /* evicts the oldest, none being referenced */
+        assertSame(second, cache.parse("2 * * * *"));
+        CronTime fifth = cache.parse("5 * * * *");  /* spares the second, evicts the third */
+        CronTime sixth = cache.parse("6 * * * *");  /* evicts the fourth rather than starting over */
+
+        assertEquals(3, cache.size());
+        assertSame(second, cache.parse("2 * * * *"));
+        assertSame(fifth, cache.parse("5 * * * *"));
+        assertSame(sixth, cache.parse("6 * * * *"));
+        assertNotSame(first, cache.parse("1 * * * *"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidExpressionIsNotCached() {
+        CronTimeCache cache = new CronTimeCache(10);
+        try {
+            cache.parse("* * *");
+        } finally {
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    public void testConcurrentParseReturnsOneInstance() throws Exception {
+        CronTimeCache cache = new CronTimeCache(100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CronTime>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                results.add(executor.submit((Callable<CronTime>) () -> cache.parse("30 4 1,15 * 5")));
+            }
+            CronTime expected = cache.parse("30 4 1,15 * 5");
+            for (Future<CronTime> result : results) {
+                assertSame(expected, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
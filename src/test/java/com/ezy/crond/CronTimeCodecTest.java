@@ -0,0 +1,64 @@
+package com.ezy.crond;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CronTimeCodecTest {
+
+    static String fields(CronTime cronTime) {
+        return cronTime.getSeconds() + " " + cronTime.getMinutes() + " " + cronTime.getHours() + " " +
+            cronTime.getDaysOfMonth() + " " + cronTime.getMonths() + " " + cronTime.getDaysOfWeek() + " " +
+            cronTime.getYears();
+    }
+
+    @Test
+    public void testRoundTripKeepsFields() {
+        String[] crontabs = { "* * * * *", "5 4 * * *", "*/15 0-6 * * *", "0 0 1,15 */3 *", "30 4 13 * 5",
+                              "0 9 * JAN-MAR MON-FRI", "0 0 * * 7", "1-59/2 */7 29 2 SUN,3", "@weekly",
+                              "*/5 * * * * *", "30 0 9 ? * MON", "0 0 0 1 1 * 2030", "15,45 * * * * * 2025-2030",
+                              "0 0 0 29 2 * */4", "0 0 0 1 1 * 1970,2000,2099", "0 0 */10,5 * 1" };
+        ByteBuffer buffer = ByteBuffer.allocate(CronTimeCodec.BYTES * crontabs.length);
+        for (int i = 0; i < crontabs.length; i++) {
+            CronTimeCodec.write(CronTime.parse(crontabs[i]), buffer, i * CronTimeCodec.BYTES);
+        }
+        CronTimeCodec codec = new CronTimeCodec();
+        for (int i = 0; i < crontabs.length; i++) {
+            CronTime expected = CronTime.parse(crontabs[i]);
+            CronTime decoded = codec.read(buffer, i * CronTimeCodec.BYTES);
+            assertEquals(crontabs[i], fields(expected), fields(decoded));
+            assertEquals(crontabs[i], expected, decoded);
+            assertEquals(crontabs[i], expected.getDayOfWeekBits(), decoded.getDayOfWeekBits());
+            assertEquals(crontabs[i], expected.nextExecution(0L), decoded.nextExecution(0L));
+            assertEquals(crontabs[i], expected.nextExecutionSecond(0L), decoded.nextExecutionSecond(0L));
+        }
+        assertSame(codec.read(buffer, 0), codec.read(buffer, 0));
+
+        /* Steps past the end of the unit are kept as the largest step that allows the same values */
+        CronTimeCodec.write(CronTime.parse("*/70 */30 * * *"), buffer, 0);
+        CronTime decoded = new CronTimeCodec().read(buffer, 0);
+        assertEquals(1L, decoded.getMinuteBits());
+        assertEquals(1L, decoded.getHourBits());
+    }
+
+    @Test
+    public void testReadsStepsCountedFromMultiplesAsTheirValues() {
+        /* Written when '*' stepped by 2 in the months was the even months */
+        ByteBuffer buffer = ByteBuffer.allocate(CronTimeCodec.BYTES);
+        CronTimeCodec.write(CronTime.parse("0 0 1 */2 *"), buffer, 0);
+        buffer.putShort(16, (short) 0b1010101010100);
+        CronTime decoded = new CronTimeCodec().read(buffer, 0);
+        assertEquals(0b1010101010100L, decoded.getMonthBits());
+        assertEquals(CronTime.parse("0 0 1 2,4,6,8,10,12 *"), decoded);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsCorruptBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(CronTimeCodec.BYTES);
+        CronTimeCodec.write(CronTime.parse("0 0 * * *"), buffer, 0);
+        buffer.putShort(16, (short) 1);  /* month 0 */
+        new CronTimeCodec().read(buffer, 0);
+    }
+}
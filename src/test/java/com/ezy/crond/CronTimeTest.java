@@ -1,9 +1,19 @@
 package com.ezy.crond;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Ignore;
 import org.junit.Test;
@@ -85,7 +95,7 @@ public class CronTimeTest {
 
     @Test
     public void testParseMultipleTypes() {
-        String crontab = "*/2 * 10,11,12 3-6 11";
+        String crontab = "*/2 * 10,11,12 3-6 5";
 
         CronTime cronTime = CronTime.parse(crontab);
 
@@ -106,7 +116,7 @@ public class CronTimeTest {
         assertEquals(6, (int) cronTime.getMonths().getValues().get(1));
 
         assertEquals(CronTime.FieldType.NUMBER, cronTime.getDaysOfWeek().getType());
-        assertEquals(11, (int) cronTime.getDaysOfWeek().getValues().get(0));
+        assertEquals(5, (int) cronTime.getDaysOfWeek().getValues().get(0));
     }
 
     @Test
@@ -226,18 +236,37 @@ public class CronTimeTest {
 
     @Test
     public void testNextExcutionWithIntervalValueWithOverflowWithNonZeroMinValue() {
-        String crontab = "5 0 * */2 *"; // Every day at 0:05 of even months
+        String crontab = "5 0 * */2 *"; // Every day at 0:05 of odd months, counted from January
         CronTime cronTime = CronTime.parse(crontab);
         ZonedDateTime fixedTime = ZonedDateTime.of(LocalDate.of(2019, 12, 31),
                                                    LocalTime.of(23, 5),
                                                    ZoneOffset.UTC);
-        ZonedDateTime expectedNextExecution = ZonedDateTime.of(LocalDate.of(2020, 2, 1),
+        ZonedDateTime expectedNextExecution = ZonedDateTime.of(LocalDate.of(2020, 1, 1),
                                                                LocalTime.of(0, 5),
                                                                ZoneOffset.UTC);
         ZonedDateTime nextExecution = cronTime.nextExecution(fixedTime);
 
         assertEquals(expectedNextExecution, nextExecution);
     }
+
+    @Test
+    public void testNextExecutionWithIntervalsPastTheEndOfTheDay() {
+        CronTime cronTime = CronTime.parse("0 */12 * */6 *");
+        ZonedDateTime fixedTime = ZonedDateTime.of(LocalDate.of(2019, 12, 31), LocalTime.of(23, 6), ZoneOffset.UTC);
+        ZonedDateTime newYear = ZonedDateTime.of(LocalDate.of(2020, 1, 1), LocalTime.of(0, 0), ZoneOffset.UTC);
+        assertEquals(newYear, cronTime.nextExecution(fixedTime));
+        assertEquals(newYear.withHour(12), cronTime.nextExecution(newYear));
+        assertEquals(newYear.withMonth(7), cronTime.nextExecution(newYear.withHour(23).withMinute(6).withDayOfMonth(31)));
+    }
+
+    @Test
+    public void testNextExecutionOnALeapDay() {
+        CronTime cronTime = CronTime.parse("0 0 29 2 *");
+        ZonedDateTime fixedTime = ZonedDateTime.of(LocalDate.of(2019, 12, 31), LocalTime.of(23, 6), ZoneOffset.UTC);
+        assertEquals(ZonedDateTime.of(LocalDate.of(2020, 2, 29), LocalTime.of(0, 0), ZoneOffset.UTC),
+                     cronTime.nextExecution(fixedTime));
+        assertNull(CronTime.parse("0 0 31 2 *").nextExecution(fixedTime));
+    }
     // TODO test next day with intersection of day of month and day of week
     // need to test when both overflow, when either overflow and when neither overflow
     @Test
@@ -338,4 +367,642 @@ public class CronTimeTest {
         ZonedDateTime nextExecution = cronTime.nextExecution(fixedTime);
         assertEquals(expectedNextExecution, nextExecution);
     }
+
+    @Test
+    public void testCompiledBits() {
+        CronTime cronTime = CronTime.parse("*/15 2-4 1,15 */2 7");
+
+        assertEquals((1L << 0) | (1L << 15) | (1L << 30) | (1L << 45), cronTime.getMinuteBits());
+        assertEquals((1L << 2) | (1L << 3) | (1L << 4), cronTime.getHourBits());
+        assertEquals((1L << 1) | (1L << 15), cronTime.getDayOfMonthBits());
+        assertEquals(0b0101010101010L, cronTime.getMonthBits());  // January first
+        assertEquals(1L, cronTime.getDayOfWeekBits()); // Sunday folded onto 0
+    }
+
+    @Test
+    public void testCompiledNextExecution() {
+        CronTime cronTime = CronTime.parse("5 0 30 * 4"); // Execute on the 30th and every Thursday
+        LocalDateTime fixedTime = LocalDateTime.of(2019, 12, 31, 0, 5); // Tuesday
+
+        assertEquals(LocalDateTime.of(2020, 1, 2, 0, 5),
+                     fromEpochMinute(cronTime.nextExecution(toEpochMinute(fixedTime))));
+    }
+
+    @Test
+    public void testCompiledNextExecutionLeapDay() {
+        CronTime cronTime = CronTime.parse("0 12 29 2 *");
+        LocalDateTime fixedTime = LocalDateTime.of(2097, 3, 1, 0, 0);
+
+        assertEquals(LocalDateTime.of(2104, 2, 29, 12, 0),
+                     fromEpochMinute(cronTime.nextExecution(toEpochMinute(fixedTime))));
+    }
+
+    @Test
+    public void testCompiledNextExecutionNever() {
+        CronTime cronTime = CronTime.parse("0 0 31 2 *");
+
+        assertEquals(CronTime.NEVER, cronTime.nextExecution(0L));
+    }
+
+    @Test
+    public void testCompiledNextExecutionMatchesMinuteScan() {
+        String[] crontabs = {
+            "* * * * *", "5 * * * *", "*/7 */5 * * *", "0 0 1 1 *", "59 23 31 12 *",
+            "1,3,5,8,13 2-6 * * *", "0 9 * * 1", "30 4 13 * 5", "0 0 8,31 * 7",
+            "15 10 * 2 *", "0 0 29 2 *", "45 23 * */3 0",
+        };
+        LocalDateTime[] starts = {
+            LocalDateTime.of(2019, 12, 31, 23, 59), LocalDateTime.of(2020, 2, 28, 23, 30),
+            LocalDateTime.of(2023, 6, 15, 12, 0), LocalDateTime.of(1969, 12, 31, 23, 58),
+        };
+        for (String crontab : crontabs) {
+            CronTime cronTime = CronTime.parse(crontab);
+            for (LocalDateTime start : starts) {
+                assertEquals(crontab + " after " + start,
+                             scanForNext(cronTime, start),
+                             fromEpochMinute(cronTime.nextExecution(toEpochMinute(start))));
+            }
+        }
+    }
+
+    /* Reference implementation, checks every minute against the field values */
+    private static LocalDateTime scanForNext(CronTime cronTime, LocalDateTime start) {
+        LocalDateTime t = start.plusMinutes(1);
+        boolean domStar = cronTime.getDaysOfMonth().startsWithStar();
+        boolean dowStar = cronTime.getDaysOfWeek().startsWithStar();
+        for (int i = 0; i < 9 * 366 * 24 * 60; i++, t = t.plusMinutes(1)) {
+            boolean dom = (cronTime.getDayOfMonthBits() & (1L << t.getDayOfMonth())) != 0;
+            boolean dow = (cronTime.getDayOfWeekBits() & (1L << (t.getDayOfWeek().getValue() % 7))) != 0;
+            boolean day = domStar || dowStar ? dom && dow : dom || dow;
+            if ((cronTime.getMinuteBits() & (1L << t.getMinute())) != 0
+                && (cronTime.getHourBits() & (1L << t.getHour())) != 0
+                && (cronTime.getMonthBits() & (1L << t.getMonthValue())) != 0
+                && day) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    private static long toEpochMinute(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    private static LocalDateTime fromEpochMinute(long epochMinute) {
+        return LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+    }
+
+    @Test
+    public void testNextExecutionFromManyThreadsOnSharedInstances() throws Exception {
+        String[] crontabs = { "5 * * * *", "5 2-6 * * *", "5 * 1,3,5,8 * *", "5 */5 * * *", "5 0 * */2 *",
+                              "5 0 6 * 3", "5 0 30 * 4", "5 0 8 * 1", "5 0 2,10,20 * 2", "5 0 * * *" };
+        ZonedDateTime[] starts = new ZonedDateTime[64];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = ZonedDateTime.of(LocalDate.of(2019, 12, 1).plusDays(i % 31),
+                                         LocalTime.of(i % 24, (i * 7) % 60),
+                                         ZoneOffset.UTC);
+        }
+        CronTime[] shared = new CronTime[crontabs.length];
+        ZonedDateTime[][] expected = new ZonedDateTime[crontabs.length][starts.length];
+        long[][] expectedCompiled = new long[crontabs.length][starts.length];
+        for (int c = 0; c < crontabs.length; c++) {
+            shared[c] = CronTime.parse(crontabs[c]);
+            for (int i = 0; i < starts.length; i++) {
+                /* Computed on a fresh instance each time so no earlier call can influence the answer */
+                expected[c][i] = CronTime.parse(crontabs[c]).nextExecution(starts[i]);
+                expectedCompiled[c][i] = CronTime.parse(crontabs[c]).nextExecution(starts[i].toEpochSecond() / 60);
+            }
+        }
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int offset = t;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int mismatches = 0;
+                        for (int round = 0; round < 200; round++) {
+                            for (int c = 0; c < shared.length; c++) {
+                                int i = (round + offset + c) % starts.length;
+                                if (!expected[c][i].equals(shared[c].nextExecution(starts[i]))) {
+                                    mismatches++;
+                                }
+                                if (expectedCompiled[c][i] != shared[c].nextExecution(starts[i].toEpochSecond() / 60)) {
+                                    mismatches++;
+                                }
+                            }
+                        }
+                        return mismatches;
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(0, (int) result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParseSeparatedByRunsOfBlanks() {
+        CronTime cronTime = CronTime.parse("  1-14\t2  3,4 */5 *  ");
+
+        assertEquals(CronTime.FieldType.RANGE, cronTime.getMinutes().getType());
+        assertEquals(CronTime.FieldType.NUMBER, cronTime.getHours().getType());
+        assertEquals(CronTime.FieldType.LIST, cronTime.getDaysOfMonth().getType());
+        assertEquals(CronTime.FieldType.INTERVAL, cronTime.getMonths().getType());
+        assertEquals(CronTime.FieldType.WILDCARD, cronTime.getDaysOfWeek().getType());
+    }
+
+    @Test
+    public void testParseInvalidFields() {
+        String[] invalid = { "* * * *", "* * * * * * * *", "1-2-3 * * * *", "*/ * * * *", "1, * * * *",
+                             "-1 * * * *", "a * * * *", "** * * * *", "12345 * * * *", "60 * * * *",
+                             "* 24 * * *", "* * 0 * *", "* * * 13 *", "* * * * 11", "5-1 * * * *",
+                             "*/0 * * * *", "* * * FOO *", "* * * * MONDAY", "* * * JAN *x", "@reboot",
+                             "@daily 5", "1-2/ * * * *", "1,,2 * * * *", "", "60 * * * * *", "? * * * *",
+                             "* * * ? *", "* * ?? * *", "0 * * * * * 1969", "0 * * * * * 2100", "0 * * * * * 2030-2020",
+                             "0 * * * * * */0", "0 * * * * * JAN" };
+        for (String crontab : invalid) {
+            try {
+                CronTime.parse(crontab);
+                fail("Expected " + crontab + " to be rejected");
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testParseCachedSharesInstances() {
+        assertSame(CronTime.parseCached("*/5 * * * *"), CronTime.parseCached("*/5  * * * *"));
+    }
+
+    @Test
+    public void testParseStepOnRange() {
+        CronTime cronTime = CronTime.parse("1-10/2 * * * *");
+
+        assertEquals(CronTime.FieldType.LIST, cronTime.getMinutes().getType());
+        assertEquals(Arrays.asList(1, 3, 5, 7, 9), cronTime.getMinutes().getValues());
+        assertEquals((1L << 1) | (1L << 3) | (1L << 5) | (1L << 7) | (1L << 9), cronTime.getMinuteBits());
+    }
+
+    @Test
+    public void testParseMixedList() {
+        CronTime cronTime = CronTime.parse("5,10-12,*/15,50/5 * * * *");
+
+        assertEquals(Arrays.asList(0, 5, 10, 11, 12, 15, 30, 45, 50, 55), cronTime.getMinutes().getValues());
+    }
+
+    @Test
+    public void testParseNames() {
+        CronTime cronTime = CronTime.parse("0 9 * jan,Mar-MAY mon-fri");
+
+        assertEquals(Arrays.asList(1, 3, 4, 5), cronTime.getMonths().getValues());
+        assertEquals(CronTime.FieldType.RANGE, cronTime.getDaysOfWeek().getType());
+        assertEquals(Arrays.asList(1, 5), cronTime.getDaysOfWeek().getValues());
+        assertEquals(0b0111110L, cronTime.getDayOfWeekBits());
+        assertEquals(CronTime.parse("0 9 * 1,3-5 1-5").getMonthBits(), cronTime.getMonthBits());
+    }
+
+    @Test
+    public void testParseSundayAsSevenOrZero() {
+        assertEquals(1L, CronTime.parse("0 0 * * 7").getDayOfWeekBits());
+        assertEquals(1L, CronTime.parse("0 0 * * SUN").getDayOfWeekBits());
+        assertEquals(0b1100001L, CronTime.parse("0 0 * * 5-7").getDayOfWeekBits());
+    }
+
+    @Test
+    public void testParseMacros() {
+        String[][] macros = {
+            { "@yearly", "0 0 1 1 *" }, { "@annually", "0 0 1 1 *" }, { "@monthly", "0 0 1 * *" },
+            { "@weekly", "0 0 * * 0" }, { "@daily", "0 0 * * *" }, { "@midnight", "0 0 * * *" },
+            { " @HOURLY ", "0 * * * *" },
+        };
+        long from = 26_000_000L;
+        for (String[] macro : macros) {
+            CronTime expanded = CronTime.parse(macro[0]);
+            CronTime expected = CronTime.parse(macro[1]);
+            assertEquals(macro[0], expected.nextExecution(from), expanded.nextExecution(from));
+            assertEquals(macro[0], expected.getMinuteBits(), expanded.getMinuteBits());
+        }
+    }
+
+    @Test
+    public void testRichExpressionMatchesExpandedSchedule() {
+        CronTime rich = CronTime.parse("0-30/10,45 */6 1-7 * MON");
+        CronTime expanded = CronTime.parse("0,10,20,30,45 0,6,12,18 1,2,3,4,5,6,7 * 1");
+        for (long from = 26_000_000L; from < 26_000_000L + 100 * 24 * 60; from += 97) {
+            assertEquals(expanded.nextExecution(from), rich.nextExecution(from));
+        }
+    }
+
+    @Test
+    public void testMatchesAgreesWithNextExecution() {
+        String[] crontabs = { "* * * * *", "5 * * * *", "*/7 */5 * * *", "0 0 8,31 * 7", "30 4 13 * 5",
+                              "0 9 * * 1-5", "0 0 29 2 *", "15 10 * 2 *" };
+        long from = toEpochMinute(LocalDateTime.of(2020, 2, 1, 0, 0));
+        for (String crontab : crontabs) {
+            CronTime cronTime = CronTime.parse(crontab);
+            long next = cronTime.nextExecution(from - 1);
+            for (long minute = from; minute < from + 45 * 24 * 60; minute++) {
+                boolean expected = minute == next;
+                if (expected) {
+                    next = cronTime.nextExecution(minute);
+                }
+                assertEquals(crontab + " at " + fromEpochMinute(minute), expected, cronTime.matches(minute));
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesDayOfMonthOrDayOfWeek() {
+        CronTime cronTime = CronTime.parse("0 0 13 * 5"); // The 13th and every Friday
+        ZonedDateTime thirteenth = ZonedDateTime.of(LocalDate.of(2020, 1, 13), LocalTime.MIDNIGHT, ZoneOffset.UTC); // Monday
+        ZonedDateTime friday = ZonedDateTime.of(LocalDate.of(2020, 1, 17), LocalTime.MIDNIGHT, ZoneOffset.UTC);
+        ZonedDateTime neither = ZonedDateTime.of(LocalDate.of(2020, 1, 14), LocalTime.MIDNIGHT, ZoneOffset.UTC);
+
+        assertTrue(cronTime.matches(thirteenth));
+        assertTrue(cronTime.matches(friday));
+        assertFalse(cronTime.matches(neither));
+        assertFalse(cronTime.matches(friday.plusMinutes(1)));
+        assertTrue(cronTime.matches(friday.plusSeconds(59)));
+
+        CronTime onlyFridays = CronTime.parse("0 0 * * 5");
+        assertFalse(onlyFridays.matches(thirteenth));
+        assertTrue(onlyFridays.matches(friday));
+    }
+
+    @Test
+    public void testStarWithStepInDaysOfMonth() {
+        /* As in Vixie cron: the Fridays on the 1st, 3rd and so on, a day field starting with '*' makes
+           days match on both fields */
+        CronTime cronTime = CronTime.parse("0 0 */2 * 5");
+        assertFalse(cronTime.isDayRestricted());
+        assertTrue(cronTime.matches(ZonedDateTime.of(LocalDate.of(2020, 1, 17), LocalTime.MIDNIGHT, ZoneOffset.UTC)));
+        assertFalse(cronTime.matches(ZonedDateTime.of(LocalDate.of(2020, 1, 10), LocalTime.MIDNIGHT, ZoneOffset.UTC)));
+        assertFalse(cronTime.matches(ZonedDateTime.of(LocalDate.of(2020, 1, 14), LocalTime.MIDNIGHT, ZoneOffset.UTC)));
+        assertFalse(cronTime.matches(ZonedDateTime.of(LocalDate.of(2020, 1, 13), LocalTime.MIDNIGHT, ZoneOffset.UTC)));
+
+        /* Also for a list starting with '*' */
+        CronTime list = CronTime.parse("0 0 */10,5 * 1");
+        assertFalse(list.isDayRestricted());
+        assertTrue(list.matches(ZonedDateTime.of(LocalDate.of(2020, 6, 1), LocalTime.MIDNIGHT, ZoneOffset.UTC)));
+        assertTrue(list.matches(ZonedDateTime.of(LocalDate.of(2020, 10, 5), LocalTime.MIDNIGHT, ZoneOffset.UTC)));
+        assertFalse(list.matches(ZonedDateTime.of(LocalDate.of(2020, 6, 8), LocalTime.MIDNIGHT, ZoneOffset.UTC)));
+        assertTrue(CronTime.parse("0 0 1-31/10 * 1").isDayRestricted());
+    }
+
+    @Test
+    public void testStarWithStepCountsFromTheLowestValue() {
+        assertEquals((1L << 1) | (1L << 4) | (1L << 7) | (1L << 10), CronTime.parse("0 0 1 */3 *").getMonthBits());
+        assertEquals((1L << 1) | (1L << 11) | (1L << 21) | (1L << 31),
+                     CronTime.parse("0 0 */10 * *").getDayOfMonthBits());
+        CronTime years = CronTime.parse("0 0 0 1 1 * */10");
+        assertTrue(years.allowsYear(1970));
+        assertTrue(years.allowsYear(2030));
+        assertFalse(years.allowsYear(2025));
+    }
+
+    @Test
+    public void testMatchesInZone() {
+        CronTime cronTime = CronTime.parse("30 9 * * *");
+        ZoneId newYork = ZoneId.of("America/New_York");
+        ZonedDateTime winter = ZonedDateTime.of(LocalDate.of(2020, 1, 15), LocalTime.of(9, 30), newYork);
+        ZonedDateTime summer = ZonedDateTime.of(LocalDate.of(2020, 7, 15), LocalTime.of(9, 30), newYork);
+
+        assertTrue(cronTime.matches(winter));
+        assertTrue(cronTime.matches(winter.toEpochSecond() / 60, newYork));
+        assertTrue(cronTime.matches(summer.toEpochSecond() / 60, newYork));
+        assertFalse(cronTime.matches(summer.toEpochSecond() / 60, ZoneOffset.UTC));
+        assertTrue(cronTime.matches(summer.toEpochSecond() / 60, ZoneId.of("UTC-04:00")));
+        assertFalse(cronTime.matches(summer.toEpochSecond() / 60 + 60, newYork));
+        assertTrue(cronTime.matches(winter.toEpochSecond() / 60, newYork));
+    }
+
+    @Test
+    public void testPreviousExecutionAgreesWithNextExecution() {
+        String[] crontabs = { "* * * * *", "5 * * * *", "*/7 */5 * * *", "0 0 8,31 * 7", "30 4 13 * 5",
+                              "0 9 * * 1-5", "0 0 29 2 *", "15 10 * 2 *", "59 23 31 12 *", "0 0 1 1 *" };
+        long[] froms = { toEpochMinute(LocalDateTime.of(2020, 3, 1, 0, 0)),
+                         toEpochMinute(LocalDateTime.of(2021, 1, 1, 0, 0)),
+                         toEpochMinute(LocalDateTime.of(1970, 1, 1, 0, 1)) };
+        for (String crontab : crontabs) {
+            CronTime cronTime = CronTime.parse(crontab);
+            for (long from : froms) {
+                long previous = cronTime.previousExecution(from);
+                assertTrue(crontab + " before " + fromEpochMinute(from), previous < from);
+                assertTrue(cronTime.matches(previous));
+                assertTrue(crontab + " before " + fromEpochMinute(from), cronTime.nextExecution(previous) >= from);
+            }
+        }
+    }
+
+    @Test
+    public void testPreviousExecution() {
+        CronTime cronTime = CronTime.parse("0 0 29 2 *");
+        long previous = cronTime.previousExecution(toEpochMinute(LocalDateTime.of(2023, 6, 1, 0, 0)));
+        assertEquals(LocalDateTime.of(2020, 2, 29, 0, 0), fromEpochMinute(previous));
+
+        assertEquals(CronTime.NEVER_BEFORE, CronTime.parse("0 0 31 2 *").previousExecution(0L));
+
+        ZoneId paris = ZoneId.of("Europe/Paris");
+        CronTime daily = CronTime.parse("30 9 * * *");
+        assertEquals(ZonedDateTime.of(LocalDateTime.of(2020, 7, 15, 9, 30), paris),
+                     daily.previousExecution(ZonedDateTime.of(LocalDateTime.of(2020, 7, 15, 9, 30, 1), paris)));
+        assertEquals(ZonedDateTime.of(LocalDateTime.of(2020, 7, 14, 9, 30), paris),
+                     daily.previousExecution(ZonedDateTime.of(LocalDateTime.of(2020, 7, 15, 9, 30), paris)));
+    }
+
+    @Test
+    public void testMissedExecutions() {
+        CronTime cronTime = CronTime.parse("0 * * * *");
+        long from = toEpochMinute(LocalDateTime.of(2020, 1, 1, 0, 0));
+        long to = toEpochMinute(LocalDateTime.of(2020, 1, 1, 5, 0));
+
+        long[] missed = cronTime.missedExecutions(from, to, 10);
+        assertEquals(5, missed.length);
+        assertEquals(LocalDateTime.of(2020, 1, 1, 1, 0), fromEpochMinute(missed[0]));
+        assertEquals(LocalDateTime.of(2020, 1, 1, 5, 0), fromEpochMinute(missed[4]));
+
+        long[] recent = cronTime.missedExecutions(from, to, 2);
+        assertArrayEquals(new long[] { missed[3], missed[4] }, recent);
+        assertEquals(0, cronTime.missedExecutions(to, to, 10).length);
+        assertArrayEquals(missed, cronTime.missedExecutions(from, to, Integer.MAX_VALUE));
+
+        long[] everyMinute = CronTime.parse("* * * * *").missedExecutions(from, to, Integer.MAX_VALUE);
+        assertEquals(300, everyMinute.length);
+        assertEquals(from + 1, everyMinute[0]);
+        assertEquals(to, everyMinute[299]);
+
+        ZoneId newYork = ZoneId.of("America/New_York");
+        List<ZonedDateTime> zoned = cronTime.missedExecutions(
+            ZonedDateTime.of(LocalDateTime.of(2020, 1, 1, 0, 0), newYork),
+            ZonedDateTime.of(LocalDateTime.of(2020, 1, 1, 7, 0), ZoneOffset.UTC), 10);
+        assertEquals(2, zoned.size());
+        assertEquals(ZonedDateTime.of(LocalDateTime.of(2020, 1, 1, 2, 0), newYork), zoned.get(1));
+    }
+
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+    /* The instant of a wall-clock time in New York, in the zone offset given */
+    private static long newYorkMinute(LocalDateTime local, String offset) {
+        return local.atOffset(ZoneOffset.of(offset)).toEpochSecond() / 60;
+    }
+
+    @Test
+    public void testNextExecutionInZoneSpringForward() {
+        /* 2020-03-08 02:00 EST the clocks go forward to 03:00 EDT */
+        CronTime fixed = CronTime.parse("30 2 * * *");
+        long before = newYorkMinute(LocalDateTime.of(2020, 3, 7, 12, 0), "-05:00");
+
+        assertEquals(newYorkMinute(LocalDateTime.of(2020, 3, 8, 3, 0), "-04:00"),
+                     fixed.nextExecution(before, NEW_YORK, DstPolicy.LENIENT));
+        assertEquals(newYorkMinute(LocalDateTime.of(2020, 3, 9, 2, 30), "-04:00"),
+                     fixed.nextExecution(before, NEW_YORK, DstPolicy.SKIP_GAP));
+        assertEquals(newYorkMinute(LocalDateTime.of(2020, 3, 9, 2, 30), "-04:00"),
+                     fixed.nextExecution(newYorkMinute(LocalDateTime.of(2020, 3, 8, 3, 0), "-04:00"), NEW_YORK));
+
+        /* Every quarter hour the gap runs once, when it ends */
+        CronTime quarter = CronTime.parse("*/15 * * * *");
+        long next = quarter.nextExecution(newYorkMinute(LocalDateTime.of(2020, 3, 8, 1, 50), "-05:00"), NEW_YORK);
+        assertEquals(newYorkMinute(LocalDateTime.of(2020, 3, 8, 3, 0), "-04:00"), next);
+        assertEquals(newYorkMinute(LocalDateTime.of(2020, 3, 8, 3, 15), "-04:00"), quarter.nextExecution(next, NEW_YORK));
+    }
+
+    @Test
+    public void testNextExecutionInZoneFallBack() {
+        /* 2020-11-01 02:00 EDT the clocks go back to 01:00 EST */
+        CronTime fixed = CronTime.parse("30 1 * * *");
+        long before = newYorkMinute(LocalDateTime.of(2020, 10, 31, 12, 0), "-04:00");
+        long first = newYorkMinute(LocalDateTime.of(2020, 11, 1, 1, 30), "-04:00");
+        long second = newYorkMinute(LocalDateTime.of(2020, 11, 1, 1, 30), "-05:00");
+
+        assertEquals(first, fixed.nextExecution(before, NEW_YORK, DstPolicy.LENIENT));
+        assertEquals(newYorkMinute(LocalDateTime.of(2020, 11, 2, 1, 30), "-05:00"),
+                     fixed.nextExecution(first, NEW_YORK, DstPolicy.LENIENT));
+        assertEquals(second, fixed.nextExecution(first, NEW_YORK, DstPolicy.REPEAT_OVERLAP));
+
+        CronTime halfHour = CronTime.parse("*/30 * * * *");
+        long from = newYorkMinute(LocalDateTime.of(2020, 11, 1, 1, 30), "-04:00");
+        assertEquals(newYorkMinute(LocalDateTime.of(2020, 11, 1, 2, 0), "-05:00"), halfHour.nextExecution(from, NEW_YORK));
+        long repeated = halfHour.nextExecution(from, NEW_YORK, DstPolicy.REPEAT_OVERLAP);
+        assertEquals(newYorkMinute(LocalDateTime.of(2020, 11, 1, 1, 0), "-05:00"), repeated);
+        assertEquals(second, halfHour.nextExecution(repeated, NEW_YORK, DstPolicy.REPEAT_OVERLAP));
+
+        ZonedDateTime zoned = ZonedDateTime.ofInstant(Instant.ofEpochSecond(first * 60), NEW_YORK);
+        assertEquals(ZonedDateTime.ofInstant(Instant.ofEpochSecond(second * 60), NEW_YORK),
+                     fixed.nextExecution(zoned, DstPolicy.REPEAT_OVERLAP));
+    }
+
+    @Test
+    public void testNextExecutionInZoneMatchesWallClock() {
+        String[] crontabs = { "*/7 */5 * * *", "0 9 * * 1-5", "30 4 13 * 5", "0 0 29 2 *", "59 23 31 12 *" };
+        ZoneId[] zones = { NEW_YORK, ZoneId.of("Australia/Lord_Howe"), ZoneId.of("Asia/Kolkata"), ZoneOffset.ofHours(-3) };
+        long from = toEpochMinute(LocalDateTime.of(2019, 12, 31, 23, 59));
+        for (String crontab : crontabs) {
+            CronTime cronTime = CronTime.parse(crontab);
+            for (ZoneId zone : zones) {
+                long next = from;
+                for (int i = 0; i < 20; i++) {
+                    long previous = next;
+                    next = cronTime.nextExecution(previous, zone, DstPolicy.SKIP_GAP);
+                    assertTrue(crontab + " in " + zone, next > previous);
+                    assertTrue(crontab + " in " + zone, cronTime.matches(next, zone));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParseHashedIsStablePerSeed() {
+        CronTime first = CronTime.parse("H H * * *", "backup");
+        CronTime again = CronTime.parse("h h * * *", "backup");
+        assertEquals(first.getMinuteBits(), again.getMinuteBits());
+        assertEquals(first.getHourBits(), again.getHourBits());
+        assertEquals(CronTime.FieldType.NUMBER, first.getMinutes().getType());
+        assertEquals(1, Long.bitCount(first.getMinuteBits()));
+        assertEquals(1, Long.bitCount(first.getHourBits()));
+
+        /* Seeds without an 'H' share the plain schedule */
+        assertSame(CronTime.parseCached("0 * * * *", "a"), CronTime.parseCached("0 * * * *", "b"));
+        assertSame(CronTime.parseCached("H * * * *", "a"), CronTime.parseCached("H  *  * * *", "a"));
+    }
+
+    @Test
+    public void testParseHashedSpreadsSeeds() {
+        int[] counts = new int[60];
+        for (int i = 0; i < 6000; i++) {
+            counts[Long.numberOfTrailingZeros(CronTime.parse("H * * * *", "job-" + i).getMinuteBits())]++;
+        }
+        for (int minute = 0; minute < 60; minute++) {
+            assertTrue("minute " + minute + " has " + counts[minute], counts[minute] > 50 && counts[minute] < 150);
+        }
+    }
+
+    @Test
+    public void testParseHashedRangesAndSteps() {
+        for (int i = 0; i < 500; i++) {
+            String seed = "job-" + i;
+            CronTime quarter = CronTime.parse("H/15 H(9-17) H * H", seed);
+            long minutes = quarter.getMinuteBits();
+            assertEquals(4, Long.bitCount(minutes));
+            int offset = Long.numberOfTrailingZeros(minutes);
+            assertTrue(offset < 15);
+            assertEquals((1L << offset) | (1L << offset + 15) | (1L << offset + 30) | (1L << offset + 45), minutes);
+            int hour = Long.numberOfTrailingZeros(quarter.getHourBits());
+            assertTrue(hour >= 9 && hour <= 17);
+            int day = Long.numberOfTrailingZeros(quarter.getDayOfMonthBits());
+            assertTrue(day >= 1 && day <= 28);
+            assertTrue(quarter.getDayOfWeekBits() != 0 && (quarter.getDayOfWeekBits() & ~0x7FL) == 0);
+
+            long halfHour = CronTime.parse("H(0-29) * * * *", seed).getMinuteBits();
+            assertTrue(Long.numberOfTrailingZeros(halfHour) < 30);
+            long mixed = CronTime.parse("H(0-9),30 * * * *", seed).getMinuteBits();
+            assertTrue((mixed & (1L << 30)) != 0 && Long.numberOfTrailingZeros(mixed) < 10);
+        }
+    }
+
+    @Test
+    public void testParseHashedNeedsSeed() {
+        try {
+            CronTime.parse("H * * * *");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("seed"));
+        }
+        for (String invalid : new String[] { "H(5) * * * *", "H(9-3) * * * *", "H(0-60) * * * *", "H/0 * * * *" }) {
+            try {
+                CronTime.parse(invalid, "job");
+                fail(invalid);
+            } catch (IllegalArgumentException e) {
+                /* expected */
+            }
+        }
+        /* Names of months and days are not hashes */
+        assertEquals(1L << 4, CronTime.parse("0 0 * * THU", "job").getDayOfWeekBits());
+        assertEquals(CronTime.parse("0 0 * * THU").getDayOfWeekBits(), CronTime.parseCached("0 0 * * thu", "job").getDayOfWeekBits());
+    }
+
+    @Test
+    public void testParseSecondsAndYears() {
+        CronTime vixie = CronTime.parse("*/10 * * * *");
+        assertEquals(1L, vixie.getSecondBits());
+        assertFalse(vixie.hasSeconds());
+        assertFalse(vixie.isYearRestricted());
+
+        CronTime seconds = CronTime.parse("*/20 */10 * * * *");
+        assertTrue(seconds.hasSeconds());
+        assertEquals((1L << 0) | (1L << 20) | (1L << 40), seconds.getSecondBits());
+        assertEquals(vixie.getMinuteBits(), seconds.getMinuteBits());
+        assertEquals(CronTime.FieldType.WILDCARD, seconds.getYears().getType());
+
+        /* A seconds field of 0 fires as a five field expression does */
+        assertFalse(CronTime.parse("0 30 9 * * *").hasSeconds());
+
+        CronTime years = CronTime.parse("0 0 0 1 1 * 2025,2030-2032");
+        assertTrue(years.isYearRestricted());
+        assertEquals(Arrays.asList(2025, 2030, 2031, 2032), years.getYears().getValues());
+        assertTrue(years.allowsYear(2031));
+        assertFalse(years.allowsYear(2026));
+        assertFalse(years.allowsYear(1900));
+
+        /* '?' leaves the day to the other day field */
+        CronTime question = CronTime.parse("0 0 12 ? * MON");
+        assertFalse(question.isDayRestricted());
+        assertEquals(1L << 1, question.getDayOfWeekBits());
+    }
+
+    @Test
+    public void testNextExecutionSecond() {
+        long minute = toEpochMinute(LocalDateTime.of(2020, 1, 1, 0, 0));
+        CronTime every15 = CronTime.parse("*/15 * * * * *");
+        assertEquals(minute * 60 + 15, every15.nextExecutionSecond(minute * 60));
+        assertEquals(minute * 60 + 45, every15.nextExecutionSecond(minute * 60 + 30));
+        assertEquals(minute * 60 + 60, every15.nextExecutionSecond(minute * 60 + 45));
+
+        CronTime morning = CronTime.parse("30 0 9 * * MON-FRI");
+        /* 2020-01-01 is a Wednesday */
+        assertEquals((minute + 9 * 60) * 60 + 30, morning.nextExecutionSecond(minute * 60));
+        assertEquals(((minute + 9 * 60) + EpochCalendar.MINUTES_PER_DAY) * 60 + 30,
+                     morning.nextExecutionSecond((minute + 9 * 60) * 60 + 30));
+        assertEquals(minute + 9 * 60, morning.nextExecution(minute));
+
+        /* Without seconds every fire is at the start of the minute */
+        assertEquals((minute + 5) * 60, CronTime.parse("*/5 * * * *").nextExecutionSecond(minute * 60));
+        assertEquals(CronTime.NEVER, CronTime.parse("* * * 31 2 *").nextExecutionSecond(minute * 60));
+    }
+
+    @Test
+    public void testYearsLimitTheSearch() {
+        long from = toEpochMinute(LocalDateTime.of(2026, 6, 1, 0, 0));
+        CronTime once = CronTime.parse("0 0 0 1 1 * 2030");
+        long newYear = toEpochMinute(LocalDateTime.of(2030, 1, 1, 0, 0));
+        assertEquals(newYear, once.nextExecution(from));
+        assertEquals(CronTime.NEVER, once.nextExecution(newYear));
+        assertEquals(newYear, once.previousExecution(newYear + 1));
+        assertEquals(CronTime.NEVER_BEFORE, once.previousExecution(newYear));
+        assertTrue(once.matches(newYear));
+        assertFalse(once.matches(toEpochMinute(LocalDateTime.of(2031, 1, 1, 0, 0))));
+        assertEquals(1, once.countBetween(from, newYear + 1));
+
+        /* A Feb 29th every 8th year from 2000, further apart than a plain search looks */
+        CronTime leap = CronTime.parse("0 0 12 29 2 * 2000/8");
+        long[] expected = {
+            toEpochMinute(LocalDateTime.of(2032, 2, 29, 12, 0)),
+            toEpochMinute(LocalDateTime.of(2040, 2, 29, 12, 0)),
+            toEpochMinute(LocalDateTime.of(2048, 2, 29, 12, 0)),
+        };
+        long next = from;
+        for (long execution : expected) {
+            next = leap.nextExecution(next);
+            assertEquals(execution, next);
+        }
+        assertEquals(expected[1], leap.previousExecution(expected[2]));
+        long to = toEpochMinute(LocalDateTime.of(2049, 1, 1, 0, 0));
+        assertArrayEquals(expected, leap.executionStream(from, to).toArray());
+        assertEquals(3, leap.countBetween(from, to));
+
+        CronTime daily = CronTime.parse("0 0 0 * * * 2027,2029");
+        long[] days = daily.executionStream(from, to).toArray();
+        assertEquals(365 * 2, days.length);
+        assertEquals(toEpochMinute(LocalDateTime.of(2028, 12, 31, 0, 0)) + EpochCalendar.MINUTES_PER_DAY, days[365]);
+        assertEquals(days.length, daily.countBetween(from, to));
+        assertEquals(CronTime.NEVER, daily.nextExecution(toEpochMinute(LocalDateTime.of(2100, 1, 1, 0, 0))));
+    }
+
+    @Test
+    public void testEquivalentSchedulesAreEqual() {
+        String[][] equal = {
+            { "0-59 * * * *", "* * * * *" },
+            { "1,2,3 * * * *", "1-3 * * * *" },
+            { "*/1 * * * *", "* * * * *" },
+            { "0 0 * * 0", "0 0 * * 7" },
+            { "0 0 * * 1-5", "0 0 * * mon-fri" },
+            { "0 0 1-31 * 1", "0 0 * * *" },  /* either day field matches, the first allows every day */
+            { "0 0 1 * 0-6", "0 0 * * *" },
+            { "0 0 * * *", "0 0 0 * * *" },
+            { "0 0 0 * * ?", "0 0 * * *" },
+            { "0 0 * * * * 1970-2099", "0 * * * *" },
+        };
+        for (String[] pair : equal) {
+            CronTime first = CronTime.parse(pair[0]);
+            CronTime second = CronTime.parse(pair[1]);
+            assertEquals(pair[0], first, second);
+            assertEquals(pair[0], first.hashCode(), second.hashCode());
+        }
+        String[][] different = {
+            { "0 0 1 * 1", "0 0 1 * *" },
+            { "0 0 1 * 1", "0 0 * * 1" },
+            { "*/2 * * * * *", "* * * * *" },
+            { "0 0 0 1 1 * 2030", "0 0 1 1 *" },
+        };
+        for (String[] pair : different) {
+            assertNotEquals(pair[0], CronTime.parse(pair[0]), CronTime.parse(pair[1]));
+        }
+    }
 }
@@ -0,0 +1,40 @@
+package com.ezy.crond;
+
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EpochCalendarTest {
+
+    @Test
+    public void testCivilFromDaysMatchesLocalDate() {
+        for (long epochDay = LocalDate.of(1600, 1, 1).toEpochDay();
+             epochDay <= LocalDate.of(2500, 12, 31).toEpochDay(); epochDay++) {
+            LocalDate expected = LocalDate.ofEpochDay(epochDay);
+            long packed = EpochCalendar.civilFromDays(epochDay);
+
+            assertEquals(expected.getYear(), EpochCalendar.year(packed));
+            assertEquals(expected.getMonthValue(), EpochCalendar.month(packed));
+            assertEquals(expected.getDayOfMonth(), EpochCalendar.day(packed));
+            assertEquals(epochDay, EpochCalendar.daysFromCivil(expected.getYear(),
+                                                               expected.getMonthValue(),
+                                                               expected.getDayOfMonth()));
+            assertEquals(expected.getDayOfWeek().getValue() % 7, EpochCalendar.dayOfWeek(epochDay));
+        }
+    }
+
+    @Test
+    public void testLeapYears() {
+        assertTrue(EpochCalendar.isLeapYear(2000));
+        assertTrue(EpochCalendar.isLeapYear(2020));
+        assertFalse(EpochCalendar.isLeapYear(1900));
+        assertFalse(EpochCalendar.isLeapYear(2100));
+        assertFalse(EpochCalendar.isLeapYear(2019));
+        assertEquals(29, EpochCalendar.lengthOfMonth(2020, 2));
+        assertEquals(28, EpochCalendar.lengthOfMonth(2100, 2));
+        assertEquals(30, EpochCalendar.lengthOfMonth(2019, 11));
+        assertEquals(31, EpochCalendar.lengthOfMonth(2019, 12));
+    }
+}
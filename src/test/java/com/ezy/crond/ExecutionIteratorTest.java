@@ -0,0 +1,85 @@
+package com.ezy.crond;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.PrimitiveIterator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ExecutionIteratorTest {
+    private static final String[] CRONTABS = {
+        "* * * * *", "5 * * * *", "*/7 */5 * * *", "0 0 1 1 *", "59 23 31 12 *", "1,3,5,8,13 2-6 * * *",
+        "0 9 * * 1", "30 4 13 * 5", "0 0 8,31 * 7", "15 10 * 2 *", "0 0 29 2 *",
+    };
+
+    private static long epochMinute(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    @Test
+    public void testIteratorMatchesRepeatedNextExecution() {
+        long from = epochMinute(LocalDateTime.of(2019, 12, 31, 23, 59));
+        for (String crontab : CRONTABS) {
+            CronTime cronTime = CronTime.parse(crontab);
+            PrimitiveIterator.OfLong executions = cronTime.executions(from);
+            long expected = cronTime.nextExecution(from - 1);
+            for (int i = 0; i < 500; i++) {
+                assertTrue(crontab, executions.hasNext());
+                assertEquals(crontab, expected, executions.nextLong());
+                expected = cronTime.nextExecution(expected);
+            }
+        }
+    }
+
+    @Test
+    public void testBoundedIteratorIsHalfOpen() {
+        CronTime cronTime = CronTime.parse("0 * * * *");
+        long from = epochMinute(LocalDateTime.of(2020, 1, 1, 0, 0));
+        long to = epochMinute(LocalDateTime.of(2020, 1, 1, 3, 0));
+
+        PrimitiveIterator.OfLong executions = cronTime.executions(from, to);
+        assertEquals(from, executions.nextLong());
+        assertEquals(from + 60, executions.nextLong());
+        assertEquals(from + 120, executions.nextLong());
+        assertFalse(executions.hasNext());
+    }
+
+    @Test
+    public void testNeverExecutes() {
+        assertFalse(CronTime.parse("0 0 31 2 *").executions(0).hasNext());
+        assertEquals(0, CronTime.parse("0 0 31 2 *").countBetween(0, 10_000_000));
+    }
+
+    @Test
+    public void testCountBetweenMatchesEnumeration() {
+        long[][] windows = {
+            { epochMinute(LocalDateTime.of(2019, 12, 31, 23, 59)), epochMinute(LocalDateTime.of(2020, 1, 1, 0, 1)) },
+            { epochMinute(LocalDateTime.of(2019, 12, 31, 12, 31)), epochMinute(LocalDateTime.of(2019, 12, 31, 17, 2)) },
+            { epochMinute(LocalDateTime.of(2019, 11, 30, 4, 30)), epochMinute(LocalDateTime.of(2020, 3, 1, 9, 15)) },
+            { epochMinute(LocalDateTime.of(2016, 2, 29, 0, 0)), epochMinute(LocalDateTime.of(2024, 3, 1, 0, 0)) },
+        };
+        for (String crontab : CRONTABS) {
+            CronTime cronTime = CronTime.parse(crontab);
+            for (long[] window : windows) {
+                long enumerated = 0;
+                PrimitiveIterator.OfLong executions = cronTime.executions(window[0], window[1]);
+                while (executions.hasNext()) {
+                    executions.nextLong();
+                    enumerated++;
+                }
+                assertEquals(crontab, enumerated, cronTime.countBetween(window[0], window[1]));
+            }
+        }
+    }
+
+    @Test
+    public void testStreams() {
+        CronTime cronTime = CronTime.parse("*/15 * * * *");
+        long from = epochMinute(LocalDateTime.of(2020, 1, 1, 0, 0));
+
+        assertEquals(96, cronTime.executionStream(from, from + 24 * 60).count());
+        assertArrayEquals(new long[] { from, from + 15, from + 30 }, cronTime.executionStream(from).limit(3).toArray());
+    }
+}
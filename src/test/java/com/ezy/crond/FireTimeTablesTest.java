@@ -0,0 +1,128 @@
+package com.ezy.crond;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FireTimeTablesTest {
+
+    private static long epochMinute(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    @Test
+    public void testAgreesWithSearch() {
+        String[] crontabs = { "* * * * *", "*/5 * * * *", "0 9 * * 1-5", "30 4 1,15 * 5", "0 0 29 2 *",
+                              "0 0 31 2 *", "0 0 0 1 1 * 2030", "15 */6 * * *" };
+        FireTimeTables tables = new FireTimeTables(FireTimeTables.DEFAULT_BUDGET_BYTES, 30);
+        Random random = new Random(42);
+        long from = epochMinute(LocalDateTime.of(2019, 12, 1, 0, 0));
+        for (String crontab : crontabs) {
+            CronTime cronTime = CronTime.parse(crontab);
+            for (int i = 0; i < 2000; i++) {
+                long minute = from + random.nextInt(5 * 366 * EpochCalendar.MINUTES_PER_DAY);
+                assertEquals(crontab + " after " + minute, cronTime.nextExecution(minute),
+                             tables.nextExecution(cronTime, minute));
+            }
+            /* Across the end of a window */
+            long windowEnd = 30L * EpochCalendar.MINUTES_PER_DAY * 600;
+            for (long minute = windowEnd - 3; minute <= windowEnd + 3; minute++) {
+                assertEquals(crontab, cronTime.nextExecution(minute), tables.nextExecution(cronTime, minute));
+            }
+        }
+    }
+
+    @Test
+    public void testSharedBetweenEquivalentSchedules() {
+        FireTimeTables tables = new FireTimeTables();
+        long minute = epochMinute(LocalDateTime.of(2020, 6, 1, 12, 0));
+        tables.nextExecution(CronTime.parse("* * * * *"), minute);
+        tables.nextExecution(CronTime.parse("0-59 * * * *"), minute);
+        tables.nextExecution(CronTime.parse("* 0-23 */1 JAN-DEC *"), minute);
+        assertEquals(1, tables.size());
+        assertEquals(FireTimeTables.OVERHEAD_BYTES + 4L * 366 * EpochCalendar.MINUTES_PER_DAY, tables.bytes());
+
+        /* The seconds do not change the minutes a schedule fires at */
+        tables.nextExecution(CronTime.parse("*/10 * * * * *"), minute);
+        assertEquals(1, tables.size());
+        tables.nextExecution(CronTime.parse("*/2 * * * *"), minute);
+        assertEquals(2, tables.size());
+    }
+
+    @Test
+    public void testEvictsWithinBudget() {
+        long budget = 16 * 1024;
+        FireTimeTables tables = new FireTimeTables(budget, 7);
+        long minute = epochMinute(LocalDateTime.of(2020, 6, 1, 12, 0));
+        for (int m = 0; m < 60; m++) {
+            CronTime cronTime = CronTime.parse(m + " * * * *");
+            assertEquals(cronTime.nextExecution(minute), tables.nextExecution(cronTime, minute));
+            assertTrue(tables.bytes() <= budget + FireTimeTables.OVERHEAD_BYTES + 4 * 24 * 7);
+        }
+        assertTrue(tables.size() < 60);
+
+        /* A table larger than the budget is not built and the schedule is searched instead */
+        CronTime everyMinute = CronTime.parse("* * * * *");
+        assertEquals(minute + 1, tables.nextExecution(everyMinute, minute));
+        assertTrue(tables.bytes() <= budget);
+
+        tables.clear();
+        assertEquals(0, tables.size());
+        assertEquals(0, tables.bytes());
+    }
+
+    @Test
+    public void testEvictionCarriesOnWhereItStopped() {
+        /* Room for three tables of a single fire */
+        FireTimeTables tables = new FireTimeTables(3 * (FireTimeTables.OVERHEAD_BYTES + 4), 1);
+        long minute = epochMinute(LocalDateTime.of(2020, 6, 1, 0, 0));
+        CronTime[] daily = new CronTime[6];
+        for (int i = 0; i < daily.length; i++) {
+            daily[i] = CronTime.parse(i + 1 + " 12 * * *");
+        }
+        for (int i = 0; i < 4; i++) {
+            tables.nextExecution(daily[i], minute);  /* the fourth evicts the oldest, none being referenced */
+        }
+        tables.nextExecution(daily[1], minute);
+        tables.nextExecution(daily[4], minute);  /* spares the second, evicts the third */
+        tables.nextExecution(daily[5], minute);  /* evicts the fourth rather than starting over */
+
+        assertEquals(3, tables.size());
+        assertFalse(tables.isTabulated(daily[0], minute));
+        assertTrue(tables.isTabulated(daily[1], minute));
+        assertFalse(tables.isTabulated(daily[2], minute));
+        assertFalse(tables.isTabulated(daily[3], minute));
+        assertTrue(tables.isTabulated(daily[4], minute));
+        assertTrue(tables.isTabulated(daily[5], minute));
+    }
+
+    @Test
+    public void testCursorAgreesWithSearch() {
+        FireTimeTables tables = new FireTimeTables(FireTimeTables.DEFAULT_BUDGET_BYTES, 10);
+        long from = epochMinute(LocalDateTime.of(2019, 12, 20, 0, 0));
+        for (String crontab : new String[] { "*/7 * * * *", "0 9 * * 1-5", "0 0 29 2 *", "* * * * *" }) {
+            CronTime cronTime = CronTime.parse(crontab);
+            FireTimeTables.Cursor cursor = tables.cursor(cronTime);
+            long searched = from;
+            long stepped = from;
+            for (int i = 0; i < 5000 && searched != CronTime.NEVER; i++) {
+                searched = cronTime.nextExecution(searched);
+                stepped = cursor.nextExecution(stepped);
+                assertEquals(crontab, searched, stepped);
+            }
+            /* Going back and skipping ahead search the table again */
+            assertEquals(cronTime.nextExecution(from), cursor.nextExecution(from));
+            long later = from + 3 * EpochCalendar.MINUTES_PER_DAY + 17;
+            assertEquals(cronTime.nextExecution(later), cursor.nextExecution(later));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmptyHorizon() {
+        new FireTimeTables(FireTimeTables.DEFAULT_BUDGET_BYTES, 0);
+    }
+}
@@ -0,0 +1,107 @@
+package com.ezy.crond;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ScheduleIndexTest {
+    private static final String[] CRONTABS = {
+        "* * * * *", "5 * * * *", "*/7 */5 * * *", "0 0 1 1 *", "0 0 8,31 * 7", "30 4 13 * 5",
+        "0 9 * * 1-5", "0 0 29 2 *", "15 10 * 2 *", "*/15 * 1-7 * MON", "0 12 * * SAT,SUN", "0 0 31 2 *",
+    };
+
+    private static List<Integer> matches(ScheduleIndex index, long epochMinute) {
+        List<Integer> ids = new ArrayList<>();
+        index.forEachMatch(epochMinute, ids::add);
+        return ids;
+    }
+
+    private static List<Integer> scan(CronTime[] schedules, long epochMinute) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < schedules.length; id++) {
+            if (schedules[id] != null && schedules[id].matches(epochMinute)) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    @Test
+    public void testMatchesAgreeWithScan() {
+        ScheduleIndex index = new ScheduleIndex();
+        CronTime[] schedules = new CronTime[300];
+        for (int i = 0; i < schedules.length; i++) {
+            schedules[i] = CronTime.parse(CRONTABS[i % CRONTABS.length]);
+            assertEquals(i, index.add(schedules[i]));
+        }
+        assertEquals(300, index.size());
+
+        long from = LocalDateTime.of(2020, 2, 1, 0, 0).toEpochSecond(ZoneOffset.UTC) / 60;
+        for (long minute = from; minute < from + 40 * 24 * 60; minute += 5) {
+            assertEquals(scan(schedules, minute), matches(index, minute));
+        }
+    }
+
+    @Test
+    public void testRemoveAndReuseIds() {
+        ScheduleIndex index = new ScheduleIndex();
+        CronTime everyMinute = CronTime.parse("* * * * *");
+        int first = index.add(everyMinute);
+        int second = index.add(everyMinute);
+        int third = index.add(CronTime.parse("0 0 1 1 *"));
+
+        assertSame(everyMinute, index.remove(first));
+        assertNull(index.remove(first));
+        assertEquals(2, index.size());
+        assertEquals(Collections.singletonList(second), matches(index, 10));
+        assertEquals(first, index.add(CronTime.parse("10 * * * *")));
+        assertEquals(Arrays.asList(first, second), matches(index, 10));
+        assertEquals(Arrays.asList(second, third), matches(index, 0));
+    }
+
+    @Test
+    public void testSparseMatchesAcrossManySchedules() {
+        ScheduleIndex index = new ScheduleIndex();
+        CronTime never = CronTime.parse("0 0 31 2 *");
+        for (int i = 0; i < 100_000; i++) {
+            index.add(never);
+        }
+        int hourly = index.add(CronTime.parse("0 * * * *"));
+
+        assertEquals(Collections.singletonList(hourly), matches(index, 60));
+        assertTrue(matches(index, 61).isEmpty());
+    }
+
+    @Test
+    public void testForEachMatchInZone() {
+        ScheduleIndex index = new ScheduleIndex();
+        int id = index.add(CronTime.parse("30 9 * * *"));
+        long summer = LocalDateTime.of(2020, 7, 15, 13, 30).toEpochSecond(ZoneOffset.UTC) / 60;
+        List<Integer> ids = new ArrayList<>();
+
+        index.forEachMatch(summer, ZoneId.of("America/New_York"), ids::add);
+        assertEquals(Collections.singletonList(id), ids);
+    }
+
+    @Test
+    public void testYearsAreCheckedOnTheSchedule() {
+        ScheduleIndex index = new ScheduleIndex();
+        int always = index.add(CronTime.parse("0 0 1 1 *"));
+        int once = index.add(CronTime.parse("0 0 0 1 1 * 2030"));
+        List<Integer> ids = new ArrayList<>();
+
+        index.forEachMatch(LocalDateTime.of(2029, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC) / 60, ids::add);
+        assertEquals(Collections.singletonList(always), ids);
+        ids.clear();
+        index.forEachMatch(LocalDateTime.of(2030, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC) / 60, ids::add);
+        assertEquals(Arrays.asList(always, once), ids);
+    }
+}
@@ -0,0 +1,166 @@
+package com.ezy.crond.cluster;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ezy.crond.CronTime;
+import com.ezy.crond.scheduler.JobExecutor;
+
+import static org.junit.Assert.*;
+
+public class ClusterSchedulerTest {
+    private static final long TTL = 10_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ConcurrentHashMap<String, AtomicInteger> runs = new ConcurrentHashMap<>();
+
+    private List<ClusterScheduler> cluster(LeaseStore leases, String... nodes) {
+        List<ClusterScheduler> cluster = new ArrayList<>();
+        for (String node : nodes) {
+            cluster.add(new ClusterScheduler(node, JobExecutor.direct(), leases, TTL, 0));
+        }
+        return cluster;
+    }
+
+    private void addJobs(ClusterScheduler scheduler, int count) {
+        CronTime everyMinute = CronTime.parse("* * * * *");
+        for (int i = 0; i < count; i++) {
+            String key = "job-" + i;
+            scheduler.add(key, everyMinute, () -> runs.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet());
+        }
+    }
+
+    private static void heartbeat(List<ClusterScheduler> cluster, long now) throws IOException {
+        for (ClusterScheduler scheduler : cluster) {
+            scheduler.heartbeat(now);
+        }
+    }
+
+    private void assertEveryJobRan(int jobs, int times) {
+        assertEquals(jobs, runs.size());
+        for (AtomicInteger count : runs.values()) {
+            assertEquals(times, count.get());
+        }
+    }
+
+    @Test
+    public void testJobsArePartitionedAndRunOnce() throws IOException {
+        List<ClusterScheduler> cluster = cluster(new InMemoryLeaseStore(), "a", "b", "c");
+        for (ClusterScheduler scheduler : cluster) {
+            addJobs(scheduler, 3_000);
+        }
+        /* Before the first heartbeat every node owns every job, the claims keep it to one run */
+        for (ClusterScheduler scheduler : cluster) {
+            scheduler.scheduler().advanceTo(1);
+        }
+        assertEveryJobRan(3_000, 1);
+
+        heartbeat(cluster, 0);
+        heartbeat(cluster, 0);
+        int owned = 0;
+        for (ClusterScheduler scheduler : cluster) {
+            assertEquals(Arrays.asList("a", "b", "c"), scheduler.members());
+            assertTrue(scheduler.ownedCount() > 700 && scheduler.ownedCount() < 1_300);
+            owned += scheduler.ownedCount();
+            scheduler.scheduler().advanceTo(2);
+        }
+        assertEquals(3_000, owned);
+        assertEveryJobRan(3_000, 2);
+    }
+
+    @Test
+    public void testLeavingNodeIsRebalanced() throws IOException {
+        List<ClusterScheduler> cluster = cluster(new InMemoryLeaseStore(), "a", "b", "c");
+        for (ClusterScheduler scheduler : cluster) {
+            addJobs(scheduler, 3_000);
+        }
+        heartbeat(cluster, 0);
+        heartbeat(cluster, 0);
+        ClusterScheduler leaving = cluster.remove(2);
+        int orphaned = leaving.ownedCount();
+        leaving.close();
+
+        heartbeat(cluster, TTL / 2);  /* c is still considered alive */
+        assertEquals(3, cluster.get(0).members().size());
+        int moved = cluster.get(0).heartbeat(TTL + 1) + cluster.get(1).heartbeat(TTL + 1);
+        assertEquals(orphaned, moved);
+        for (ClusterScheduler scheduler : cluster) {
+            assertEquals(Arrays.asList("a", "b"), scheduler.members());
+            scheduler.scheduler().advanceTo(1);
+        }
+        assertEveryJobRan(3_000, 1);
+        assertEquals(3_000, cluster.get(0).ownedCount() + cluster.get(1).ownedCount());
+    }
+
+    @Test
+    public void testJobsWithSecondsAreClaimedPerFire() throws IOException {
+        for (LeaseStore leases : new LeaseStore[] { new InMemoryLeaseStore(),
+                                                    new FileLeaseStore(folder.getRoot().toPath()) }) {
+            runs.clear();
+            List<ClusterScheduler> cluster = cluster(leases, "a", "b");
+            CronTime everyFiveSeconds = CronTime.parse("*/5 * * * * *");
+            for (ClusterScheduler scheduler : cluster) {
+                for (int i = 0; i < 10; i++) {
+                    String key = "job-" + i;
+                    scheduler.add(key, everyFiveSeconds,
+                                  () -> runs.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet());
+                }
+            }
+            /* Both nodes hold every job before the first heartbeat, each fire still runs once */
+            for (long second = 1; second <= 60; second++) {
+                for (ClusterScheduler scheduler : cluster) {
+                    scheduler.scheduler().advanceToSecond(second);
+                }
+            }
+            assertEveryJobRan(10, 12);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsScheduleThatNeverFires() {
+        List<ClusterScheduler> cluster = cluster(new InMemoryLeaseStore(), "a", "b");
+        for (ClusterScheduler scheduler : cluster) {
+            scheduler.add("feb-31", CronTime.parse("0 0 31 2 *"), () -> {});
+        }
+    }
+
+    @Test
+    public void testFileLeaseStore() throws IOException {
+        FileLeaseStore first = new FileLeaseStore(folder.getRoot().toPath());
+        FileLeaseStore second = new FileLeaseStore(folder.getRoot().toPath());
+        String longKey = new String(new char[300]).replace('\0', 'x');
+
+        assertTrue(first.claim("job", 10, "a"));
+        assertFalse(second.claim("job", 10, "b"));
+        assertTrue(second.claim("job", 11, "b"));
+        assertTrue(first.claim(longKey, 10, "a"));
+        assertFalse(second.claim(longKey, 10, "b"));
+
+        first.heartbeat("node/a", 1_000);
+        second.heartbeat("b", 2_000);
+        second.heartbeat(longKey, 2_000);  /* stored under its hash */
+        second.heartbeat("", 2_000);
+        assertEquals(Arrays.asList("", "b", "node/a", longKey), first.liveNodes(500));
+        assertEquals(Arrays.asList("", "b", longKey), second.liveNodes(1_500));
+
+        assertTrue(first.claimAtSecond("job", 10 * 60, "a"));
+        assertFalse(second.claimAtSecond("job", 10 * 60, "b"));
+        assertTrue(second.claimAtSecond("job", 11 * 60, "b"));
+
+        first.expireClaims(11);
+        assertTrue(second.claim("job", 10, "b"));
+        assertFalse(first.claim("job", 11, "a"));
+        assertTrue(second.claimAtSecond("job", 10 * 60, "b"));
+        assertFalse(first.claimAtSecond("job", 11 * 60, "a"));
+    }
+}
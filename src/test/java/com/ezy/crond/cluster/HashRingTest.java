@@ -0,0 +1,46 @@
+package com.ezy.crond.cluster;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HashRingTest {
+
+    @Test
+    public void testKeysSpreadEvenly() {
+        HashRing ring = new HashRing(Arrays.asList("a", "b", "c", "d"));
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            counts.merge(ring.owner("job-" + i), 1, Integer::sum);
+        }
+        assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            assertTrue("" + counts, count > 25_000 * 0.8 && count < 25_000 * 1.2);
+        }
+    }
+
+    @Test
+    public void testJoiningNodeOnlyTakesKeys() {
+        HashRing before = new HashRing(Arrays.asList("a", "b", "c"));
+        HashRing after = new HashRing(Arrays.asList("c", "b", "a", "d"));
+        int moved = 0;
+        for (int i = 0; i < 100_000; i++) {
+            String key = "job-" + i;
+            if (!before.owner(key).equals(after.owner(key))) {
+                assertEquals("d", after.owner(key));
+                moved++;
+            }
+        }
+        assertTrue("" + moved, moved > 20_000 && moved < 30_000);
+        assertEquals(Arrays.asList("a", "b", "c", "d"), after.nodes());
+    }
+
+    @Test
+    public void testEmptyRing() {
+        assertNull(new HashRing(Arrays.<String>asList()).owner("job"));
+    }
+}
@@ -0,0 +1,127 @@
+package com.ezy.crond.crontab;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ezy.crond.scheduler.CronScheduler;
+import com.ezy.crond.scheduler.JobExecutor;
+import com.ezy.crond.scheduler.ScheduledJob;
+
+import static org.junit.Assert.*;
+
+public class CrontabLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger created = new AtomicInteger();
+
+    private CrontabLoader loader(CronScheduler scheduler) throws IOException {
+        return new CrontabLoader(scheduler, entry -> {
+            created.incrementAndGet();
+            return () -> {};
+        });
+    }
+
+    private static void write(Path file, List<String> lines) throws IOException {
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testReloadAppliesOnlyChangedEntries() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Path file = directory.resolve("jobs");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            lines.add((i % 60) + " " + (i % 24) + " * * * /usr/bin/job " + i);
+        }
+        write(file, lines);
+        write(directory.resolve(".jobs.swp"), lines);
+        CronScheduler scheduler = new CronScheduler(JobExecutor.direct(), 0);
+        try (CrontabLoader loader = loader(scheduler)) {
+            loader.watch(directory);
+            assertEquals(50_000, scheduler.size());
+            ScheduledJob kept = loader.jobs(file).get(0);
+
+            lines.set(10, "*/5 * * * * /usr/bin/job 10");
+            lines.add("0 0 * * * /usr/bin/job 0");  /* a duplicate of an unchanged line */
+            write(file, lines);
+            assertEquals(3, loader.reload(file));
+            assertEquals(50_001, scheduler.size());
+            assertEquals(50_002, created.get());
+            assertTrue(loader.jobs(file).contains(kept));
+            assertFalse(kept.isCancelled());
+
+            assertEquals(0, loader.reload(file));
+
+            Files.delete(file);
+            assertEquals(50_001, loader.reload(file));
+            assertEquals(0, scheduler.size());
+        }
+    }
+
+    @Test
+    public void testInvalidFileKeepsItsJobs() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Path file = directory.resolve("jobs");
+        write(file, Arrays.asList("0 * * * * run"));
+        CronScheduler scheduler = new CronScheduler(JobExecutor.direct(), 0);
+        Thread.UncaughtExceptionHandler handler = Thread.currentThread().getUncaughtExceptionHandler();
+        AtomicInteger failures = new AtomicInteger();
+        Thread.currentThread().setUncaughtExceptionHandler((t, e) -> failures.incrementAndGet());
+        try (CrontabLoader loader = loader(scheduler)) {
+            loader.watch(directory);
+            write(file, Arrays.asList("0 * * * * run", "0 * * run"));
+            assertEquals(0, loader.reload(file));
+            assertEquals(1, failures.get());
+            assertEquals(1, scheduler.size());
+        } finally {
+            Thread.currentThread().setUncaughtExceptionHandler(handler);
+        }
+    }
+
+    @Test
+    public void testEntryThatNeverFiresIsReported() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Path file = directory.resolve("jobs");
+        write(file, Arrays.asList("0 0 31 2 * never", "0 * * * * run"));
+        CronScheduler scheduler = new CronScheduler(JobExecutor.direct(), 0);
+        Thread.UncaughtExceptionHandler handler = Thread.currentThread().getUncaughtExceptionHandler();
+        AtomicInteger failures = new AtomicInteger();
+        Thread.currentThread().setUncaughtExceptionHandler((t, e) -> failures.incrementAndGet());
+        try (CrontabLoader loader = loader(scheduler)) {
+            assertEquals(1, loader.reload(file));
+            assertEquals(1, failures.get());
+            assertEquals(1, scheduler.size());
+            assertEquals(1, loader.jobs(file).size());
+        } finally {
+            Thread.currentThread().setUncaughtExceptionHandler(handler);
+        }
+    }
+
+    @Test
+    public void testWatchPicksUpNewFiles() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        CronScheduler scheduler = new CronScheduler(JobExecutor.direct(), 0);
+        try (CrontabLoader loader = loader(scheduler)) {
+            loader.watch(directory);
+            write(directory.resolve("new"), Arrays.asList("@hourly run", "@daily run"));
+            /* Some platforms poll the file system, give them time to notice */
+            for (int i = 0; i < 30 && scheduler.size() < 2; i++) {
+                loader.poll(1, TimeUnit.SECONDS);
+            }
+            assertEquals(2, scheduler.size());
+        }
+    }
+}
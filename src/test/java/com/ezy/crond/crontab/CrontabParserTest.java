@@ -0,0 +1,61 @@
+package com.ezy.crond.crontab;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CrontabParserTest {
+
+    private static List<CrontabEntry> parse(String text) throws IOException {
+        return CrontabParser.parse("crontab", new BufferedReader(new StringReader(text)));
+    }
+
+    @Test
+    public void testParseEntries() throws IOException {
+        List<CrontabEntry> entries = parse(
+            "# backups\n" +
+            "SHELL=/bin/sh\n" +
+            "MAILTO = ops@example.com\n" +
+            "\n" +
+            "  */5\t* * * *   /usr/bin/check --all  \n" +
+            "0 9 * * mon-fri echo 'good morning' > /tmp/hello\n" +
+            "@daily /usr/bin/rotate\n");
+
+        assertEquals(3, entries.size());
+        assertEquals("*/5 * * * *", entries.get(0).getExpression());
+        assertEquals("/usr/bin/check --all", entries.get(0).getCommand());
+        assertEquals(5, entries.get(0).getLine());
+        assertEquals("echo 'good morning' > /tmp/hello", entries.get(1).getCommand());
+        assertEquals(0x3EL, entries.get(1).getCronTime().getDayOfWeekBits());
+        assertEquals("@daily", entries.get(2).getExpression());
+        assertEquals(1L, entries.get(2).getCronTime().getHourBits());
+    }
+
+    @Test
+    public void testEntriesEqualWhereverTheyAre() throws IOException {
+        List<CrontabEntry> entries = parse("0 * * * * run\n\n0  *  * * * run\n0 * * * * run other\n");
+
+        assertEquals(entries.get(0), entries.get(1));
+        assertEquals(entries.get(0).hashCode(), entries.get(1).hashCode());
+        assertNotEquals(entries.get(0), entries.get(2));
+        assertSame(entries.get(0).getCronTime(), entries.get(2).getCronTime());
+    }
+
+    @Test
+    public void testInvalidLinesNameTheirPosition() throws IOException {
+        String[] invalid = { "0 * * * *\n", "0 * * *\n", "61 * * * * run\n", "@reboot run\n", "@daily\n" };
+        for (String text : invalid) {
+            try {
+                parse("# first\n" + text);
+                fail("Expected " + text.trim() + " to be rejected");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("crontab:2: "));
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.ezy.crond.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        long[] values = { 0, 1, 31, 32, 33, 34, 1000, 123_456_789, Long.MAX_VALUE };
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue("" + value, LatencyHistogram.highestValue(bucket) >= value);
+            assertTrue("" + value, bucket == 0 || LatencyHistogram.highestValue(bucket - 1) < value);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(10_000, histogram.count());
+        assertEquals(10_000, histogram.max());
+        assertEquals(5000.5, histogram.mean(), 0.001);
+        assertEquals(5000, histogram.valueAtPercentile(50), 5000 / 16);
+        assertEquals(9900, histogram.valueAtPercentile(99), 9900 / 16);
+        assertEquals(10_000, histogram.valueAtPercentile(100));
+        assertEquals(1, histogram.valueAtPercentile(0));
+
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.valueAtPercentile(99));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i % 100);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        assertEquals(400_000, histogram.count());
+        assertEquals(99, histogram.max());
+        assertEquals(49, histogram.valueAtPercentile(50));
+    }
+}
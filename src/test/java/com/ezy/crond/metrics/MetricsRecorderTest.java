@@ -0,0 +1,96 @@
+package com.ezy.crond.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.ezy.crond.CronTime;
+import com.ezy.crond.scheduler.ConcurrentJobExecutor;
+import com.ezy.crond.scheduler.CronScheduler;
+import com.ezy.crond.scheduler.JobExecutor;
+import com.ezy.crond.scheduler.MisfirePolicy;
+import com.ezy.crond.scheduler.OverlapPolicy;
+import com.ezy.crond.scheduler.ScheduledJob;
+
+import static org.junit.Assert.*;
+
+public class MetricsRecorderTest {
+
+    @Test
+    public void testRecordsSchedulerActivity() {
+        MetricsRecorder recorder = new MetricsRecorder();
+        CronScheduler scheduler = new CronScheduler(JobExecutor.direct(), 0);
+        scheduler.setMetrics(recorder);
+        ScheduledJob everyMinute = scheduler.schedule("every-minute", CronTime.parse("* * * * *"), () -> {});
+        ScheduledJob skipping = scheduler.schedule("skip", CronTime.parse("* * * * *"), () -> {}, MisfirePolicy.SKIP);
+
+        scheduler.advanceTo(10);
+
+        assertEquals(10 + 1, recorder.getFiredCount());
+        assertEquals(9, recorder.getMisfiredCount());
+        /* Both jobs share a schedule, whose next execution is worked out once per fire */
+        assertEquals(10, recorder.getNextExecution().count());
+        assertEquals(10, recorder.job(everyMinute.getId()).getFired());
+        assertEquals(9, recorder.job(skipping.getId()).getMisfired());
+        /* Minute 10 of 1970 is a long time ago */
+        assertTrue(recorder.getFireLagP50Millis() > 1_000_000_000L);
+
+        scheduler.cancel(everyMinute);
+        assertNull(recorder.job(everyMinute.getId()));
+
+        scheduler.schedule("restored", CronTime.parse("0 * * * *"), () -> {}, MisfirePolicy.FIRE_ONCE, -24 * 60);
+        assertEquals(9 + 23, recorder.getMisfiredCount());
+    }
+
+    @Test
+    public void testDisabledMetricsRecordNothing() {
+        MetricsRecorder recorder = new MetricsRecorder();
+        CronScheduler scheduler = new CronScheduler(JobExecutor.direct(), 0);
+        scheduler.setMetrics(recorder);
+        scheduler.setMetrics(null);
+        scheduler.schedule("every-minute", CronTime.parse("* * * * *"), () -> {});
+
+        scheduler.advanceTo(10);
+        assertEquals(0, recorder.getFiredCount());
+        assertNull(scheduler.getMetrics());
+    }
+
+    @Test
+    public void testOverlapSkipsAndJmx() throws Exception {
+        MetricsRecorder recorder = new MetricsRecorder();
+        ConcurrentJobExecutor executor = new ConcurrentJobExecutor(Executors.newCachedThreadPool(), 10);
+        executor.setMetrics(recorder);
+        recorder.setQueueDepth(executor::queued);
+        CronScheduler scheduler = new CronScheduler(executor, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        ScheduledJob job = scheduler.schedule("slow", CronTime.parse("* * * * *"), () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        job.setOverlapPolicy(OverlapPolicy.SKIP);
+        scheduler.advanceTo(3);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = recorder.register("test");
+        try {
+            assertEquals(2L, server.getAttribute(name, "OverlapSkippedCount"));
+            assertEquals(1, server.getAttribute(name, "QueueDepth"));
+            String described = (String) server.invoke(name, "describeJob", new Object[] { job.getId() },
+                                                       new String[] { long.class.getName() });
+            assertTrue(described, described.contains("overlap skipped: 2"));
+        } finally {
+            server.unregisterMBean(name);
+            release.countDown();
+            executor.close();
+        }
+        assertEquals(0, executor.queued());
+    }
+}
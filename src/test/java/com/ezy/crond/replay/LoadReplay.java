@@ -0,0 +1,220 @@
+package com.ezy.crond.replay;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.ezy.crond.CronTime;
+import com.ezy.crond.metrics.LatencyHistogram;
+import com.ezy.crond.scheduler.CronScheduler;
+import com.ezy.crond.scheduler.JobExecutor;
+import com.ezy.crond.scheduler.ScheduledJob;
+import com.ezy.crond.scheduler.VirtualClock;
+
+/* Replays the load of a set of schedules on a CronScheduler driven by a VirtualClock, tick after tick
+   as fast as the scheduler keeps up, so a year of scheduling is measured without waiting a year.
+   Job bodies are not run, the executor only counts the fires handed to it: the replay measures the
+   scheduler and nothing else. The clock ticks every minute, or every second when a schedule has
+   seconds. The report holds the dispatch throughput, the time taken by every tick, the most jobs
+   fired at one tick and the bytes allocated by the replaying thread.
+   A tool kept with the tests rather than in the library, after 'mvn test-compile' run it with
+
+     java -cp target/classes:target/test-classes com.ezy.crond.replay.LoadReplay [jobs] [days]
+
+   replays a synthetic mix of 1,000,000 jobs over the 365 days of 2021 by default. */
+public final class LoadReplay {
+    private final List<String> names = new ArrayList<>();
+    private final List<CronTime> cronTimes = new ArrayList<>();
+
+    public LoadReplay add(String name, CronTime cronTime) {
+        names.add(name);
+        cronTimes.add(cronTime);
+        return this;
+    }
+
+    public int size() { return cronTimes.size(); }
+
+    CronTime cronTime(int index) { return cronTimes.get(index); }
+
+    /* Counts fires instead of running jobs */
+    private static final class CountingExecutor implements JobExecutor {
+        long fires;
+        long tickFires;
+
+        @Override
+        public void execute(ScheduledJob job, long fireMinute) {
+            fires++;
+            tickFires++;
+        }
+
+        @Override
+        public void executeAll(List<ScheduledJob> jobs, long fireMinute) {
+            fires += jobs.size();
+            tickFires += jobs.size();
+        }
+
+        @Override
+        public void executeAllAtSecond(List<ScheduledJob> jobs, long fireSecond) {
+            executeAll(jobs, 0);
+        }
+    }
+
+    /* Registers every job at fromMinute and moves the clock to toMinute */
+    public Report run(long fromMinute, long toMinute) {
+        if (toMinute <= fromMinute) {
+            throw new IllegalArgumentException("Replay must end after it starts: " + fromMinute + " to " + toMinute);
+        }
+        VirtualClock clock = new VirtualClock(fromMinute * TimeUnit.MINUTES.toMillis(1));
+        CountingExecutor executor = new CountingExecutor();
+        CronScheduler scheduler = new CronScheduler(executor, clock);
+        Runnable nothing = () -> {};
+        boolean bySecond = false;
+        long started = System.nanoTime();
+        for (int i = 0; i < cronTimes.size(); i++) {
+            try {
+                scheduler.schedule(names.get(i), cronTimes.get(i), nothing);
+            } catch (IllegalArgumentException neverFires) {
+                continue;  /* counted as a job, it just never runs */
+            }
+            bySecond |= cronTimes.get(i).hasSeconds();
+        }
+        long scheduleNanos = System.nanoTime() - started;
+
+        Report report = new Report(size(), scheduler.groupCount(), scheduleNanos);
+        long step = bySecond ? TimeUnit.SECONDS.toMillis(1) : TimeUnit.MINUTES.toMillis(1);
+        long end = toMinute * TimeUnit.MINUTES.toMillis(1);
+        long allocated = allocatedBytes();
+        started = System.nanoTime();
+        for (long millis = clock.millis() + step; millis <= end; millis += step) {
+            clock.set(millis);
+            executor.tickFires = 0;
+            long tickStarted = System.nanoTime();
+            scheduler.advanceToNow();
+            report.tickNanos.record(System.nanoTime() - tickStarted);
+            if (executor.tickFires > report.peakFires) {
+                report.peakFires = executor.tickFires;
+                report.peakMillis = millis;
+            }
+            report.ticks++;
+        }
+        report.replayNanos = System.nanoTime() - started;
+        report.fires = executor.fires;
+        report.allocatedBytes = allocated < 0 ? -1 : allocatedBytes() - allocated;
+        return report;
+    }
+
+    /* Bytes allocated by the current thread so far, -1 when the JVM does not tell.
+       Thread.getId is deprecated from Java 19 for threadId, which Java 8 does not have. */
+    @SuppressWarnings("deprecation")
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    public static final class Report {
+        private final int jobs;
+        private final int schedules;
+        private final long scheduleNanos;
+        private final LatencyHistogram tickNanos = new LatencyHistogram();
+        private long ticks;
+        private long fires;
+        private long replayNanos;
+        private long peakFires;
+        private long peakMillis;
+        private long allocatedBytes;
+
+        Report(int jobs, int schedules, long scheduleNanos) {
+            this.jobs = jobs;
+            this.schedules = schedules;
+            this.scheduleNanos = scheduleNanos;
+        }
+
+        public int getJobs() { return jobs; }
+        /* Distinct schedules among the jobs that fire at all */
+        public int getSchedules() { return schedules; }
+        public long getScheduleNanos() { return scheduleNanos; }
+        public long getTicks() { return ticks; }
+        public long getFires() { return fires; }
+        public long getReplayNanos() { return replayNanos; }
+        public LatencyHistogram getTickNanos() { return tickNanos; }
+        /* Most jobs fired at a single tick, and the epoch millisecond of the first tick firing as many */
+        public long getPeakFires() { return peakFires; }
+        public long getPeakMillis() { return peakMillis; }
+        /* Allocated by the replaying thread while the clock moved, -1 when the JVM does not tell */
+        public long getAllocatedBytes() { return allocatedBytes; }
+
+        public double firesPerSecond() {
+            return replayNanos == 0 ? 0 : fires * 1e9 / replayNanos;
+        }
+
+        public double ticksPerSecond() {
+            return replayNanos == 0 ? 0 : ticks * 1e9 / replayNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "jobs: %,d in %,d schedules, registered in %,d ms%n" +
+                "ticks: %,d in %,d ms, %,.0f ticks/s%n" +
+                "fires: %,d, %,.0f fires/s%n" +
+                "tick latency: p50 %,d ns p99 %,d ns p99.9 %,d ns max %,d ns%n" +
+                "peak: %,d fires at %s%n" +
+                "allocated: %,d bytes, %.2f per fire",
+                jobs, schedules, TimeUnit.NANOSECONDS.toMillis(scheduleNanos),
+                ticks, TimeUnit.NANOSECONDS.toMillis(replayNanos), ticksPerSecond(),
+                fires, firesPerSecond(),
+                tickNanos.valueAtPercentile(50), tickNanos.valueAtPercentile(99),
+                tickNanos.valueAtPercentile(99.9), tickNanos.max(),
+                peakFires, LocalDateTime.ofEpochSecond(Math.floorDiv(peakMillis, 1000), 0, ZoneOffset.UTC),
+                allocatedBytes, fires == 0 ? 0.0 : (double) allocatedBytes / fires);
+        }
+    }
+
+    /* jobs schedules shaped like a production crontab: mostly daily jobs at scattered times, then
+       hourly, weekday, weekly and monthly ones, and a few every couple of minutes */
+    public static LoadReplay synthetic(int jobs, long seed) {
+        Random random = new Random(seed);
+        int[] steps = { 5, 10, 15, 30 };
+        LoadReplay replay = new LoadReplay();
+        for (int i = 0; i < jobs; i++) {
+            int minute = random.nextInt(60);
+            int hour = random.nextInt(24);
+            int kind = random.nextInt(100);
+            String expression;
+            if (kind < 50) {
+                expression = minute + " " + hour + " * * *";
+            } else if (kind < 65) {
+                expression = minute + " " + hour + " * * 1-5";
+            } else if (kind < 80) {
+                expression = minute + " " + hour + " * * " + random.nextInt(7);
+            } else if (kind < 90) {
+                expression = minute + " " + hour + " " + (1 + random.nextInt(28)) + " * *";
+            } else if (kind < 98) {
+                expression = minute + " * * * *";
+            } else {
+                expression = "*/" + steps[random.nextInt(steps.length)] + " * * * *";
+            }
+            replay.add("job-" + i, CronTime.parseCached(expression));
+        }
+        return replay;
+    }
+
+    public static void main(String[] args) {
+        int jobs = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 365;
+        long from = LocalDateTime.of(2021, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC) / 60;
+        LoadReplay replay = synthetic(jobs, 42);
+        System.out.println(replay.run(from, from + days * 24L * 60));
+    }
+}
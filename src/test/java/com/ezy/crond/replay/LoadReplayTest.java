@@ -0,0 +1,56 @@
+package com.ezy.crond.replay;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+
+import com.ezy.crond.CronTime;
+
+import static org.junit.Assert.*;
+
+public class LoadReplayTest {
+
+    private static long epochMinute(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    @Test
+    public void testReplayFiresEveryExecution() {
+        long from = epochMinute(LocalDateTime.of(2021, 1, 1, 0, 0));
+        long to = from + 3 * 24 * 60;
+        LoadReplay replay = LoadReplay.synthetic(2_000, 7);
+        replay.add("midnight", CronTime.parse("0 0 * * *"));
+        replay.add("never", CronTime.parse("0 0 31 2 *"));
+
+        LoadReplay.Report report = replay.run(from, to);
+
+        long expected = 0;
+        for (int i = 0; i < 2_000; i++) {
+            expected += replay.cronTime(i).countBetween(from + 1, to + 1);
+        }
+        assertEquals(expected + 3, report.getFires());
+        assertEquals(3 * 24 * 60, report.getTicks());
+        assertEquals(report.getTicks(), report.getTickNanos().count());
+        assertEquals(2_002, report.getJobs());
+        assertTrue(report.getSchedules() < 2_000);
+        assertTrue(report.getPeakFires() > 0 && report.getPeakFires() <= 2_001);
+        assertTrue(report.getPeakMillis() > from * 60_000);
+        assertTrue(report.toString().contains("fires: "));
+    }
+
+    @Test
+    public void testReplayTicksEverySecondWithSeconds() {
+        LoadReplay replay = new LoadReplay().add("five", CronTime.parse("*/5 * * * * *"))
+                                            .add("minute", CronTime.parse("* * * * *"));
+        LoadReplay.Report report = replay.run(0, 10);
+        assertEquals(600, report.getTicks());
+        assertEquals(120 + 10, report.getFires());
+        assertEquals(2, report.getPeakFires());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmptyReplay() {
+        new LoadReplay().run(10, 10);
+    }
+}
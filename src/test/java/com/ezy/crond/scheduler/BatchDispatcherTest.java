@@ -0,0 +1,248 @@
+package com.ezy.crond.scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.ezy.crond.CronTime;
+import com.ezy.crond.metrics.MetricsRecorder;
+
+import static org.junit.Assert.*;
+
+public class BatchDispatcherTest {
+
+    /* Records the jobs handed over, the dispatching thread waits for release before each batch */
+    private static final class RecordingTarget implements JobExecutor {
+        final List<Long> jobs = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch release;
+
+        RecordingTarget(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void execute(ScheduledJob job, long fireMinute) {
+            executeAll(Collections.singletonList(job), fireMinute);
+        }
+
+        @Override
+        public void executeAll(List<ScheduledJob> batch, long fireMinute) {
+            if (Thread.currentThread().getName().equals("jcrond-dispatcher")) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            batches.add(batch.size());
+            for (ScheduledJob job : batch) {
+                jobs.add(job.getId());
+            }
+        }
+    }
+
+    private static List<ScheduledJob> jobs(long firstId, int count, int priority) {
+        List<ScheduledJob> jobs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ScheduledJob job = new ScheduledJob(firstId + i, "job-" + (firstId + i), null, () -> {}, MisfirePolicy.FIRE_ALL);
+            job.setPriority(priority);
+            jobs.add(job);
+        }
+        return jobs;
+    }
+
+    @Test
+    public void testHandsScheduledBatchesToTarget() {
+        RecordingTarget target = new RecordingTarget(new CountDownLatch(0));
+        BatchDispatcher dispatcher = new BatchDispatcher(target, 1000);
+        CronScheduler scheduler = new CronScheduler(dispatcher, 0);
+        for (int i = 0; i < 100; i++) {
+            scheduler.schedule("job-" + i, CronTime.parse(i < 60 ? "* * * * *" : "*/2 * * * *"), () -> {});
+        }
+        scheduler.advanceTo(2);
+        dispatcher.close();
+
+        assertEquals(60 + 60 + 40, target.jobs.size());
+        Collections.sort(target.batches);
+        assertEquals(Arrays.asList(40, 60, 60), target.batches);
+        assertEquals(160, dispatcher.dispatched());
+        assertEquals(0, dispatcher.queued());
+        assertEquals(0, dispatcher.saturated());
+    }
+
+    @Test
+    public void testSaturationShedsAndOverflows() {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingTarget target = new RecordingTarget(release);
+        MetricsRecorder recorder = new MetricsRecorder();
+        BatchDispatcher dispatcher = new BatchDispatcher(target, 10);
+        dispatcher.setMetrics(recorder);
+        dispatcher.setShedBelowPriority(1);
+
+        dispatcher.executeAll(jobs(0, 6, 0), 1);
+        assertEquals(6, dispatcher.queued());
+
+        /* Room for 4, the 3 high priority jobs go first and the 2 low priority ones left are shed */
+        List<ScheduledJob> mixed = jobs(100, 3, 0);
+        mixed.addAll(jobs(200, 3, 1));
+        dispatcher.executeAll(mixed, 1);
+        assertEquals(10, dispatcher.queued());
+        assertEquals(2, dispatcher.shed());
+
+        /* No room at all, handed straight over */
+        dispatcher.executeAll(jobs(300, 4, 1), 1);
+        assertEquals(4, dispatcher.overflowed());
+        assertEquals(4, target.jobs.size());
+        assertEquals(2, dispatcher.saturated());
+        assertEquals(2, recorder.getShedCount());
+        assertEquals(2, recorder.getDispatchSaturatedCount());
+        assertNull(recorder.job(100));
+        assertEquals(1, recorder.job(101).getShed());
+
+        release.countDown();
+        dispatcher.close();
+        assertEquals(14, target.jobs.size());
+        assertEquals(14, dispatcher.dispatched());
+        assertTrue(target.jobs.contains(100L));
+        assertFalse(target.jobs.contains(101L));
+        assertTrue(target.jobs.contains(200L));
+    }
+
+    @Test
+    public void testBatchLargerThanCapacityIsQueuedInPart() {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingTarget target = new RecordingTarget(release);
+        BatchDispatcher dispatcher = new BatchDispatcher(target, 10);
+
+        dispatcher.executeAll(jobs(0, 25, 0), 1);
+        assertEquals(10, dispatcher.queued());
+        assertEquals(15, dispatcher.overflowed());
+        assertEquals(0, dispatcher.shed());
+        assertEquals(1, dispatcher.saturated());
+        assertEquals(Collections.singletonList(15), target.batches);
+
+        release.countDown();
+        dispatcher.close();
+        assertEquals(Arrays.asList(15, 10), target.batches);
+        assertEquals(25, dispatcher.dispatched());
+    }
+
+    @Test
+    public void testRateLimitShedsWhatDoesNotFit() {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingTarget target = new RecordingTarget(release);
+        BatchDispatcher dispatcher = new BatchDispatcher(target, 10);
+        dispatcher.setRateLimit(1_000);
+
+        dispatcher.executeAll(jobs(0, 15, 1), 1);
+        assertEquals(10, dispatcher.queued());
+        assertEquals(5, dispatcher.shed());
+        assertEquals(0, dispatcher.overflowed());
+        assertTrue(target.jobs.isEmpty());
+
+        release.countDown();
+        dispatcher.close();
+        assertEquals(10, target.jobs.size());
+        assertEquals(10, dispatcher.dispatched());
+    }
+
+    @Test
+    public void testCloseHandsOverBatchesSubmittedMeanwhile() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            RecordingTarget target = new RecordingTarget(new CountDownLatch(0));
+            BatchDispatcher dispatcher = new BatchDispatcher(target, 64);
+            AtomicLong accepted = new AtomicLong();
+            Thread[] producers = new Thread[4];
+            for (int p = 0; p < producers.length; p++) {
+                producers[p] = new Thread(() -> {
+                    try {
+                        while (true) {
+                            dispatcher.executeAll(jobs(0, 3, 0), 1);
+                            accepted.addAndGet(3);
+                        }
+                    } catch (IllegalStateException closed) {
+                        /* done */
+                    }
+                });
+                producers[p].start();
+            }
+            Thread.sleep(5);
+            dispatcher.close();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            /* Every batch accepted reached the target, none is left in the queue */
+            assertEquals(accepted.get(), dispatcher.dispatched());
+            assertEquals(0, dispatcher.queued());
+        }
+    }
+
+    @Test
+    public void testRateLimit() {
+        RecordingTarget target = new RecordingTarget(new CountDownLatch(0));
+        BatchDispatcher dispatcher = new BatchDispatcher(target, 100);
+        dispatcher.setRateLimit(20);
+        long started = System.nanoTime();
+        dispatcher.executeAll(jobs(0, 30, 0), 1);
+        dispatcher.close();
+
+        /* A second worth of jobs goes at once, the 10 others at 20 per second */
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(400));
+        assertEquals(30, target.jobs.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRejectsBatchesOnceClosed() {
+        BatchDispatcher dispatcher = new BatchDispatcher(JobExecutor.direct(), 10);
+        dispatcher.close();
+        dispatcher.executeAll(jobs(0, 1, 0), 1);
+    }
+
+    @Test
+    public void testRingBufferWithConcurrentProducers() throws Exception {
+        MpscRingBuffer<long[]> ring = new MpscRingBuffer<>(100);
+        assertEquals(128, ring.capacity());
+        int producers = 4;
+        int perProducer = 100_000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!ring.offer(new long[] { producer, i })) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        int[] next = new int[producers];
+        for (int received = 0; received < producers * perProducer; ) {
+            long[] element = ring.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            /* Each producer's elements arrive in order, none lost or repeated */
+            assertEquals(next[(int) element[0]]++, element[1]);
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(ring.poll());
+        assertEquals(0, ring.size());
+
+        for (int i = 0; i < ring.capacity(); i++) {
+            assertTrue(ring.offer(new long[0]));
+        }
+        assertFalse(ring.offer(new long[0]));
+    }
+}
@@ -0,0 +1,120 @@
+package com.ezy.crond.scheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.ezy.crond.CronTime;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentJobExecutorTest {
+
+    /* A job whose runs block until released, counting how many started */
+    private static final class BlockingTask implements Runnable {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger started = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+
+        @Override
+        public void run() {
+            started.incrementAndGet();
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    private static ScheduledJob job(CronScheduler scheduler, Runnable task, OverlapPolicy policy) {
+        ScheduledJob job = scheduler.schedule("job", CronTime.parse("* * * * *"), task);
+        job.setOverlapPolicy(policy);
+        return job;
+    }
+
+    private static void awaitRunning(ConcurrentJobExecutor executor, int running) throws InterruptedException {
+        for (int i = 0; i < 500 && executor.running() != running; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(running, executor.running());
+    }
+
+    @Test
+    public void testOverlapPolicies() throws Exception {
+        ConcurrentJobExecutor executor = new ConcurrentJobExecutor(Executors.newCachedThreadPool(), 100);
+        CronScheduler scheduler = new CronScheduler(executor, 0);
+        BlockingTask concurrent = new BlockingTask();
+        BlockingTask skip = new BlockingTask();
+        BlockingTask queue = new BlockingTask();
+        ScheduledJob queued = job(scheduler, queue, OverlapPolicy.QUEUE);
+        job(scheduler, concurrent, OverlapPolicy.CONCURRENT);
+        job(scheduler, skip, OverlapPolicy.SKIP);
+
+        scheduler.advanceTo(3);
+        awaitRunning(executor, 3 + 1 + 1);
+        assertEquals(2, executor.skipped());
+        assertEquals(3, executor.pending(queued));
+        assertEquals(1, queue.started.get());
+
+        concurrent.release.countDown();
+        skip.release.countDown();
+        queue.release.countDown();
+        executor.close();
+
+        assertEquals(3, concurrent.started.get());
+        assertEquals(3, concurrent.maxRunning.get());
+        assertEquals(1, skip.started.get());
+        assertEquals(3, queue.started.get());
+        assertEquals(1, queue.maxRunning.get());
+        assertEquals(0, executor.pending(queued));
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        ConcurrentJobExecutor executor = new ConcurrentJobExecutor(Executors.newCachedThreadPool(), 2);
+        CronScheduler scheduler = new CronScheduler(executor, 0);
+        BlockingTask task = new BlockingTask();
+        for (int i = 0; i < 5; i++) {
+            job(scheduler, task, OverlapPolicy.CONCURRENT);
+        }
+
+        scheduler.advanceTo(1);
+        awaitRunning(executor, 2);
+        Thread.sleep(50);
+        assertEquals(2, task.started.get());
+
+        task.release.countDown();
+        executor.close();
+        assertEquals(5, task.started.get());
+        assertEquals(2, task.maxRunning.get());
+        assertEquals(0, executor.running());
+    }
+
+    @Test
+    public void testFailingRunDoesNotBlockQueue() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        ConcurrentJobExecutor executor = new ConcurrentJobExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r);
+            thread.setUncaughtExceptionHandler((t, e) -> {});
+            return thread;
+        }), 1);
+        CronScheduler scheduler = new CronScheduler(executor, 0);
+        job(scheduler, () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException();
+        }, OverlapPolicy.QUEUE);
+
+        scheduler.advanceTo(4);
+        executor.close();
+        assertEquals(4, runs.get());
+        assertEquals(0, executor.running());
+        assertEquals(0, executor.skipped());
+    }
+}
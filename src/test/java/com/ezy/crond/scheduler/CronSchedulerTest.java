@@ -0,0 +1,351 @@
+package com.ezy.crond.scheduler;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.ezy.crond.CronTime;
+import com.ezy.crond.FireTimeTables;
+
+import static org.junit.Assert.*;
+
+public class CronSchedulerTest {
+
+    private static long epochMinute(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    /* Records the fire minute of every job executed */
+    private static final class RecordingExecutor implements JobExecutor {
+        final List<String> fired = new ArrayList<>();
+
+        @Override
+        public void execute(ScheduledJob job, long fireMinute) {
+            fired.add(job.getName() + "@" + LocalDateTime.ofEpochSecond(fireMinute * 60, 0, ZoneOffset.UTC));
+        }
+    }
+
+    @Test
+    public void testFiresAtMatchingMinutes() {
+        RecordingExecutor executor = new RecordingExecutor();
+        CronScheduler scheduler = new CronScheduler(executor, epochMinute(LocalDateTime.of(2019, 12, 31, 23, 0)));
+        scheduler.schedule("quarter", CronTime.parse("*/15 * * * *"), () -> {});
+        scheduler.schedule("midnight", CronTime.parse("0 0 * * *"), () -> {});
+
+        scheduler.advanceTo(epochMinute(LocalDateTime.of(2020, 1, 1, 0, 20)));
+
+        assertEquals(6, executor.fired.size());
+        assertEquals("quarter@2019-12-31T23:15", executor.fired.get(0));
+        assertEquals("quarter@2019-12-31T23:30", executor.fired.get(1));
+        assertEquals("quarter@2019-12-31T23:45", executor.fired.get(2));
+        assertTrue(executor.fired.contains("quarter@2020-01-01T00:00"));
+        assertTrue(executor.fired.contains("midnight@2020-01-01T00:00"));
+        assertEquals("quarter@2020-01-01T00:15", executor.fired.get(5));
+    }
+
+    @Test
+    public void testCancelledJobDoesNotFire() {
+        AtomicInteger runs = new AtomicInteger();
+        CronScheduler scheduler = new CronScheduler(JobExecutor.direct(), 0);
+        ScheduledJob job = scheduler.schedule("every-minute", CronTime.parse("* * * * *"), runs::incrementAndGet);
+
+        scheduler.advanceTo(10);
+        assertEquals(10, runs.get());
+        assertTrue(scheduler.cancel(job));
+        assertFalse(scheduler.cancel(job));
+        scheduler.advanceTo(20);
+
+        assertEquals(10, runs.get());
+        assertEquals(0, scheduler.size());
+        assertTrue(job.isCancelled());
+    }
+
+    @Test
+    public void testUnsatisfiableScheduleIsRejected() {
+        CronScheduler scheduler = new CronScheduler(JobExecutor.direct(), epochMinute(LocalDateTime.of(2026, 1, 1, 0, 0)));
+        for (String crontab : new String[] { "0 0 31 2 *", "0 0 0 1 1 * 2025" }) {
+            try {
+                scheduler.schedule("never", CronTime.parse(crontab), () -> {});
+                fail(crontab + " never fires");
+            } catch (IllegalArgumentException expected) {
+                assertEquals("Schedule of never never fires again", expected.getMessage());
+            }
+        }
+        assertEquals(0, scheduler.size());
+        assertEquals(0, scheduler.groupCount());
+    }
+
+    @Test
+    public void testFailingJobDoesNotStopOthers() {
+        AtomicInteger runs = new AtomicInteger();
+        CronScheduler scheduler = new CronScheduler(JobExecutor.direct(), 0);
+        Thread.UncaughtExceptionHandler handler = Thread.currentThread().getUncaughtExceptionHandler();
+        AtomicInteger failures = new AtomicInteger();
+        Thread.currentThread().setUncaughtExceptionHandler((t, e) -> failures.incrementAndGet());
+        try {
+            scheduler.schedule("fails", CronTime.parse("* * * * *"), () -> { throw new IllegalStateException(); });
+            scheduler.schedule("runs", CronTime.parse("* * * * *"), runs::incrementAndGet);
+            scheduler.advanceTo(3);
+        } finally {
+            Thread.currentThread().setUncaughtExceptionHandler(handler);
+        }
+        assertEquals(3, runs.get());
+        assertEquals(3, failures.get());
+    }
+
+    @Test
+    public void testManyRegisteredSchedules() {
+        AtomicInteger runs = new AtomicInteger();
+        CronScheduler scheduler = new CronScheduler(JobExecutor.direct(), 0);
+        CronTime[] cronTimes = { CronTime.parse("0 * * * *"), CronTime.parse("*/5 * * * *"),
+                                 CronTime.parse("30 2 * * *"), CronTime.parse("0 0 1 * *") };
+        for (int i = 0; i < 200_000; i++) {
+            scheduler.schedule("job-" + i, cronTimes[i % cronTimes.length], runs::incrementAndGet);
+        }
+        assertEquals(200_000, scheduler.size());
+
+        scheduler.advanceTo(24 * 60); /* minute 0 counts as processed, so up to and including 1970-01-02T00:00 */
+
+        /* 24 hourly + 288 five minute + 1 daily fires per group of 50,000 jobs, the monthly one fired at 0 */
+        assertEquals(50_000 * (24 + 288 + 1), runs.get());
+        assertEquals(200_000, scheduler.size());
+    }
+
+    @Test
+    public void testMisfirePoliciesWhenCatchingUp() {
+        RecordingExecutor executor = new RecordingExecutor();
+        CronScheduler scheduler = new CronScheduler(executor, epochMinute(LocalDateTime.of(2020, 1, 1, 0, 0)));
+        scheduler.schedule("all", CronTime.parse("*/10 * * * *"), () -> {}, MisfirePolicy.FIRE_ALL);
+        scheduler.schedule("once", CronTime.parse("*/10 * * * *"), () -> {}, MisfirePolicy.FIRE_ONCE);
+        scheduler.schedule("skip", CronTime.parse("*/10 * * * *"), () -> {}, MisfirePolicy.SKIP);
+
+        scheduler.advanceTo(epochMinute(LocalDateTime.of(2020, 1, 1, 0, 35)));  /* held up for half an hour */
+
+        assertEquals(3 + 1, executor.fired.size());
+        assertTrue(executor.fired.contains("once@2020-01-01T00:30"));
+        assertFalse(executor.fired.stream().anyMatch(fired -> fired.startsWith("skip")));
+
+        executor.fired.clear();
+        scheduler.advanceTo(epochMinute(LocalDateTime.of(2020, 1, 1, 0, 40)));  /* on time again */
+        assertEquals(3, executor.fired.size());
+        assertTrue(executor.fired.contains("skip@2020-01-01T00:40"));
+    }
+
+    @Test
+    public void testMisfirePoliciesAfterRestart() {
+        RecordingExecutor executor = new RecordingExecutor();
+        CronScheduler scheduler = new CronScheduler(executor, epochMinute(LocalDateTime.of(2020, 1, 1, 6, 0)));
+        scheduler.setCatchUpLimit(4);
+        long lastFire = epochMinute(LocalDateTime.of(2020, 1, 1, 0, 0));
+        CronTime hourly = CronTime.parse("0 * * * *");
+
+        scheduler.schedule("all", hourly, () -> {}, MisfirePolicy.FIRE_ALL, lastFire);
+        assertEquals(4, executor.fired.size());  /* 01:00 to 06:00 missed, only the last four run */
+        assertEquals("all@2020-01-01T03:00", executor.fired.get(0));
+        assertEquals("all@2020-01-01T06:00", executor.fired.get(3));
+
+        executor.fired.clear();
+        scheduler.schedule("once", hourly, () -> {}, MisfirePolicy.FIRE_ONCE, lastFire);
+        scheduler.schedule("skip", hourly, () -> {}, MisfirePolicy.SKIP, lastFire);
+        assertEquals(1, executor.fired.size());
+        assertEquals("once@2020-01-01T06:00", executor.fired.get(0));
+        assertEquals(3, scheduler.size());
+    }
+
+    @Test
+    public void testFiresJobsWithSeconds() {
+        List<Long> seconds = new ArrayList<>();
+        List<String> minutes = new ArrayList<>();
+        JobExecutor executor = new JobExecutor() {
+            @Override
+            public void execute(ScheduledJob job, long fireMinute) {
+                minutes.add(job.getName() + "@" + fireMinute);
+            }
+
+            @Override
+            public void executeAtSecond(ScheduledJob job, long fireSecond) {
+                seconds.add(fireSecond);
+            }
+        };
+        long start = epochMinute(LocalDateTime.of(2020, 1, 1, 0, 0));
+        CronScheduler scheduler = new CronScheduler(executor, start);
+        scheduler.schedule("health", CronTime.parse("*/20 * * * * *"), () -> {});
+        scheduler.schedule("minutely", CronTime.parse("* * * * *"), () -> {});
+
+        scheduler.advanceToSecond(start * 60 + 59);
+        assertEquals(Arrays.asList(start * 60 + 20, start * 60 + 40), seconds);
+        assertTrue(minutes.isEmpty());
+
+        scheduler.advanceToSecond(start * 60 + 60);
+        assertEquals(Arrays.asList(start * 60 + 20, start * 60 + 40, start * 60 + 60), seconds);
+        assertEquals(Collections.singletonList("minutely@" + (start + 1)), minutes);
+        assertEquals(start + 1, scheduler.currentMinute());
+
+        /* Advancing by minutes fires the jobs with seconds up to the start of the minute */
+        scheduler.advanceTo(start + 3);
+        assertEquals(9, seconds.size());
+        assertEquals(start * 60 + 180, (long) seconds.get(8));
+        assertEquals(3, minutes.size());
+        assertEquals(2, scheduler.size());
+    }
+
+    @Test
+    public void testSecondsWithoutSubMinuteFiresStayOnTheMinuteWheel() {
+        RecordingExecutor executor = new RecordingExecutor();
+        CronScheduler scheduler = new CronScheduler(executor, epochMinute(LocalDateTime.of(2020, 1, 1, 0, 0)));
+        ScheduledJob job = scheduler.schedule("nine", CronTime.parse("0 0 9 * * * 2020"), () -> {});
+
+        scheduler.advanceTo(epochMinute(LocalDateTime.of(2021, 1, 2, 0, 0)));
+        assertEquals(366, executor.fired.size());
+        assertEquals("nine@2020-12-31T09:00", executor.fired.get(365));
+        assertEquals(0, scheduler.size());
+        assertFalse(scheduler.cancel(job));
+    }
+
+    @Test
+    public void testFireTimeTablesFireTheSameJobs() {
+        long start = epochMinute(LocalDateTime.of(2019, 12, 31, 22, 0));
+        long end = epochMinute(LocalDateTime.of(2020, 1, 2, 2, 0));
+        String[] crontabs = { "*/15 * * * *", "0 0 * * *", "30 23 31 12 *", "0 0 0 1 1 * 2021" };
+        RecordingExecutor searched = new RecordingExecutor();
+        RecordingExecutor tabulated = new RecordingExecutor();
+        CronScheduler plain = new CronScheduler(searched, start);
+        CronScheduler tables = new CronScheduler(tabulated, start);
+        tables.setFireTimeTables(new FireTimeTables(1 << 20, 1));
+        for (String crontab : crontabs) {
+            plain.schedule(crontab, CronTime.parse(crontab), () -> {});
+            tables.schedule(crontab, CronTime.parse(crontab), () -> {});
+        }
+        plain.advanceTo(end);
+        tables.advanceTo(end);
+        assertEquals(searched.fired, tabulated.fired);
+        assertEquals(4 * 28 + 2 + 1, tabulated.fired.size());
+    }
+
+    @Test
+    public void testJobsSharingAScheduleFireAsOneBatch() {
+        List<Integer> batches = new ArrayList<>();
+        JobExecutor executor = new JobExecutor() {
+            @Override
+            public void execute(ScheduledJob job, long fireMinute) {
+                fail("jobs are executed by group");
+            }
+
+            @Override
+            public void executeAll(List<ScheduledJob> jobs, long fireMinute) {
+                batches.add(jobs.size());
+            }
+        };
+        CronScheduler scheduler = new CronScheduler(executor, 0);
+        scheduler.schedule("star", CronTime.parse("* * * * *"), () -> {});
+        ScheduledJob range = scheduler.schedule("range", CronTime.parse("0-59 * * * *"), () -> {});
+        scheduler.schedule("step", CronTime.parse("*/1 * * * *"), () -> {});
+        scheduler.schedule("even", CronTime.parse("*/2 * * * *"), () -> {});
+        assertEquals(4, scheduler.size());
+        assertEquals(2, scheduler.groupCount());
+
+        scheduler.advanceTo(2);
+        Collections.sort(batches);
+        assertEquals(Arrays.asList(1, 3, 3), batches);
+
+        assertTrue(scheduler.cancel(range));
+        batches.clear();
+        scheduler.advanceTo(3);
+        assertEquals(Collections.singletonList(2), batches);
+        assertEquals(3, scheduler.size());
+        assertEquals(2, scheduler.groupCount());
+    }
+
+    @Test
+    public void testBatchedExecutorSubmitsAGroupOnce() {
+        List<Runnable> submitted = new ArrayList<>();
+        AtomicInteger runs = new AtomicInteger();
+        CronScheduler scheduler = new CronScheduler(JobExecutor.batched(submitted::add), 0);
+        for (int i = 0; i < 100; i++) {
+            scheduler.schedule("job-" + i, CronTime.parse(i % 2 == 0 ? "* * * * *" : "0-59 * * * *"),
+                               runs::incrementAndGet);
+        }
+        scheduler.advanceTo(1);
+        assertEquals(1, submitted.size());
+        submitted.get(0).run();
+        assertEquals(100, runs.get());
+    }
+
+    @Test
+    public void testAdvancesWithItsClock() {
+        RecordingExecutor executor = new RecordingExecutor();
+        VirtualClock clock = new VirtualClock(LocalDateTime.of(2020, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC) * 1000);
+        CronScheduler scheduler = new CronScheduler(executor, clock);
+        assertEquals(epochMinute(LocalDateTime.of(2020, 1, 1, 0, 0)), scheduler.currentMinute());
+        scheduler.schedule("quarter", CronTime.parse("*/15 * * * *"), () -> {});
+
+        clock.advance(29 * 60_000 + 59_999);
+        scheduler.advanceToNow();
+        assertEquals(Collections.singletonList("quarter@2020-01-01T00:15"), executor.fired);
+
+        clock.advance(1);
+        scheduler.advanceToNow();
+        assertEquals("quarter@2020-01-01T00:30", executor.fired.get(1));
+        assertSame(clock, scheduler.getClock());
+    }
+
+    @Test
+    public void testJobWithSecondsAddedMidMinuteStartsFromTheClock() {
+        List<Long> fired = new ArrayList<>();
+        JobExecutor executor = new JobExecutor() {
+            @Override
+            public void execute(ScheduledJob job, long fireMinute) {
+                fail("jobs with seconds fire by second");
+            }
+
+            @Override
+            public void executeAtSecond(ScheduledJob job, long fireSecond) {
+                fired.add(fireSecond);
+            }
+        };
+        long minute = epochMinute(LocalDateTime.of(2020, 1, 1, 0, 0));
+        VirtualClock clock = new VirtualClock(minute * 60_000 + 45_000);
+        CronScheduler scheduler = new CronScheduler(executor, clock);
+        scheduler.schedule("five", CronTime.parse("*/5 * * * * *"), () -> {});
+
+        /* Seconds 5 to 45 passed before the job was added */
+        scheduler.advanceToNow();
+        clock.advance(4_000);
+        scheduler.advanceToNow();
+        assertEquals(Collections.<Long>emptyList(), fired);
+
+        clock.advance(1_000);
+        scheduler.advanceToNow();
+        assertEquals(Collections.singletonList(minute * 60 + 50), fired);
+    }
+
+    @Test
+    public void testConcurrentAdvancersTakeTurns() throws InterruptedException {
+        AtomicInteger fires = new AtomicInteger();
+        CronScheduler scheduler = new CronScheduler((job, fireMinute) -> fires.incrementAndGet(), 0);
+        for (int i = 0; i < 10; i++) {
+            scheduler.schedule("job-" + i, CronTime.parse("* * * * *"), () -> {});
+        }
+        Thread[] advancers = new Thread[4];
+        for (int t = 0; t < advancers.length; t++) {
+            advancers[t] = new Thread(() -> {
+                for (long minute = 1; minute <= 2000; minute++) {
+                    scheduler.advanceTo(minute);
+                }
+            });
+            advancers[t].start();
+        }
+        for (Thread advancer : advancers) {
+            advancer.join();
+        }
+
+        assertEquals(10 * 2000, fires.get());
+        assertEquals(2000, scheduler.currentMinute());
+    }
+}
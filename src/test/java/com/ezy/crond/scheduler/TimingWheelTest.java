@@ -0,0 +1,102 @@
+package com.ezy.crond.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTest {
+
+    private static ScheduleGroup group(long id) {
+        ScheduleGroup group = new ScheduleGroup(null);
+        group.add(new ScheduledJob(id, "job-" + id, null, null, MisfirePolicy.FIRE_ALL));
+        return group;
+    }
+
+    @Test
+    public void testGroupsExpireAtTheirDeadlineOnEveryLevel() {
+        long start = 25_000_000L;
+        TimingWheel wheel = new TimingWheel(start);
+        long[] deltas = { 1, 2, 63, 64, 65, 4095, 4096, 4097, 262_143, 262_144, 300_000, 16_777_215, 16_777_216, 20_000_000 };
+        for (int i = 0; i < deltas.length; i++) {
+            wheel.add(group(i), start + deltas[i]);
+        }
+        assertEquals(deltas.length, wheel.size());
+
+        List<ScheduleGroup> expired = new ArrayList<>();
+        int seen = 0;
+        while (seen < deltas.length) {
+            wheel.advance(expired);
+            for (ScheduleGroup group : expired) {
+                assertEquals(start + deltas[(int) group.jobs[0].getId()], wheel.currentTick());
+                seen++;
+            }
+            expired.clear();
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testRandomDeadlinesExpireInOrder() {
+        Random random = new Random(42);
+        TimingWheel wheel = new TimingWheel(1000);
+        for (int i = 0; i < 10_000; i++) {
+            wheel.add(group(i), 1001 + random.nextInt(200_000));
+        }
+        List<ScheduleGroup> expired = new ArrayList<>();
+        int seen = 0;
+        while (wheel.size() > 0) {
+            wheel.advance(expired);
+            for (ScheduleGroup group : expired) {
+                assertEquals(group.deadline, wheel.currentTick());
+            }
+            seen += expired.size();
+            expired.clear();
+        }
+        assertEquals(10_000, seen);
+    }
+
+    @Test
+    public void testRemove() {
+        TimingWheel wheel = new TimingWheel(0);
+        ScheduleGroup first = group(1);
+        ScheduleGroup second = group(2);
+        ScheduleGroup third = group(3);
+        wheel.add(first, 10);
+        wheel.add(second, 10);
+        wheel.add(third, 10);
+
+        assertTrue(wheel.remove(second));
+        assertFalse(wheel.remove(second));
+        assertEquals(2, wheel.size());
+
+        List<ScheduleGroup> expired = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            wheel.advance(expired);
+        }
+        assertEquals(2, expired.size());
+        assertSame(first, expired.get(0));
+        assertSame(third, expired.get(1));
+    }
+
+    @Test
+    public void testPastDeadlineExpiresOnNextAdvance() {
+        TimingWheel wheel = new TimingWheel(100);
+        wheel.add(group(1), 50);
+
+        List<ScheduleGroup> expired = new ArrayList<>();
+        wheel.advance(expired);
+        assertEquals(1, expired.size());
+        assertEquals(101, wheel.currentTick());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSkipWhileHoldingGroups() {
+        TimingWheel wheel = new TimingWheel(0);
+        wheel.add(group(1), 10);
+        wheel.skipTo(100);
+    }
+}
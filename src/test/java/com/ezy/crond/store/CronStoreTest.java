@@ -0,0 +1,154 @@
+package com.ezy.crond.store;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ezy.crond.CronTime;
+
+import static org.junit.Assert.*;
+
+public class CronStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReopenReplaysLog() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (CronStore store = CronStore.open(directory)) {
+            store.put(1, CronTime.parse("*/5 * * * *"), 100);
+            store.put(2, CronTime.parse("0 0 1 * *"), 200);
+            store.put(3, CronTime.parse("0 9 * * MON-FRI"), 300);
+            store.fired(1, 105);
+            assertTrue(store.remove(2));
+            assertFalse(store.remove(2));
+            store.sync();
+        }
+        try (CronStore store = CronStore.open(directory)) {
+            assertEquals(2, store.size());
+            assertEquals(CronTime.parse("*/5 * * * *").getMinuteBits(), store.get(1).getMinuteBits());
+            assertEquals(105, store.lastFireMinute(1));
+            assertNull(store.get(2));
+            assertEquals(Long.MIN_VALUE, store.lastFireMinute(2));
+            assertEquals(300, store.lastFireMinute(3));
+        }
+    }
+
+    @Test
+    public void testCompactWritesSnapshot() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        CronTime[] cronTimes = { CronTime.parse("0 * * * *"), CronTime.parse("*/15 * * * *") };
+        try (CronStore store = CronStore.open(directory)) {
+            for (int id = 0; id < 10_000; id++) {
+                store.put(id, cronTimes[id % 2], id);
+            }
+            store.compact();
+            assertEquals(0, Files.size(directory.resolve(CronStore.LOG)));
+            store.fired(7, 1_000_000);
+        }
+        assertEquals(CronStore.HEADER_BYTES + 10_000L * CronStore.RECORD_BYTES,
+                     Files.size(directory.resolve(CronStore.SNAPSHOT)));
+        try (CronStore store = CronStore.open(directory)) {
+            assertEquals(10_000, store.size());
+            assertEquals(1_000_000, store.lastFireMinute(7));
+            assertEquals(42, store.lastFireMinute(42));
+            assertSame(store.get(0), store.get(2));  /* identical schedules are decoded once */
+            AtomicInteger hourly = new AtomicInteger();
+            store.forEach((id, cronTime, lastFire) -> {
+                if (cronTime.getMinuteBits() == 1L) {
+                    hourly.incrementAndGet();
+                }
+            });
+            assertEquals(5_000, hourly.get());
+        }
+    }
+
+    @Test
+    public void testTornLogEntryIsDropped() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (CronStore store = CronStore.open(directory)) {
+            store.put(1, CronTime.parse("0 0 * * *"), 10);
+            store.fired(1, 20);
+        }
+        Path log = directory.resolve(CronStore.LOG);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(CronStore.ENTRY_BYTES + CronStore.ENTRY_BYTES / 2);
+        }
+        List<LogRecord> warnings = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override public void publish(LogRecord record) { warnings.add(record); }
+            @Override public void flush() {}
+            @Override public void close() {}
+        };
+        Logger logger = Logger.getLogger(CronStore.class.getName());
+        logger.addHandler(handler);
+        try (CronStore store = CronStore.open(directory)) {
+            assertEquals(10, store.lastFireMinute(1));
+            assertEquals(CronStore.ENTRY_BYTES, Files.size(log));
+            store.fired(1, 30);
+        } finally {
+            logger.removeHandler(handler);
+        }
+        assertEquals(1, warnings.size());
+        assertTrue(warnings.get(0).getMessage().contains(CronStore.ENTRY_BYTES / 2 + " bytes"));
+        try (CronStore store = CronStore.open(directory)) {
+            assertEquals(30, store.lastFireMinute(1));
+        }
+    }
+
+    @Test
+    public void testReplaysALogOfManyChunks() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        int fires = 3 * CronStore.REPLAY_CHUNK_ENTRIES + 7;
+        try (CronStore store = CronStore.open(directory)) {
+            store.setCompactionThreshold(Long.MAX_VALUE);
+            store.put(1, CronTime.parse("* * * * *"), 0);
+            store.put(2, CronTime.parse("0 * * * *"), 0);
+            for (int minute = 1; minute <= fires; minute++) {
+                store.fired(1 + minute % 2, minute);
+            }
+        }
+        assertEquals((2L + fires) * CronStore.ENTRY_BYTES, Files.size(directory.resolve(CronStore.LOG)));
+        try (CronStore store = CronStore.open(directory)) {
+            assertEquals(fires, store.lastFireMinute(1 + fires % 2));
+            assertEquals(fires - 1, store.lastFireMinute(1 + (fires - 1) % 2));
+        }
+    }
+
+    @Test
+    public void testCompactsOnceTheLogOutgrowsTheSnapshot() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Path log = directory.resolve(CronStore.LOG);
+        long threshold = 10L * CronStore.ENTRY_BYTES;
+        try (CronStore store = CronStore.open(directory)) {
+            store.setCompactionThreshold(threshold);
+            for (int id = 0; id < 20; id++) {
+                store.put(id, CronTime.parse("*/5 * * * *"), 0);
+            }
+            long snapshot = CronStore.HEADER_BYTES + 20L * CronStore.RECORD_BYTES;
+            for (int minute = 1; minute <= 1000; minute++) {
+                store.fired(minute % 20, minute);
+                assertTrue(Files.size(log) <= Math.max(threshold, snapshot));
+            }
+            assertTrue(Files.exists(directory.resolve(CronStore.SNAPSHOT)));
+        }
+        try (CronStore store = CronStore.open(directory)) {
+            assertEquals(20, store.size());
+            assertEquals(1000, store.lastFireMinute(0));
+            assertEquals(999, store.lastFireMinute(19));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.ezy.crond.store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ezy.crond.CronTime;
+
+import static org.junit.Assert.*;
+
+public class ExecutionHistoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Long> fires(ExecutionHistory history, long jobId, long from, long to) {
+        List<Long> fires = new ArrayList<>();
+        int count = history.runs(jobId, from, to, (fireMinute, start, end, status) -> fires.add(fireMinute));
+        assertEquals(count, fires.size());
+        return fires;
+    }
+
+    private static long epochMinute(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    @Test
+    public void testKeepsTheLastRunsInFireOrder() {
+        ExecutionHistory history = ExecutionHistory.inMemory(10, 4);
+        for (long fire = 1; fire <= 6; fire++) {
+            history.append(7, fire, fire * 60_000, fire * 60_000 + 500, (int) fire % 2);
+        }
+        assertEquals(Arrays.asList(3L, 4L, 5L, 6L), fires(history, 7, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(Arrays.asList(4L, 5L), fires(history, 7, 4, 6));
+        assertEquals(6, history.lastFireMinute(7));
+
+        /* A run finishing after a later one still lands in fire order */
+        history.append(7, 8, 0, 0, 0);
+        history.append(7, 7, 0, 0, 0);
+        assertEquals(Arrays.asList(5L, 6L, 7L, 8L), fires(history, 7, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(8, history.lastFireMinute(7));
+
+        /* A run older than all those kept in a full ring is the one dropped */
+        history.append(7, 2, 0, 0, 0);
+        assertEquals(Arrays.asList(5L, 6L, 7L, 8L), fires(history, 7, Long.MIN_VALUE, Long.MAX_VALUE));
+
+        long[] run = new long[4];
+        history.runs(7, 6, 7, (fireMinute, start, end, status) -> {
+            run[0] = fireMinute;
+            run[1] = start;
+            run[2] = end;
+            run[3] = status;
+        });
+        assertArrayEquals(new long[] { 6, 360_000, 360_500, 0 }, run);
+        assertEquals(Long.MIN_VALUE, history.lastFireMinute(8));
+        assertEquals(0, history.runs(8, 0, 10, (fireMinute, start, end, status) -> fail()));
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("history");
+        try (ExecutionHistory history = ExecutionHistory.open(file, 100, 3)) {
+            for (long job = 1; job <= 50; job++) {
+                for (long fire = 0; fire < job % 5; fire++) {
+                    history.append(job, fire, 0, 0, 0);
+                }
+            }
+            assertTrue(history.remove(2));
+            assertFalse(history.remove(2));
+            history.sync();
+        }
+        try (ExecutionHistory history = ExecutionHistory.open(file, 100, 3)) {
+            assertEquals(50 - 10 - 1, history.size());
+            assertEquals(Arrays.asList(1L, 2L, 3L), fires(history, 4, 0, 10));
+            assertEquals(Long.MIN_VALUE, history.lastFireMinute(2));
+            assertEquals(Long.MIN_VALUE, history.lastFireMinute(5));
+            history.append(2, 9, 0, 0, 0);
+            assertEquals(9, history.lastFireMinute(2));
+        }
+        try {
+            ExecutionHistory.open(file, 100, 4).close();
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("3 runs of 100 jobs"));
+        }
+    }
+
+    @Test
+    public void testOverdueJobs() {
+        ExecutionHistory history = ExecutionHistory.inMemory(10, 8);
+        CronTime hourly = CronTime.parse("0 * * * *");
+        long ten = epochMinute(LocalDateTime.of(2021, 3, 1, 10, 0));
+        history.append(1, ten, 0, 0, 0);
+        history.append(2, ten - 60, 0, 0, 0);
+        history.append(3, ten - 120, 0, 0, 0);
+        Map<Long, CronTime> schedules = new HashMap<>();
+        schedules.put(1L, hourly);
+        schedules.put(2L, CronTime.parse("0-0 * * * *"));
+
+        List<Long> overdue = new ArrayList<>();
+        assertEquals(1, history.overdue(ten + 30, schedules::get, overdue::add));
+        assertEquals(Arrays.asList(2L), overdue);
+
+        /* At 11:00 itself the 11:00 run is due */
+        overdue.clear();
+        history.overdue(ten + 60, schedules::get, overdue::add);
+        assertEquals(Arrays.asList(1L, 2L), overdue);
+    }
+
+    @Test
+    public void testSlotsAreReused() {
+        ExecutionHistory history = ExecutionHistory.inMemory(64, 2);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 20_000; i++) {
+            long job = random.nextInt(200);
+            if (expected.containsKey(job) && random.nextBoolean()) {
+                assertTrue(history.remove(job));
+                expected.remove(job);
+            } else if (expected.containsKey(job) || expected.size() < 64) {
+                history.append(job, i, 0, 0, 0);
+                expected.put(job, (long) i);
+            } else {
+                try {
+                    history.append(job, i, 0, 0, 0);
+                    fail();
+                } catch (IllegalStateException e) {
+                    /* full */
+                }
+            }
+        }
+        assertEquals(expected.size(), history.size());
+        for (long job = 0; job < 200; job++) {
+            Long last = expected.get(job);
+            assertEquals(last == null ? Long.MIN_VALUE : last, history.lastFireMinute(job));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmptyRing() {
+        ExecutionHistory.inMemory(10, 0);
+    }
+}
@@ -0,0 +1,38 @@
+package com.ezy.crond.scheduler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.ezy.crond.CronTime;
+
+import static org.junit.Assert.*;
+
+public class VirtualThreadJobExecutorTest {
+
+    @Test
+    public void testManyBlockingJobsOnVirtualThreads() {
+        AtomicInteger virtual = new AtomicInteger();
+        ConcurrentJobExecutor executor = VirtualThreadJobExecutor.create(20_000);
+        CronScheduler scheduler = new CronScheduler(executor, 0);
+        CronTime hourly = CronTime.parse("0 * * * *");
+        for (int i = 0; i < 100_000; i++) {
+            scheduler.schedule("job-" + i, hourly, () -> {
+                if (Thread.currentThread().isVirtual()) {
+                    virtual.incrementAndGet();
+                }
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        scheduler.advanceTo(60);
+        executor.close();
+
+        assertEquals(100_000, virtual.get());
+        assertEquals(0, executor.running());
+    }
+}